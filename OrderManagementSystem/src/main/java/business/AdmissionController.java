@@ -0,0 +1,302 @@
+package business;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The AdmissionController class limits the writes let through to the database, so that a burst of
+ * requests is turned away early instead of slowing down every request already in progress.
+ * <p>
+ * A request first takes a token from a token bucket, which caps the sustained rate and the size of
+ * bursts; without a token it is rejected at once. It then needs one of a limited number of concurrency
+ * slots. If none is free it waits in a bounded queue, in arrival order, until a slot frees up or its
+ * wait times out; if the queue is full it is rejected at once.
+ * <p>
+ * The concurrency limit adapts to the observed latency of admitted requests: it grows by one slot
+ * after every window of requests completed without congestion and shrinks by a tenth when the smoothed
+ * latency rises well above the lowest latency seen recently, which is how a saturated database shows.
+ */
+public class AdmissionController {
+
+    /**
+     * The default time a request waits in the queue for a concurrency slot.
+     */
+    public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 500;
+
+    /**
+     * The factor by which the smoothed latency may exceed the baseline before the limit backs off.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF_FACTOR = 0.9;
+    private static final double SMOOTHING = 0.1;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    /**
+     * The outcomes of asking for admission.
+     */
+    public enum Decision {
+        ADMITTED,
+        RATE_LIMITED,
+        QUEUE_FULL,
+        TIMED_OUT
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long queueTimeoutNanos;
+    private final double tokensPerNano;
+    private final double burst;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double tokens;
+    private long lastRefill;
+    private double smoothedLatencyNanos;
+    private double baselineLatencyNanos;
+    private int windowSamples;
+    private boolean windowCongested;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * Constructs an AdmissionController without a rate limit and with a fixed concurrency limit.
+     *
+     * @param maxConcurrency the number of requests let through at once
+     * @param maxQueued      the number of requests allowed to wait for a slot
+     */
+    public AdmissionController(int maxConcurrency, int maxQueued) {
+        this(maxConcurrency, maxConcurrency, maxQueued, DEFAULT_QUEUE_TIMEOUT_MILLIS, 0, 0);
+    }
+
+    /**
+     * Constructs an AdmissionController.
+     * The concurrency limit starts at its maximum and adapts between the minimum and the maximum;
+     * equal bounds make it fixed.
+     *
+     * @param minConcurrency     the lowest the concurrency limit backs off to
+     * @param maxConcurrency     the highest the concurrency limit grows to
+     * @param maxQueued          the number of requests allowed to wait for a slot
+     * @param queueTimeoutMillis the time a request waits for a slot in milliseconds
+     * @param ratePerSecond      the sustained number of requests admitted per second, or 0 for no rate limit
+     * @param burst              the number of requests admitted at once after an idle period
+     */
+    public AdmissionController(int minConcurrency, int maxConcurrency, int maxQueued, long queueTimeoutMillis,
+                               double ratePerSecond, int burst) {
+        this(minConcurrency, maxConcurrency, maxQueued, queueTimeoutMillis, ratePerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Constructs an AdmissionController refilling its token bucket from the given clock, so that tests can
+     * control the rate limit.
+     *
+     * @param minConcurrency     the lowest the concurrency limit backs off to
+     * @param maxConcurrency     the highest the concurrency limit grows to
+     * @param maxQueued          the number of requests allowed to wait for a slot
+     * @param queueTimeoutMillis the time a request waits for a slot in milliseconds
+     * @param ratePerSecond      the sustained number of requests admitted per second, or 0 for no rate limit
+     * @param burst              the number of requests admitted at once after an idle period
+     * @param nanoClock          the clock in nanoseconds, as {@link System#nanoTime()}
+     */
+    AdmissionController(int minConcurrency, int maxConcurrency, int maxQueued, long queueTimeoutMillis,
+                        double ratePerSecond, int burst, LongSupplier nanoClock) {
+        if (minConcurrency <= 0 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Invalid concurrency limits");
+        }
+        if (maxQueued < 0 || queueTimeoutMillis < 0 || ratePerSecond < 0 || (ratePerSecond > 0 && burst <= 0)) {
+            throw new IllegalArgumentException("Invalid queue or rate settings");
+        }
+        this.minLimit = minConcurrency;
+        this.maxLimit = maxConcurrency;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.limit = maxConcurrency;
+        this.nanoClock = nanoClock;
+        this.tokens = burst;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Runs a request if it is admitted, releasing its slot and recording its latency afterwards.
+     *
+     * @param request  the request to run
+     * @param rejected the result returned if the request is not admitted
+     * @param <T>      the type of the result
+     * @return the result of the request, or the given result if it was rejected
+     */
+    public <T> T execute(Supplier<T> request, T rejected) {
+        if (acquire() != Decision.ADMITTED) {
+            return rejected;
+        }
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Asks for admission, waiting in the queue if no concurrency slot is free.
+     * An admitted request must call {@link #release(long)} once it completes.
+     *
+     * @return {@link Decision#ADMITTED}, or the reason the request was rejected
+     */
+    public Decision acquire() {
+        lock.lock();
+        try {
+            if (tokensPerNano > 0 && !takeToken()) {
+                rateLimited.increment();
+                return Decision.RATE_LIMITED;
+            }
+            if (waiting == 0 && inFlight < (int) limit) {
+                inFlight++;
+                admitted.increment();
+                return Decision.ADMITTED;
+            }
+            if (waiting >= maxQueued) {
+                queueFull.increment();
+                return Decision.QUEUE_FULL;
+            }
+
+            queued.increment();
+            waiting++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        timedOut.increment();
+                        return Decision.TIMED_OUT;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                timedOut.increment();
+                return Decision.TIMED_OUT;
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            admitted.increment();
+            return Decision.ADMITTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean takeToken() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Releases the slot of an admitted request and adapts the concurrency limit to its latency.
+     *
+     * @param latencyNanos the time the request took in nanoseconds
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            adaptLimit(latencyNanos);
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a latency sample and, at the end of every window of as many samples as the current limit,
+     * grows the limit by one slot if no sample of the window found the database congested.
+     * The first congested sample of a window shrinks the limit at once.
+     */
+    private void adaptLimit(long latencyNanos) {
+        if (minLimit == maxLimit) {
+            return;
+        }
+        if (smoothedLatencyNanos == 0) {
+            smoothedLatencyNanos = baselineLatencyNanos = latencyNanos;
+        } else {
+            smoothedLatencyNanos += (latencyNanos - smoothedLatencyNanos) * SMOOTHING;
+            baselineLatencyNanos = smoothedLatencyNanos < baselineLatencyNanos
+                    ? smoothedLatencyNanos
+                    : baselineLatencyNanos + (smoothedLatencyNanos - baselineLatencyNanos) * BASELINE_DRIFT;
+        }
+
+        if (!windowCongested && smoothedLatencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE) {
+            windowCongested = true;
+            limit = Math.max(minLimit, limit * BACKOFF_FACTOR);
+        }
+        if (++windowSamples >= (int) limit) {
+            if (!windowCongested) {
+                limit = Math.min(maxLimit, limit + 1);
+                slotFreed.signal();
+            }
+            windowSamples = 0;
+            windowCongested = false;
+        }
+    }
+
+    /**
+     * Gets a snapshot of the counters and the current state of the controller.
+     *
+     * @return the metrics
+     */
+    public Metrics getMetrics() {
+        lock.lock();
+        try {
+            return new Metrics(admitted.sum(), queued.sum(), rateLimited.sum(), queueFull.sum(), timedOut.sum(),
+                    inFlight, waiting, (int) limit, smoothedLatencyNanos / TimeUnit.MILLISECONDS.toNanos(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The counters and state of an admission controller.
+     *
+     * @param admitted      the requests admitted, with or without waiting
+     * @param queued        the requests that had to wait for a slot
+     * @param rateLimited   the requests rejected for lack of a token
+     * @param queueFull     the requests rejected because the queue was full
+     * @param timedOut      the requests rejected after waiting too long
+     * @param inFlight      the requests currently running
+     * @param waiting       the requests currently waiting
+     * @param limit         the current concurrency limit
+     * @param latencyMillis the smoothed latency of admitted requests in milliseconds
+     */
+    public record Metrics(long admitted, long queued, long rateLimited, long queueFull, long timedOut,
+                          int inFlight, int waiting, int limit, double latencyMillis) {
+
+        /**
+         * Gets the total number of rejected requests.
+         *
+         * @return the number of rejected requests
+         */
+        public long rejected() {
+            return rateLimited + queueFull + timedOut;
+        }
+    }
+}
@@ -3,7 +3,8 @@ package business;
 import data.ClientDAO;
 import models.Client;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -13,12 +14,12 @@ public class ClientBLL {
     private final ClientDAO clientDAO;
 
     /**
-     * Constructs a new ClientBLL instance with the specified database connection.
+     * Constructs a new ClientBLL instance with the specified data source.
      *
-     * @param connection the database connection
+     * @param dataSource the data source providing database connections
      */
-    public ClientBLL(Connection connection) {
-        this.clientDAO = new ClientDAO(connection);
+    public ClientBLL(DataSource dataSource) {
+        this.clientDAO = new ClientDAO(dataSource);
     }
 
     /**
@@ -60,6 +61,40 @@ public class ClientBLL {
         return clientDAO.addObject(client);
     }
 
+    /**
+     * Adds a list of new clients to the database with batched inserts.
+     * Clients without an ID are not looked up, since they cannot already exist.
+     *
+     * @param clients the clients to add
+     * @return for each client, in input order, the ID of the added client, -1 if it already exists,
+     * -2 if its phone number is invalid, -3 if its email is invalid, or -4 if it was valid but its insert failed
+     */
+    public int[] addClients(List<Client> clients) {
+        int[] results = new int[clients.size()];
+        List<Client> valid = new ArrayList<>(clients.size());
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            if (client.getId() > 0 && clientDAO.findObject(client.getId(), Client.class) != null) {
+                results[i] = -1;
+            } else if (isValidPhoneNumber(client.getPhoneNumber())) {
+                results[i] = -2;
+            } else if (isValidEmail(client.getEmail())) {
+                results[i] = -3;
+            } else {
+                valid.add(client);
+            }
+        }
+
+        int[] keys = clientDAO.addObjects(valid);
+        for (int i = 0, k = 0; i < results.length; i++) {
+            if (results[i] == 0) {
+                int key = keys[k++];
+                results[i] = key > 0 ? key : -4;
+            }
+        }
+        return results;
+    }
+
     /**
      * Updates an existing client in the database.
      *
@@ -102,4 +137,28 @@ public class ClientBLL {
     public List<Client> getAllClients() {
         return clientDAO.getAllObjects();
     }
-}
+
+    /**
+     * Retrieves one page of clients ordered by ID.
+     *
+     * @param afterId the ID of the last client of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit   the maximum number of clients to return
+     * @return the clients of the page
+     */
+    public List<Client> getClientPage(int afterId, int limit) {
+        return clientDAO.findPage(afterId, limit);
+    }
+
+    /**
+     * Retrieves one page of clients ordered by the given column and then by ID.
+     *
+     * @param sortColumn the column to order by
+     * @param afterValue the sort column value of the last client of the previous page, which may be null
+     * @param afterId    the ID of the last client of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit      the maximum number of clients to return
+     * @return the clients of the page
+     */
+    public List<Client> getClientPage(String sortColumn, Object afterValue, int afterId, int limit) {
+        return clientDAO.findPage(sortColumn, afterValue, afterId, limit);
+    }
+}
\ No newline at end of file
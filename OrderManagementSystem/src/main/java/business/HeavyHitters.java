@@ -0,0 +1,232 @@
+package business;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The HeavyHitters class tracks the keys with the largest total weight over a sliding time window,
+ * such as the best-selling products of the last hour, in a fixed amount of memory.
+ * <p>
+ * The window is divided into slices. Each slice counts weights with the space-saving algorithm: it keeps
+ * at most {@code capacity} counters in a min-heap, and a key without a counter takes over the smallest
+ * counter, inheriting its count as the key's possible overestimate. Any key whose true weight in the slice
+ * exceeds the slice total divided by the capacity is guaranteed to have a counter. Slices older than the
+ * window are cleared and reused, so memory stays at {@code capacity} counters per slice however many
+ * distinct keys are seen. A query merges the counters of the live slices and picks the top keys with a
+ * bounded heap.
+ */
+public class HeavyHitters {
+
+    private final long sliceMillis;
+    private final Summary[] slices;
+    private final long[] sliceEpochs;
+
+    /**
+     * Constructs a HeavyHitters tracker.
+     * The window moves in steps of one slice, so queries cover between {@code slices - 1} and
+     * {@code slices} slices of the past, including the current one.
+     *
+     * @param capacity     the number of counters per slice
+     * @param windowMillis the length of the window in milliseconds
+     * @param slices       the number of slices the window is divided into
+     */
+    public HeavyHitters(int capacity, long windowMillis, int slices) {
+        if (capacity <= 0 || slices <= 0 || windowMillis < slices) {
+            throw new IllegalArgumentException("Invalid capacity, window or slices");
+        }
+        this.sliceMillis = windowMillis / slices;
+        this.slices = new Summary[slices];
+        this.sliceEpochs = new long[slices];
+        for (int i = 0; i < slices; i++) {
+            this.slices[i] = new Summary(capacity);
+            this.sliceEpochs[i] = -1;
+        }
+    }
+
+    /**
+     * Adds weight to a key at the current time.
+     *
+     * @param key    the key, such as a product ID
+     * @param weight the weight to add, such as the units sold
+     */
+    public void add(int key, long weight) {
+        add(key, weight, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds weight to a key at a given time.
+     *
+     * @param key        the key
+     * @param weight     the weight to add
+     * @param nowMillis  the time in epoch milliseconds
+     */
+    public synchronized void add(int key, long weight, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        int index = (int) (epoch % slices.length);
+        if (sliceEpochs[index] != epoch) {
+            if (sliceEpochs[index] > epoch) {
+                return;
+            }
+            slices[index].clear();
+            sliceEpochs[index] = epoch;
+        }
+        slices[index].add(key, weight);
+    }
+
+    /**
+     * Gets the keys with the largest weight in the window ending now.
+     *
+     * @param limit the maximum number of keys
+     * @return the keys, largest weight first
+     */
+    public List<Entry> top(int limit) {
+        return top(limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the keys with the largest weight in the window ending at a given time.
+     *
+     * @param limit     the maximum number of keys
+     * @param nowMillis the end of the window in epoch milliseconds
+     * @return the keys, largest weight first
+     */
+    public synchronized List<Entry> top(int limit, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        Map<Integer, long[]> merged = new HashMap<>();
+        for (int i = 0; i < slices.length; i++) {
+            if (sliceEpochs[i] > epoch - slices.length && sliceEpochs[i] <= epoch) {
+                slices[i].forEach((key, count, error) -> {
+                    long[] sums = merged.computeIfAbsent(key, k -> new long[2]);
+                    sums[0] += count;
+                    sums[1] += error;
+                });
+            }
+        }
+
+        PriorityQueue<Entry> best = new PriorityQueue<>(Comparator.comparingLong(Entry::weight));
+        for (Map.Entry<Integer, long[]> entry : merged.entrySet()) {
+            if (best.size() < limit) {
+                best.add(new Entry(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            } else if (limit > 0 && entry.getValue()[0] > best.peek().weight()) {
+                best.poll();
+                best.add(new Entry(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+        }
+        List<Entry> top = new ArrayList<>(best);
+        top.sort(Comparator.comparingLong(Entry::weight).reversed());
+        return top;
+    }
+
+    /**
+     * A key and its estimated weight. The true weight lies between {@code weight - error} and {@code weight}.
+     *
+     * @param key    the key
+     * @param weight the estimated weight, never below the true weight
+     * @param error  the largest possible overestimate
+     */
+    public record Entry(int key, long weight, long error) {
+    }
+
+    @FunctionalInterface
+    private interface CounterConsumer {
+        void accept(int key, long count, long error);
+    }
+
+    /**
+     * The space-saving counters of one slice, kept in a min-heap by count with an index from key to position.
+     */
+    private static final class Summary {
+        private final int[] keys;
+        private final long[] counts;
+        private final long[] errors;
+        private final Map<Integer, Integer> positions;
+        private int size;
+
+        private Summary(int capacity) {
+            this.keys = new int[capacity];
+            this.counts = new long[capacity];
+            this.errors = new long[capacity];
+            this.positions = new HashMap<>(capacity * 2);
+        }
+
+        private void add(int key, long weight) {
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position] += weight;
+                siftDown(position);
+            } else if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = weight;
+                errors[size] = 0;
+                positions.put(key, size);
+                siftUp(size++);
+            } else {
+                positions.remove(keys[0]);
+                keys[0] = key;
+                errors[0] = counts[0];
+                counts[0] += weight;
+                positions.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        private void forEach(CounterConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(keys[i], counts[i], errors[i]);
+            }
+        }
+
+        private void clear() {
+            positions.clear();
+            size = 0;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (counts[parent] <= counts[position]) {
+                    return;
+                }
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(smallest, position);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int key = keys[a];
+            long count = counts[a];
+            long error = errors[a];
+            keys[a] = keys[b];
+            counts[a] = counts[b];
+            errors[a] = errors[b];
+            keys[b] = key;
+            counts[b] = count;
+            errors[b] = error;
+            positions.put(keys[a], a);
+            positions.put(keys[b], b);
+        }
+    }
+}
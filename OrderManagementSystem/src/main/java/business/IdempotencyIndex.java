@@ -0,0 +1,88 @@
+package business;
+
+import models.Bill;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The IdempotencyIndex class remembers the bills of recently submitted orders by their idempotency key,
+ * so that a retried submission is answered from memory. The index is bounded in size, drops the least
+ * recently used keys first and forgets keys after a fixed time to live; the purchase_idempotency table
+ * remains the authority for keys the index no longer holds.
+ */
+public class IdempotencyIndex {
+
+    /**
+     * The default maximum number of remembered keys.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    /**
+     * The default time a key is remembered.
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Constructs a new IdempotencyIndex.
+     *
+     * @param maxSize   the maximum number of remembered keys
+     * @param ttlMillis the time a key is remembered in milliseconds
+     */
+    public IdempotencyIndex(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the bill of the order submitted with a key.
+     *
+     * @param key the idempotency key
+     * @return the bill, or null if the key is not remembered
+     */
+    public synchronized Bill get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.addedAt > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.bill;
+    }
+
+    /**
+     * Remembers the bill of the order submitted with a key.
+     *
+     * @param key  the idempotency key
+     * @param bill the bill of the order
+     */
+    public synchronized void put(String key, Bill bill) {
+        entries.put(key, new Entry(bill, System.nanoTime()));
+    }
+
+    /**
+     * Gets the number of remembered keys, including expired keys not yet dropped.
+     *
+     * @return the number of keys
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(Bill bill, long addedAt) {
+    }
+}
@@ -0,0 +1,448 @@
+package business;
+
+import data.ClientDAO;
+import data.LogDAO;
+import data.ProductDAO;
+import data.PurchaseDAO;
+import data.SalesSummaryDAO;
+import data.Transactions;
+import models.Bill;
+import models.Client;
+import models.Product;
+import models.Purchase;
+import models.PurchaseResult;
+import models.PurchaseResult.Failure;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The OrderIntake class is the asynchronous order placement mode of the purchase business logic.
+ * <p>
+ * Orders are accepted into a bounded ring buffer and validated in parallel by several validator threads,
+ * which check the client and product against the entity caches. A single writer thread then collects
+ * validated orders until the batch is full or the linger time has passed, and group-commits them:
+ * one transaction with one batch of conditional stock decrements (in ascending product ID order),
+ * one batch of purchase inserts, one batch of bill inserts and one batch per sales summary table.
+ * Callers get a future that completes with the order ID and bill once the group has committed, or with
+ * the reason the order was refused. A group that fails to write is refused with {@link Failure#OVERLOADED}
+ * for transient database errors and {@link Failure#ERROR} otherwise; the threads keep running either way.
+ */
+public class OrderIntake implements AutoCloseable {
+
+    /**
+     * The default capacity of the intake ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The default maximum number of orders committed together.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The default time the writer waits for a batch to fill.
+     */
+    public static final long DEFAULT_LINGER_MILLIS = 2;
+
+    private final DataSource dataSource;
+    private final PurchaseDAO purchaseDAO;
+    private final ProductDAO productDAO;
+    private final ClientDAO clientDAO;
+    private final LogDAO logDAO;
+    private final SalesSummaryDAO salesSummaryDAO;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int validatorCount;
+
+    private final BlockingQueue<OrderRequest> intake;
+    private final BlockingQueue<OrderRequest> validated;
+    private final List<Thread> validators = new ArrayList<>();
+    private Thread writer;
+    private volatile boolean accepting = true;
+    private volatile boolean validating = true;
+    private volatile boolean writing = true;
+
+    /**
+     * Constructs an OrderIntake with the default capacity, batch size and linger time.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public OrderIntake(DataSource dataSource) {
+        this(dataSource, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_LINGER_MILLIS,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an OrderIntake. Orders are accepted into the ring buffer but not processed until {@link #start()} is called.
+     *
+     * @param dataSource     the data source providing database connections
+     * @param capacity       the capacity of the intake ring buffer
+     * @param batchSize      the maximum number of orders committed together
+     * @param lingerMillis   how long the writer waits for a batch to fill once it has an order
+     * @param validatorCount the number of validator threads
+     */
+    public OrderIntake(DataSource dataSource, int capacity, int batchSize, long lingerMillis, int validatorCount) {
+        this.dataSource = dataSource;
+        this.purchaseDAO = new PurchaseDAO(dataSource);
+        this.productDAO = new ProductDAO(dataSource);
+        this.clientDAO = new ClientDAO(dataSource);
+        this.logDAO = new LogDAO(dataSource);
+        this.salesSummaryDAO = new SalesSummaryDAO(dataSource);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.intake = new ArrayBlockingQueue<>(capacity);
+        this.validated = new ArrayBlockingQueue<>(capacity);
+        this.validatorCount = validatorCount;
+    }
+
+    /**
+     * Starts the validator and writer threads.
+     */
+    public void start() {
+        for (int i = 0; i < validatorCount; i++) {
+            validators.add(startThread("order-validator-" + i, this::validateLoop));
+        }
+        writer = startThread("order-writer", this::writeLoop);
+    }
+
+    private static Thread startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Submits an order without waiting for it to be written.
+     * If the ring buffer is full or the intake is closed the order is refused immediately with
+     * {@link Failure#OVERLOADED}.
+     *
+     * @param clientId  the ID of the client making the purchase
+     * @param productId the ID of the product being purchased
+     * @param quantity  the quantity of the product being purchased
+     * @return a future completing with the result of the order
+     */
+    public CompletableFuture<PurchaseResult> submit(int clientId, int productId, int quantity) {
+        OrderRequest request = new OrderRequest(clientId, productId, quantity);
+        if (!accepting || !intake.offer(request)) {
+            request.complete(PurchaseResult.failure(Failure.OVERLOADED));
+        } else if (!accepting && intake.remove(request)) {
+            // close() may have drained the ring buffer before the order was offered
+            request.complete(PurchaseResult.failure(Failure.OVERLOADED));
+        }
+        return request;
+    }
+
+    /**
+     * Withdraws a submitted order that the writer has not taken into a group yet, refusing it with
+     * {@link Failure#OVERLOADED}. An order the writer has taken may still be committed, so it cannot be withdrawn.
+     *
+     * @param order a future returned by {@link #submit(int, int, int)}
+     * @return true if the order will not be written, false if it is being written
+     * @throws IllegalArgumentException if the future was not returned by this intake
+     */
+    public boolean withdraw(CompletableFuture<PurchaseResult> order) {
+        if (!(order instanceof OrderRequest request)) {
+            throw new IllegalArgumentException("Not an order of the intake");
+        }
+        if (request.taken.compareAndSet(false, true)) {
+            request.complete(PurchaseResult.failure(Failure.OVERLOADED));
+            return true;
+        }
+        return order.isDone() && !order.join().isSuccess();
+    }
+
+    /**
+     * Validates orders from the ring buffer and hands the valid ones to the writer.
+     */
+    private void validateLoop() {
+        while (validating) {
+            OrderRequest request;
+            try {
+                request = intake.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == null || request.isDone()) {
+                continue;
+            }
+            try {
+                if (!validate(request)) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                request.complete(PurchaseBLL.failedWith(e));
+                continue;
+            }
+            try {
+                validated.put(request);
+            } catch (InterruptedException e) {
+                request.complete(PurchaseResult.failure(Failure.ERROR));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks an order against the entity caches, completing its future if the order is refused.
+     *
+     * @param request the order to check
+     * @return true if the order can be handed to the writer
+     */
+    private boolean validate(OrderRequest request) {
+        if (request.quantity <= 0) {
+            request.complete(PurchaseResult.failure(Failure.INVALID_QUANTITY));
+            return false;
+        }
+        Product product = productDAO.findObject(request.productId, Product.class);
+        if (product == null) {
+            request.complete(PurchaseResult.failure(Failure.PRODUCT_NOT_FOUND));
+            return false;
+        }
+        if (product.getStock() < request.quantity) {
+            request.complete(PurchaseResult.failure(Failure.OUT_OF_STOCK));
+            return false;
+        }
+        if (clientDAO.findObject(request.clientId, Client.class) == null) {
+            request.complete(PurchaseResult.failure(Failure.CLIENT_NOT_FOUND));
+            return false;
+        }
+        request.price = product.getPrice();
+        return true;
+    }
+
+    /**
+     * Collects validated orders into groups and commits each group in one transaction.
+     * Orders withdrawn before the writer takes them are skipped.
+     */
+    private void writeLoop() {
+        List<OrderRequest> group = new ArrayList<>(batchSize);
+        while (writing || !validated.isEmpty()) {
+            try {
+                OrderRequest first = validated.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                if (first.taken.compareAndSet(false, true)) {
+                    group.add(first);
+                }
+                long deadline = System.nanoTime() + lingerNanos;
+                while (group.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    OrderRequest next = remaining > 0 ? validated.poll(remaining, TimeUnit.NANOSECONDS) : validated.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.taken.compareAndSet(false, true)) {
+                        group.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                writing = false;
+            }
+
+            if (!group.isEmpty()) {
+                try {
+                    commitGroup(group);
+                } catch (RuntimeException e) {
+                    failAll(group, PurchaseBLL.failedWith(e).failure());
+                } finally {
+                    group.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a group of validated orders in one transaction and completes their futures.
+     *
+     * @param group the orders to write
+     */
+    private void commitGroup(List<OrderRequest> group) {
+        List<OrderRequest> ordered = new ArrayList<>(group);
+        ordered.sort(Comparator.comparingInt(request -> request.productId));
+
+        List<OrderRequest> accepted = new ArrayList<>(ordered.size());
+        List<Bill> bills = new ArrayList<>(ordered.size());
+        try {
+            boolean written = Transactions.execute(dataSource, connection -> {
+                int[] productIds = new int[ordered.size()];
+                int[] quantities = new int[ordered.size()];
+                for (int i = 0; i < ordered.size(); i++) {
+                    productIds[i] = ordered.get(i).productId;
+                    quantities[i] = ordered.get(i).quantity;
+                }
+                int[] counts = productDAO.tryDecrementStocks(productIds, quantities);
+                if (counts == null) {
+                    connection.rollback();
+                    return false;
+                }
+
+                Timestamp date = new Timestamp(System.currentTimeMillis());
+                List<Purchase> purchases = new ArrayList<>(ordered.size());
+                for (int i = 0; i < ordered.size(); i++) {
+                    if (counts[i] > 0) {
+                        OrderRequest request = ordered.get(i);
+                        accepted.add(request);
+                        purchases.add(new Purchase(-1, request.clientId, request.productId, request.quantity, date));
+                    }
+                }
+                if (purchases.isEmpty()) {
+                    return true;
+                }
+
+                int[] ids = purchaseDAO.addObjects(purchases, purchases.size());
+                if (Arrays.stream(ids).anyMatch(id -> id < 0)) {
+                    connection.rollback();
+                    return false;
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    OrderRequest request = accepted.get(i);
+                    request.orderId = ids[i];
+                    bills.add(new Bill(ids[i], request.quantity * request.price, date));
+                }
+                if (!logDAO.addBills(bills) || !addSales(accepted, date)) {
+                    connection.rollback();
+                    return false;
+                }
+                return true;
+            });
+
+            if (!written) {
+                failAll(group, Failure.ERROR);
+                return;
+            }
+        } catch (SQLException e) {
+            failAll(group, PurchaseBLL.failedWith(e).failure());
+            return;
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).complete(PurchaseResult.success(accepted.get(i).orderId, bills.get(i)));
+        }
+        failAll(group, Failure.OUT_OF_STOCK);
+    }
+
+    /**
+     * Adds the orders of a group to the sales summary tables, summed per product, per client and per row
+     * of the day, so that each row is updated once per group and the rows are locked in ascending order.
+     *
+     * @param orders the orders written
+     * @param date   the date of the orders
+     * @return true if the summaries were updated, false otherwise
+     */
+    private boolean addSales(List<OrderRequest> orders, Timestamp date) {
+        Map<Integer, double[]> products = new TreeMap<>();
+        Map<Integer, double[]> clients = new TreeMap<>();
+        Map<Integer, double[]> shards = new TreeMap<>();
+        for (OrderRequest order : orders) {
+            double amount = order.quantity * order.price;
+            addTo(products, order.productId, order.quantity, amount);
+            addTo(clients, order.clientId, 1, amount);
+            addTo(shards, SalesSummaryDAO.shardOf(order.clientId), 1, amount);
+        }
+        Sums productSums = Sums.of(products);
+        Sums clientSums = Sums.of(clients);
+        Sums shardSums = Sums.of(shards);
+        return salesSummaryDAO.addProductSales(productSums.keys, productSums.counts, productSums.amounts)
+                && salesSummaryDAO.addClientSales(clientSums.keys, clientSums.counts, clientSums.amounts)
+                && salesSummaryDAO.addDailyRevenue(date, shardSums.keys, shardSums.counts, shardSums.amounts);
+    }
+
+    private static void addTo(Map<Integer, double[]> sums, int key, int count, double amount) {
+        double[] sum = sums.computeIfAbsent(key, k -> new double[2]);
+        sum[0] += count;
+        sum[1] += amount;
+    }
+
+    /**
+     * Counts and amounts summed per key, as parallel arrays in ascending key order.
+     */
+    private record Sums(int[] keys, int[] counts, double[] amounts) {
+
+        private static Sums of(Map<Integer, double[]> sums) {
+            Sums result = new Sums(new int[sums.size()], new int[sums.size()], new double[sums.size()]);
+            int index = 0;
+            for (Map.Entry<Integer, double[]> entry : sums.entrySet()) {
+                result.keys[index] = entry.getKey();
+                result.counts[index] = (int) entry.getValue()[0];
+                result.amounts[index++] = entry.getValue()[1];
+            }
+            return result;
+        }
+    }
+
+    private static void failAll(List<OrderRequest> requests, Failure failure) {
+        for (OrderRequest request : requests) {
+            request.complete(PurchaseResult.failure(failure));
+        }
+    }
+
+    /**
+     * Stops accepting orders, writes the orders already validated and stops the threads.
+     * The validators are stopped first, so that the writer also writes the orders they were validating.
+     * Orders still waiting for validation are refused with {@link Failure#OVERLOADED}, as is every order left
+     * in either queue if waiting for the threads is interrupted.
+     */
+    @Override
+    public void close() {
+        accepting = false;
+        validating = false;
+        joinAll(validators);
+        writing = false;
+        if (writer != null) {
+            joinAll(List.of(writer));
+        }
+        refuseAll(intake);
+        refuseAll(validated);
+    }
+
+    private static void joinAll(List<Thread> threads) {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void refuseAll(BlockingQueue<OrderRequest> queue) {
+        OrderRequest request;
+        while ((request = queue.poll()) != null) {
+            request.complete(PurchaseResult.failure(Failure.OVERLOADED));
+        }
+    }
+
+    /**
+     * An order waiting in the pipeline, completed with its result.
+     */
+    private static final class OrderRequest extends CompletableFuture<PurchaseResult> {
+        private final int clientId;
+        private final int productId;
+        private final int quantity;
+        private final AtomicBoolean taken = new AtomicBoolean();
+        private double price;
+        private int orderId;
+
+        private OrderRequest(int clientId, int productId, int quantity) {
+            this.clientId = clientId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+}
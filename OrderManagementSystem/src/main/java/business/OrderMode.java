@@ -0,0 +1,40 @@
+package business;
+
+import java.util.Locale;
+
+/**
+ * The OrderMode enum lists the ways the order paths can check and decrement stock.
+ * The mode is chosen at startup with the {@value #PROPERTY} system property, for example
+ * {@code -Dorders.mode=stock_engine}; without it orders use {@link #DIRECT}.
+ */
+public enum OrderMode {
+    /**
+     * Every order checks and decrements stock in the database, in its own transaction.
+     */
+    DIRECT,
+    /**
+     * Stock is reserved in a {@link StockEngine} and subtracted from the database in the background.
+     */
+    STOCK_ENGINE,
+    /**
+     * Single-product orders without an idempotency key are queued in an {@link OrderIntake} and written
+     * in groups, one transaction per group; other orders are written as in {@link #DIRECT}.
+     */
+    GROUP_COMMIT;
+
+    /**
+     * The system property holding the mode.
+     */
+    public static final String PROPERTY = "orders.mode";
+
+    /**
+     * Reads the mode from the {@value #PROPERTY} system property, ignoring case.
+     *
+     * @return the mode, or {@link #DIRECT} if the property is not set
+     * @throws IllegalArgumentException if the property names no mode
+     */
+    public static OrderMode fromSystemProperties() {
+        String mode = System.getProperty(PROPERTY);
+        return mode == null || mode.isBlank() ? DIRECT : valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -1,9 +1,12 @@
 package business;
 
+import data.EventLog;
 import data.ProductDAO;
+import models.Event;
 import models.Product;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -11,14 +14,67 @@ import java.util.List;
  */
 public class ProductBLL {
     private final ProductDAO productDAO;
+    private final StockEngine stockEngine;
+    private final EventLog eventLog;
 
     /**
-     * Constructs a new ProductBLL instance with the specified database connection.
+     * Constructs a new ProductBLL instance with the specified data source.
      *
-     * @param connection the database connection
+     * @param dataSource the data source providing database connections
      */
-    public ProductBLL(Connection connection) {
-        this.productDAO = new ProductDAO(connection);
+    public ProductBLL(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    /**
+     * Constructs a new ProductBLL instance with the specified data source and stock engine.
+     * Products added, edited or deleted are reported to the engine so that its stock stays current.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine, or null if stock is not tracked in memory
+     */
+    public ProductBLL(DataSource dataSource, StockEngine stockEngine) {
+        this(dataSource, stockEngine, null);
+    }
+
+    /**
+     * Constructs a new ProductBLL instance with the specified data source, stock engine and event log.
+     * Changes of stock and price are recorded in the event log.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine, or null if stock is not tracked in memory
+     * @param eventLog    the event log, or null if changes are not recorded
+     */
+    public ProductBLL(DataSource dataSource, StockEngine stockEngine, EventLog eventLog) {
+        this.productDAO = new ProductDAO(dataSource);
+        this.stockEngine = stockEngine;
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Reports a product written to the database to the stock engine and records the changes of its
+     * stock and price in the event log, if there are any.
+     *
+     * @param id       the ID of the product
+     * @param product  the product as written
+     * @param previous the product before it was written, or null for a new product
+     */
+    private void productWritten(int id, Product product, Product previous) {
+        if (id <= 0) {
+            return;
+        }
+        if (stockEngine != null) {
+            stockEngine.track(id);
+        }
+        if (eventLog != null) {
+            int stockBefore = previous != null ? previous.getStock() : 0;
+            if (product.getStock() != stockBefore) {
+                eventLog.append(Event.stockAdjusted(id, product.getStock() - stockBefore, -1));
+            }
+            if (previous == null || product.getPrice() != previous.getPrice()) {
+                eventLog.append(Event.productRepriced(id, product.getPrice()));
+            }
+        }
     }
 
     /**
@@ -44,7 +100,42 @@ public class ProductBLL {
         if (!isValidPrice(product.getPrice())) {
             return -2;
         }
-        return productDAO.addObject(product);
+        int id = productDAO.addObject(product);
+        productWritten(id, product, null);
+        return id;
+    }
+
+    /**
+     * Adds a list of new products to the database with batched inserts.
+     * Products without an ID are not looked up, since they cannot already exist.
+     *
+     * @param products the products to add
+     * @return for each product, in input order, the ID of the added product, -1 if it already exists,
+     * -2 if its price is invalid, or -3 if it was valid but its insert failed
+     */
+    public int[] addProducts(List<Product> products) {
+        int[] results = new int[products.size()];
+        List<Product> valid = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product.getId() > 0 && productDAO.findObject(product.getId(), Product.class) != null) {
+                results[i] = -1;
+            } else if (!isValidPrice(product.getPrice())) {
+                results[i] = -2;
+            } else {
+                valid.add(product);
+            }
+        }
+
+        int[] keys = productDAO.addObjects(valid);
+        for (int i = 0, k = 0; i < results.length; i++) {
+            if (results[i] == 0) {
+                int key = keys[k++];
+                productWritten(key, products.get(i), null);
+                results[i] = key > 0 ? key : -3;
+            }
+        }
+        return results;
     }
 
     /**
@@ -54,10 +145,12 @@ public class ProductBLL {
      * @return 0 if the product was updated successfully, or a negative value indicating an error
      */
     public int updateProduct(Product product) {
-        if (productDAO.findObject(product.getId(), Product.class) == null) {
+        Product previous = productDAO.findObject(product.getId(), Product.class);
+        if (previous == null) {
             return -1;
         }
         productDAO.editObject(product.getId(), product);
+        productWritten(product.getId(), product, previous);
         return 0;
     }
 
@@ -68,13 +161,36 @@ public class ProductBLL {
      * @return 0 if the product was deleted successfully, or a negative value indicating an error
      */
     public int deleteProduct(int productId) {
-        if (productDAO.findObject(productId, Product.class) == null) {
+        Product previous = productDAO.findObject(productId, Product.class);
+        if (previous == null) {
             return -1;
         }
         productDAO.deleteObject(productId);
+        if (stockEngine != null) {
+            stockEngine.forget(productId);
+        }
+        if (eventLog != null && previous.getStock() != 0) {
+            eventLog.append(Event.stockAdjusted(productId, -previous.getStock(), -1));
+        }
         return 0;
     }
 
+    /**
+     * Switches a product to or from hot mode in the stock engine, spreading its stock over several buckets
+     * so that a flash sale on it scales across threads.
+     *
+     * @param productId the ID of the product
+     * @param buckets   the number of stock buckets, or 1 to switch hot mode off
+     * @return 0 if the mode was changed, -1 if the product is not tracked, or -2 if the number of buckets
+     * is invalid or there is no stock engine
+     */
+    public int setHotProduct(int productId, int buckets) {
+        if (stockEngine == null || buckets <= 0) {
+            return -2;
+        }
+        return stockEngine.setHot(productId, buckets) ? 0 : -1;
+    }
+
     /**
      * Retrieves all products from the database.
      *
@@ -83,4 +199,28 @@ public class ProductBLL {
     public List<Product> getAllProducts() {
         return productDAO.getAllObjects();
     }
+
+    /**
+     * Retrieves one page of products ordered by ID.
+     *
+     * @param afterId the ID of the last product of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit   the maximum number of products to return
+     * @return the products of the page
+     */
+    public List<Product> getProductPage(int afterId, int limit) {
+        return productDAO.findPage(afterId, limit);
+    }
+
+    /**
+     * Retrieves one page of products ordered by the given column and then by ID.
+     *
+     * @param sortColumn the column to order by
+     * @param afterValue the sort column value of the last product of the previous page, which may be null
+     * @param afterId    the ID of the last product of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit      the maximum number of products to return
+     * @return the products of the page
+     */
+    public List<Product> getProductPage(String sortColumn, Object afterValue, int afterId, int limit) {
+        return productDAO.findPage(sortColumn, afterValue, afterId, limit);
+    }
 }
\ No newline at end of file
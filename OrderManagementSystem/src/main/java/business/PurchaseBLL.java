@@ -3,68 +3,714 @@ package business;
 import data.*;
 import models.Bill;
 import models.Client;
+import models.ClientSales;
+import models.DailyRevenue;
+import models.Event;
+import models.OrderLine;
+import models.OrderSummary;
 import models.Product;
+import models.ProductSales;
 import models.Purchase;
+import models.PurchaseResult;
+import models.PurchaseResult.Failure;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * The PurchaseBLL class provides business logic methods for handling purchases.
+ * An instance holds no per-call state, so one instance can be shared by all threads.
  */
 public class PurchaseBLL {
+
+    /**
+     * How long an order placed through the order intake may wait before it is withdrawn.
+     */
+    public static final long QUEUED_ORDER_TIMEOUT_MILLIS = 5000;
+
+    private static final int SUMMARY_PAGE_SIZE = 256;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    /**
+     * The result of an order rolled back because a concurrent submission recorded its idempotency key first.
+     * It is an ordinary {@link Failure#ERROR} to the write paths and is told apart from other errors by
+     * identity only, in {@link #settleIdempotencyKey(String, PurchaseResult)}, which replaces it with the
+     * other submission's order; it is never returned to callers.
+     */
+    private static final PurchaseResult KEY_TAKEN = PurchaseResult.failure(Failure.ERROR);
+
+    /**
+     * The time windows of the top sellers: the last hour in one-minute slices
+     * and the last day in one-hour slices.
+     */
+    public enum SalesWindow {
+        LAST_HOUR(TimeUnit.HOURS.toMillis(1), 60),
+        LAST_DAY(TimeUnit.DAYS.toMillis(1), 24);
+
+        private final long millis;
+        private final int slices;
+
+        SalesWindow(long millis, int slices) {
+            this.millis = millis;
+            this.slices = slices;
+        }
+
+        long millis() {
+            return millis;
+        }
+
+        int slices() {
+            return slices;
+        }
+    }
+
+    private final DataSource dataSource;
     private final PurchaseDAO purchaseDAO;
     private final ProductDAO productDAO;
     private final ClientDAO clientDAO;
     private final LogDAO logDAO;
-    private Bill bill;
+    private final OrderLineDAO orderLineDAO;
+    private final SalesSummaryDAO salesSummaryDAO;
+    private final StockDeltaDAO stockDeltaDAO;
+    private final SalesSnapshot salesSnapshot;
+    private final StockEngine stockEngine;
+    private final OrderIntake orderIntake;
+    private final EventLog eventLog;
+    private final TopSellers topSellers;
+    private final IdempotencyIndex idempotencyIndex;
+
+    /**
+     * Constructs a new PurchaseBLL instance with the specified data source.
+     * Stock is checked and decremented in the database.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public PurchaseBLL(DataSource dataSource) {
+        this(dataSource, null);
+    }
 
     /**
-     * Constructs a new PurchaseBLL instance with the specified database connection.
+     * Constructs a new PurchaseBLL instance with the specified data source and stock engine.
+     * Stock is reserved in the engine, so orders for products out of stock are rejected without
+     * a database round trip. The sold units are journaled with the order, and the engine subtracts
+     * them from the product table in the background.
      *
-     * @param connection the database connection
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine, or null to check and decrement stock in the database
      */
-    public PurchaseBLL(Connection connection) {
-        this.purchaseDAO = new PurchaseDAO(connection);
-        this.productDAO = new ProductDAO(connection);
-        this.clientDAO = new ClientDAO(connection);
-        this.logDAO = new LogDAO(connection);
+    public PurchaseBLL(DataSource dataSource, StockEngine stockEngine) {
+        this(dataSource, stockEngine, null);
+    }
+
+    /**
+     * Constructs a new PurchaseBLL instance with the specified data source, stock engine and bill journal.
+     * With a journal, bills are written behind: an order waits for its bill to be durable in the local
+     * journal rather than for an insert into the log table.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine, or null to check and decrement stock in the database
+     * @param billJournal the bill journal, or null to insert bills into the log table directly
+     */
+    public PurchaseBLL(DataSource dataSource, StockEngine stockEngine, BillJournal billJournal) {
+        this(dataSource, stockEngine, billJournal, null);
+    }
+
+    /**
+     * Constructs a new PurchaseBLL instance that also records every placed order in an event log.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine, or null to check and decrement stock in the database
+     * @param billJournal the bill journal, or null to insert bills into the log table directly
+     * @param eventLog    the event log, or null if orders are not recorded
+     */
+    public PurchaseBLL(DataSource dataSource, StockEngine stockEngine, BillJournal billJournal, EventLog eventLog) {
+        this(dataSource, stockEngine, null, billJournal, eventLog);
+    }
+
+    /**
+     * Constructs a new PurchaseBLL instance for the given order mode: stock reserved in a stock engine,
+     * single-product orders group-committed by an order intake, or neither.
+     * The group-committed orders are not written through the bill journal.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine, or null to check and decrement stock in the database
+     * @param orderIntake the order intake, or null to write every order in its own transaction
+     * @param billJournal the bill journal, or null to insert bills into the log table directly
+     * @param eventLog    the event log, or null if orders are not recorded
+     * @throws IllegalArgumentException if both a stock engine and an order intake are given
+     */
+    public PurchaseBLL(DataSource dataSource, StockEngine stockEngine, OrderIntake orderIntake,
+                       BillJournal billJournal, EventLog eventLog) {
+        this(dataSource, stockEngine, orderIntake, billJournal, eventLog, new TopSellers(),
+                new IdempotencyIndex(IdempotencyIndex.DEFAULT_MAX_SIZE, IdempotencyIndex.DEFAULT_TTL_MILLIS));
+    }
+
+    /**
+     * Constructs a new PurchaseBLL instance for the given order mode that counts its orders in the given
+     * top sellers and remembers idempotency keys in the given index, which may be shared with other instances.
+     *
+     * @param dataSource       the data source providing database connections
+     * @param stockEngine      the stock engine, or null to check and decrement stock in the database
+     * @param orderIntake      the order intake, or null to write every order in its own transaction
+     * @param billJournal      the bill journal, or null to insert bills into the log table directly
+     * @param eventLog         the event log, or null if orders are not recorded
+     * @param topSellers       the top sellers placed orders are counted in
+     * @param idempotencyIndex the index remembering the bills of recent idempotency keys
+     * @throws IllegalArgumentException if both a stock engine and an order intake are given
+     */
+    public PurchaseBLL(DataSource dataSource, StockEngine stockEngine, OrderIntake orderIntake,
+                       BillJournal billJournal, EventLog eventLog, TopSellers topSellers,
+                       IdempotencyIndex idempotencyIndex) {
+        if (stockEngine != null && orderIntake != null) {
+            throw new IllegalArgumentException("The stock engine and the order intake cannot be used together");
+        }
+        this.dataSource = dataSource;
+        this.stockEngine = stockEngine;
+        this.orderIntake = orderIntake;
+        this.eventLog = eventLog;
+        this.topSellers = topSellers;
+        this.idempotencyIndex = idempotencyIndex;
+        this.purchaseDAO = new PurchaseDAO(dataSource);
+        this.productDAO = new ProductDAO(dataSource);
+        this.clientDAO = new ClientDAO(dataSource);
+        this.logDAO = new LogDAO(dataSource, billJournal);
+        this.orderLineDAO = new OrderLineDAO(dataSource);
+        this.salesSummaryDAO = new SalesSummaryDAO(dataSource);
+        this.stockDeltaDAO = new StockDeltaDAO(dataSource);
+        this.salesSnapshot = new SalesSnapshot(dataSource);
     }
 
     /**
      * Creates a new purchase with the given client, product, and quantity.
+     * The stock decrement, the purchase and its bill are written in one transaction; the stock is
+     * decremented with a conditional update, so concurrent orders can never oversell a product.
+     * On success the stock of the given product is refreshed from the database.
+     * With a stock engine the units are reserved in memory first instead, and the purchase and its
+     * bill are written in one transaction; the reservation is committed or released afterwards.
+     *
+     * @param client   the client making the purchase
+     * @param product  the product being purchased
+     * @param quantity the quantity of the product being purchased
+     * @return the order ID and bill of the created purchase, or the reason it was refused
+     */
+    public PurchaseResult createPurchase(Client client, Product product, int quantity) {
+        return createPurchase(client, product, quantity, null);
+    }
+
+    /**
+     * Creates a new purchase with the given client, product, and quantity, at most once per idempotency key.
+     * If an order was already created with the key, no purchase is written and the earlier order is returned.
+     * Recently used keys are answered from memory; the key is also recorded in the same transaction as the
+     * purchase, so a retry racing the original cannot create a second purchase.
+     *
+     * @param client         the client making the purchase
+     * @param product        the product being purchased
+     * @param quantity       the quantity of the product being purchased
+     * @param idempotencyKey the key identifying the submission, at most 64 characters, or null for none
+     * @return the order ID and bill of the created or earlier purchase, or the reason it was refused
+     */
+    public PurchaseResult createPurchase(Client client, Product product, int quantity, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            PurchaseResult replayed = replayOrder(idempotencyKey);
+            if (replayed != null) {
+                return replayed;
+            }
+        }
+        if (quantity <= 0) {
+            return PurchaseResult.failure(Failure.INVALID_QUANTITY);
+        }
+        if (orderIntake != null && idempotencyKey == null) {
+            return createQueuedPurchase(client, product, quantity);
+        }
+        PurchaseResult result = stockEngine != null
+                ? createReservedPurchase(client, product, quantity, idempotencyKey)
+                : createDirectPurchase(client, product, quantity, idempotencyKey);
+        return settleIdempotencyKey(idempotencyKey, result);
+    }
+
+    /**
+     * Creates a purchase through the order intake and waits until its group is written.
+     * An order still waiting after {@link #QUEUED_ORDER_TIMEOUT_MILLIS} is withdrawn and reported as
+     * {@link Failure#OVERLOADED}; an order the writer has already taken is waited for, since it may commit.
      *
      * @param client   the client making the purchase
      * @param product  the product being purchased
      * @param quantity the quantity of the product being purchased
-     * @return the ID of the created purchase, or a negative value indicating an error
+     * @return the result of the purchase
      */
-    public int createPurchase(Client client, Product product, int quantity) {
-        if (!isStockValid(product, quantity)) {
-            System.out.println("Under-stock message: Not enough products available.");
-            return -1;
+    private PurchaseResult createQueuedPurchase(Client client, Product product, int quantity) {
+        CompletableFuture<PurchaseResult> order = orderIntake.submit(client.getId(), product.getId(), quantity);
+        PurchaseResult result;
+        try {
+            result = order.get(QUEUED_ORDER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            orderIntake.withdraw(order);
+            result = order.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            orderIntake.withdraw(order);
+            result = order.join();
+        } catch (ExecutionException | CancellationException e) {
+            return PurchaseResult.failure(Failure.ERROR);
         }
-        if (productDAO.findObject(product.getId(), Product.class) == null) {
-            return -2;
+        if (result.isSuccess()) {
+            Bill bill = result.bill();
+            recordEvents(Event.purchaseCreated(result.orderId(), client.getId(), product.getId(), quantity,
+                    bill.totalAmount(), bill.timestamp()));
+            recordTopSellers(client.getId(), new int[]{product.getId()}, new int[]{quantity}, bill.totalAmount());
         }
-        if (clientDAO.findObject(client.getId(), Client.class) == null) {
-            return -3;
+        return result;
+    }
+
+    /**
+     * Creates a purchase whose stock is decremented in the database.
+     *
+     * @param client         the client making the purchase
+     * @param product        the product being purchased
+     * @param quantity       the quantity of the product being purchased
+     * @param idempotencyKey the key identifying the submission, or null for none
+     * @return the result of the purchase
+     */
+    private PurchaseResult createDirectPurchase(Client client, Product product, int quantity, String idempotencyKey) {
+        try {
+            return Transactions.execute(dataSource, connection -> {
+                int updated = productDAO.decrementStock(product.getId(), quantity);
+                if (updated <= 0) {
+                    connection.rollback();
+                    if (updated < 0) {
+                        return PurchaseResult.failure(Failure.ERROR);
+                    }
+                    if (productDAO.findObject(product.getId(), Product.class) == null) {
+                        return PurchaseResult.failure(Failure.PRODUCT_NOT_FOUND);
+                    }
+                    System.out.println("Under-stock message: Not enough products available.");
+                    return PurchaseResult.failure(Failure.OUT_OF_STOCK);
+                }
+                if (clientDAO.findObject(client.getId(), Client.class) == null) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.CLIENT_NOT_FOUND);
+                }
+                Product current = productDAO.findObject(product.getId(), Product.class);
+                if (current == null) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.ERROR);
+                }
+
+                PurchaseResult result = writePurchase(connection, client, product, quantity,
+                        current.getPrice(), idempotencyKey);
+                if (result.isSuccess()) {
+                    product.setStock(current.getStock());
+                }
+                return result;
+            });
+        } catch (SQLException e) {
+            return failedWith(e);
+        }
+    }
+
+    /**
+     * Turns an error that rolled back an order into the result reported to the caller.
+     * Lock timeouts, deadlocks and other transient database errors leave nothing written and may succeed
+     * when retried, so they are reported as {@link Failure#OVERLOADED}. Any other error is printed and
+     * reported as {@link Failure#ERROR}.
+     *
+     * @param e the error that rolled back the order
+     * @return the failed result
+     */
+    static PurchaseResult failedWith(Exception e) {
+        if (e instanceof SQLTransientException) {
+            return PurchaseResult.failure(Failure.OVERLOADED);
         }
+        e.printStackTrace();
+        return PurchaseResult.failure(Failure.ERROR);
+    }
 
+    /**
+     * Creates a purchase whose stock is reserved in the stock engine.
+     *
+     * @param client         the client making the purchase
+     * @param product        the product being purchased
+     * @param quantity       the quantity of the product being purchased
+     * @param idempotencyKey the key identifying the submission, or null for none
+     * @return the result of the purchase
+     */
+    private PurchaseResult createReservedPurchase(Client client, Product product, int quantity, String idempotencyKey) {
+        int[] productIds = {product.getId()};
+        int[] quantities = {quantity};
+        Failure refused = reserveStocks(productIds, quantities);
+        if (refused != null) {
+            return PurchaseResult.failure(refused);
+        }
+
+        PurchaseResult result = PurchaseResult.failure(Failure.ERROR);
+        try {
+            result = Transactions.execute(dataSource, connection -> {
+                if (clientDAO.findObject(client.getId(), Client.class) == null) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.CLIENT_NOT_FOUND);
+                }
+                Product current = productDAO.findObject(product.getId(), Product.class);
+                if (current == null) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.PRODUCT_NOT_FOUND);
+                }
+                return writePurchase(connection, client, product, quantity, current.getPrice(), idempotencyKey);
+            });
+        } catch (SQLException e) {
+            result = failedWith(e);
+        } finally {
+            settleStocks(productIds, quantities, result.isSuccess());
+        }
+        if (result.isSuccess()) {
+            product.setStock(stockEngine.getAvailable(product.getId()));
+        }
+        return result;
+    }
+
+    /**
+     * Writes a purchase, its bill and its idempotency key inside the current transaction,
+     * rolling the transaction back if any of them cannot be written.
+     *
+     * @param connection     the connection of the transaction
+     * @param client         the client making the purchase
+     * @param product        the product being purchased
+     * @param quantity       the quantity of the product being purchased
+     * @param price          the current unit price of the product
+     * @param idempotencyKey the key identifying the submission, or null for none
+     * @return the result of the purchase
+     * @throws SQLException if the rollback fails
+     */
+    private PurchaseResult writePurchase(Connection connection, Client client, Product product, int quantity,
+                                         double price, String idempotencyKey) throws SQLException {
         Timestamp date = new Timestamp(System.currentTimeMillis());
         Purchase purchase = new Purchase(-1, client.getId(), product.getId(), quantity, date);
 
         int id = purchaseDAO.addObject(purchase);
+        if (id < 0) {
+            connection.rollback();
+            return PurchaseResult.failure(Failure.ERROR);
+        }
         purchase.setId(id);
+        if (stockEngine != null && !stockDeltaDAO.addDeltas(id, new int[]{product.getId()}, new int[]{quantity})) {
+            connection.rollback();
+            return PurchaseResult.failure(Failure.ERROR);
+        }
 
-        product.setStock(product.getStock() - quantity);
-        productDAO.editObject(product.getId(), product);
+        Bill bill = generateBill(logDAO, purchase, quantity * price);
+        if (bill == null || !salesSummaryDAO.addSale(client.getId(), new int[]{product.getId()},
+                new int[]{quantity}, new double[]{bill.totalAmount()}, bill.totalAmount(), date)) {
+            connection.rollback();
+            return PurchaseResult.failure(Failure.ERROR);
+        }
+        PurchaseResult result = recordIdempotencyKey(connection, idempotencyKey, PurchaseResult.success(id, bill));
+        if (result.isSuccess()) {
+            recordEvents(Event.purchaseCreated(id, client.getId(), product.getId(), quantity, bill.totalAmount(), date));
+            recordTopSellers(client.getId(), new int[]{product.getId()}, new int[]{quantity}, bill.totalAmount());
+        }
+        return result;
+    }
 
-        double totalAmount = quantity * product.getPrice();
-        generateBill(logDAO, purchase, totalAmount);
+    /**
+     * Records events in the event log once the current transaction commits, if there is an event log.
+     *
+     * @param events the events to record
+     */
+    private void recordEvents(Event... events) {
+        if (eventLog != null) {
+            Transactions.afterCommit(() -> {
+                for (Event event : events) {
+                    eventLog.append(event);
+                }
+            });
+        }
+    }
+
+    /**
+     * Counts the units sold of each product and the spend of the client in the top sellers
+     * once the current transaction commits.
+     *
+     * @param clientId    the ID of the client
+     * @param productIds  the IDs of the products sold
+     * @param quantities  the units sold of each product
+     * @param totalAmount the amount of the order
+     */
+    private void recordTopSellers(int clientId, int[] productIds, int[] quantities, double totalAmount) {
+        Transactions.afterCommit(() ->
+                topSellers.record(clientId, productIds, quantities, totalAmount, System.currentTimeMillis()));
+    }
+
+    /**
+     * Reserves stock for every product in the stock engine, in the given order.
+     * If a product cannot be reserved, the reservations already made are released.
+     *
+     * @param productIds the IDs of the products
+     * @param quantities the number of units to reserve of each product
+     * @return null if every product was reserved, or the reason a product could not be reserved
+     */
+    private Failure reserveStocks(int[] productIds, int[] quantities) {
+        for (int i = 0; i < productIds.length; i++) {
+            if (!stockEngine.reserve(productIds[i], quantities[i])) {
+                for (int j = 0; j < i; j++) {
+                    stockEngine.release(productIds[j], quantities[j]);
+                }
+                if (stockEngine.getAvailable(productIds[i]) < 0) {
+                    return Failure.PRODUCT_NOT_FOUND;
+                }
+                System.out.println("Under-stock message: Not enough products available.");
+                return Failure.OUT_OF_STOCK;
+            }
+        }
+        return null;
+    }
 
-        return id;
+    /**
+     * Commits or releases the stock reserved by {@link #reserveStocks(int[], int[])}.
+     *
+     * @param productIds the IDs of the products
+     * @param quantities the number of units reserved of each product
+     * @param sold       true to commit the reservations, false to release them
+     */
+    private void settleStocks(int[] productIds, int[] quantities, boolean sold) {
+        for (int i = 0; i < productIds.length; i++) {
+            if (sold) {
+                stockEngine.commit(productIds[i], quantities[i]);
+            } else {
+                stockEngine.release(productIds[i], quantities[i]);
+            }
+        }
+    }
+
+    /**
+     * Creates a multi-line order for the given client, with one bill for the whole order.
+     * All lines are processed in one transaction: the products are loaded with one lookup, the stock of
+     * every product is decremented with one batch of conditional updates in ascending product ID order
+     * (so concurrent orders cannot deadlock), and the lines are inserted with one batch.
+     * With a stock engine the stock of every product is reserved in memory before the transaction instead.
+     *
+     * @param client the client placing the order
+     * @param lines  the products and quantities ordered
+     * @return the order ID and bill of the created order, or the reason it was refused
+     */
+    public PurchaseResult createOrder(Client client, List<OrderLine> lines) {
+        return createOrder(client, lines, null);
+    }
+
+    /**
+     * Creates a multi-line order for the given client, at most once per idempotency key.
+     * If an order was already created with the key, nothing is written and the earlier order is returned.
+     *
+     * @param client         the client placing the order
+     * @param lines          the products and quantities ordered
+     * @param idempotencyKey the key identifying the submission, at most 64 characters, or null for none
+     * @return the order ID and bill of the created or earlier order, or the reason it was refused
+     */
+    public PurchaseResult createOrder(Client client, List<OrderLine> lines, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            PurchaseResult replayed = replayOrder(idempotencyKey);
+            if (replayed != null) {
+                return replayed;
+            }
+        }
+        return settleIdempotencyKey(idempotencyKey, writeOrder(client, lines, idempotencyKey));
+    }
+
+    /**
+     * Writes a multi-line order as described by {@link #createOrder(Client, List)}.
+     *
+     * @param client         the client placing the order
+     * @param lines          the products and quantities ordered
+     * @param idempotencyKey the key identifying the submission, or null for none
+     * @return the result of the order
+     */
+    private PurchaseResult writeOrder(Client client, List<OrderLine> lines, String idempotencyKey) {
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (OrderLine line : lines) {
+            if (line.quantity() <= 0) {
+                return PurchaseResult.failure(Failure.INVALID_QUANTITY);
+            }
+            quantities.merge(line.productId(), line.quantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) {
+            return PurchaseResult.failure(Failure.EMPTY_ORDER);
+        }
+
+        int[] productIds = new int[quantities.size()];
+        int[] productQuantities = new int[quantities.size()];
+        int index = 0;
+        int totalQuantity = 0;
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            productIds[index] = entry.getKey();
+            productQuantities[index++] = entry.getValue();
+            totalQuantity += entry.getValue();
+        }
+        int orderQuantity = totalQuantity;
+
+        if (stockEngine != null) {
+            Failure refused = reserveStocks(productIds, productQuantities);
+            if (refused != null) {
+                return PurchaseResult.failure(refused);
+            }
+        }
+        PurchaseResult result = PurchaseResult.failure(Failure.ERROR);
+        try {
+            result = Transactions.execute(dataSource, connection -> {
+                IntObjectMap<Product> products = productDAO.findObjects(quantities.keySet());
+                if (products.size() != productIds.length) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.PRODUCT_NOT_FOUND);
+                }
+                if (clientDAO.findObject(client.getId(), Client.class) == null) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.CLIENT_NOT_FOUND);
+                }
+                if (stockEngine == null && !productDAO.decrementStocks(productIds, productQuantities)) {
+                    connection.rollback();
+                    System.out.println("Under-stock message: Not enough products available.");
+                    return PurchaseResult.failure(Failure.OUT_OF_STOCK);
+                }
+
+                Timestamp date = new Timestamp(System.currentTimeMillis());
+                int id = purchaseDAO.addOrderHeader(client.getId(), orderQuantity, date);
+                double[] unitPrices = new double[lines.size()];
+                double[] productRevenues = new double[productIds.length];
+                double totalAmount = 0;
+                for (int i = 0; i < lines.size(); i++) {
+                    unitPrices[i] = products.get(lines.get(i).productId()).getPrice();
+                    double lineAmount = unitPrices[i] * lines.get(i).quantity();
+                    productRevenues[Arrays.binarySearch(productIds, lines.get(i).productId())] += lineAmount;
+                    totalAmount += lineAmount;
+                }
+                if (id < 0 || !orderLineDAO.addLines(id, lines, unitPrices)
+                        || stockEngine != null && !stockDeltaDAO.addDeltas(id, productIds, productQuantities)) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.ERROR);
+                }
+
+                Purchase order = new Purchase(id, client.getId(), -1, orderQuantity, date);
+                Bill bill = generateBill(logDAO, order, totalAmount);
+                if (bill == null || !salesSummaryDAO.addSale(client.getId(), productIds, productQuantities,
+                        productRevenues, totalAmount, date)) {
+                    connection.rollback();
+                    return PurchaseResult.failure(Failure.ERROR);
+                }
+                PurchaseResult written = recordIdempotencyKey(connection, idempotencyKey, PurchaseResult.success(id, bill));
+                if (written.isSuccess()) {
+                    Event[] events = new Event[productIds.length + 1];
+                    events[0] = Event.purchaseCreated(id, client.getId(), -1, orderQuantity, totalAmount, date);
+                    for (int i = 0; i < productIds.length; i++) {
+                        events[i + 1] = Event.stockAdjusted(productIds[i], -productQuantities[i], id);
+                    }
+                    recordEvents(events);
+                    recordTopSellers(client.getId(), productIds, productQuantities, totalAmount);
+                }
+                return written;
+            });
+        } catch (SQLException e) {
+            result = failedWith(e);
+        } finally {
+            if (stockEngine != null) {
+                settleStocks(productIds, productQuantities, result.isSuccess());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the order created earlier with an idempotency key, first in memory and then in the database.
+     *
+     * @param idempotencyKey the key identifying the submission
+     * @return the earlier order, null if there is none, or an error if the key is invalid or the lookup fails
+     */
+    private PurchaseResult replayOrder(String idempotencyKey) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return PurchaseResult.failure(Failure.ERROR);
+        }
+        Bill remembered = idempotencyIndex.get(idempotencyKey);
+        if (remembered != null) {
+            return PurchaseResult.success(remembered.orderId(), remembered);
+        }
+
+        int orderId = purchaseDAO.findOrderIdByIdempotencyKey(idempotencyKey);
+        if (orderId == 0) {
+            return null;
+        }
+        Bill stored = orderId > 0 ? logDAO.getBillByOrderId(orderId) : null;
+        if (stored == null) {
+            return PurchaseResult.failure(Failure.ERROR);
+        }
+        idempotencyIndex.put(idempotencyKey, stored);
+        return PurchaseResult.success(orderId, stored);
+    }
+
+    /**
+     * Records the idempotency key of an order inside the order's transaction,
+     * rolling the transaction back if the key cannot be recorded.
+     *
+     * @param connection     the connection of the transaction
+     * @param idempotencyKey the key identifying the submission, or null for none
+     * @param written        the result of the written order
+     * @return the written order, {@code KEY_TAKEN} if another order took the key, or an error
+     * @throws SQLException if the rollback fails
+     */
+    private PurchaseResult recordIdempotencyKey(Connection connection, String idempotencyKey,
+                                                PurchaseResult written) throws SQLException {
+        if (idempotencyKey == null) {
+            return written;
+        }
+        int recorded = purchaseDAO.addIdempotencyKey(idempotencyKey, written.orderId());
+        if (recorded <= 0) {
+            connection.rollback();
+            return recorded == 0 ? KEY_TAKEN : PurchaseResult.failure(Failure.ERROR);
+        }
+        return written;
+    }
+
+    /**
+     * Completes an order submitted with an idempotency key: remembers the key of a created order,
+     * or returns the order of a concurrent submission that recorded the key first.
+     *
+     * @param idempotencyKey the key identifying the submission, or null for none
+     * @param result         the result of writing the order
+     * @return the result of the order
+     */
+    private PurchaseResult settleIdempotencyKey(String idempotencyKey, PurchaseResult result) {
+        if (idempotencyKey == null) {
+            return result;
+        }
+        if (result == KEY_TAKEN) {
+            PurchaseResult replayed = replayOrder(idempotencyKey);
+            return replayed != null ? replayed : PurchaseResult.failure(Failure.ERROR);
+        }
+        if (result.isSuccess()) {
+            idempotencyIndex.put(idempotencyKey, result.bill());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the lines of a multi-line order.
+     *
+     * @param orderId the ID of the order
+     * @return the lines of the order
+     */
+    public List<OrderLine> getOrderLines(int orderId) {
+        return orderLineDAO.getLines(orderId);
     }
 
     /**
@@ -77,14 +723,12 @@ public class PurchaseBLL {
     }
 
     /**
-     * Checks if the specified quantity of a product is available in stock.
+     * Passes every purchase in the database to the consumer without loading them all into memory.
      *
-     * @param product  the product to check
-     * @param quantity the quantity to purchase
-     * @return true if the stock is sufficient, false otherwise
+     * @param consumer the consumer receiving each purchase
      */
-    private boolean isStockValid(Product product, int quantity) {
-        return product.getStock() >= quantity;
+    public void forEachPurchase(Consumer<? super Purchase> consumer) {
+        purchaseDAO.forEachObject(consumer);
     }
 
     /**
@@ -93,19 +737,126 @@ public class PurchaseBLL {
      * @param logDAO       the LogDAO instance to add the bill to
      * @param purchase     the purchase for which the bill is generated
      * @param totalAmount  the total amount of the bill
+     * @return the bill if it was added, null otherwise
+     */
+    private Bill generateBill(LogDAO logDAO, Purchase purchase, double totalAmount) {
+        Bill bill = new Bill(purchase.getId(), totalAmount, purchase.getOrderDate());
+        return logDAO.addBill(bill) ? bill : null;
+    }
+
+    /**
+     * Retrieves the bill of an order. The bills of recently placed orders are served from memory.
+     *
+     * @param orderId the ID of the order
+     * @return the bill of the order, or null if the order has no bill
+     */
+    public Bill findBill(int orderId) {
+        return logDAO.getBillByOrderId(orderId);
+    }
+
+    /**
+     * Retrieves the units sold and the revenue of a product, kept up to date as orders are placed.
+     *
+     * @param productId the ID of the product
+     * @return the sales of the product, or null if they could not be read
      */
-    private void generateBill(LogDAO logDAO, Purchase purchase, double totalAmount) {
-        bill = new Bill(purchase.getId(), totalAmount, purchase.getOrderDate());
-        logDAO.addBill(bill);
+    public ProductSales getProductSales(int productId) {
+        return salesSummaryDAO.getProductSales(productId);
     }
 
     /**
-     * Retrieves the current bill.
+     * Retrieves the number of orders and the spend of a client, kept up to date as orders are placed.
      *
-     * @return the current bill
+     * @param clientId the ID of the client
+     * @return the sales of the client, or null if they could not be read
      */
-    public Bill getBill() {
-        return this.bill;
+    public ClientSales getClientSales(int clientId) {
+        return salesSummaryDAO.getClientSales(clientId);
+    }
+
+    /**
+     * Computes the units sold and the revenue of every product in the orders placed in a period.
+     * The sales are scanned in an in-memory snapshot, which is first brought up to date with the orders
+     * placed since the previous call; orders edited or deleted after they were loaded keep their loaded values.
+     *
+     * @param from the start of the period, inclusive
+     * @param to   the end of the period, exclusive
+     * @return the sales of the products sold in the period in ascending product ID order,
+     *         or null if the new orders could not be read
+     */
+    public List<ProductSales> getProductSalesBetween(Timestamp from, Timestamp to) {
+        if (salesSnapshot.refresh() < 0) {
+            return null;
+        }
+        SalesSnapshot.Groups groups = salesSnapshot.groupBy(SalesSnapshot.Dimension.PRODUCT,
+                SalesSnapshot.Filter.between(from.getTime(), to.getTime()));
+        List<ProductSales> sales = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            sales.add(new ProductSales(groups.keys()[i], groups.quantities()[i], groups.amounts()[i]));
+        }
+        return sales;
+    }
+
+    /**
+     * Retrieves the orders and revenue of every day with orders in a period, kept up to date as orders are placed.
+     *
+     * @param from the first day of the period, inclusive
+     * @param to   the last day of the period, inclusive
+     * @return the revenue per day in ascending date order
+     */
+    public List<DailyRevenue> getDailyRevenue(Date from, Date to) {
+        return salesSummaryDAO.getDailyRevenue(from, to);
+    }
+
+    /**
+     * Retrieves the best-selling products of a recent window, counted in memory as orders are placed
+     * since the application started. The units are estimates from a fixed number of counters:
+     * a product's count may be too high by at most its error, and products selling only a few units
+     * may be missing.
+     *
+     * @param window the time window
+     * @param limit  the maximum number of products
+     * @return the product IDs with their units sold, most units first
+     */
+    public List<HeavyHitters.Entry> getTopProducts(SalesWindow window, int limit) {
+        return topSellers.topProducts(window, limit);
+    }
+
+    /**
+     * Retrieves the clients with the largest spend in a recent window, counted in memory as orders are placed
+     * since the application started. The spend is in cents and estimated like the units of
+     * {@link #getTopProducts(SalesWindow, int)}.
+     *
+     * @param window the time window
+     * @param limit  the maximum number of clients
+     * @return the client IDs with their spend in cents, largest spend first
+     */
+    public List<HeavyHitters.Entry> getTopClients(SalesWindow window, int limit) {
+        return topSellers.topClients(window, limit);
+    }
+
+    /**
+     * Retrieves the bills issued in a period, oldest first.
+     *
+     * @param from the start of the period, inclusive
+     * @param to   the end of the period, exclusive
+     * @return the bills of the period
+     */
+    public List<Bill> getBillsBetween(Timestamp from, Timestamp to) {
+        return logDAO.getBillsBetween(from, to);
+    }
+
+    /**
+     * Passes the bills issued in a period to the consumer, oldest first, without loading them all into memory.
+     *
+     * @param from     the start of the period, inclusive
+     * @param to       the end of the period, exclusive
+     * @param consumer the consumer receiving each bill
+     */
+    public void forEachBillBetween(Timestamp from, Timestamp to, Consumer<? super Bill> consumer) {
+        try (Stream<Bill> bills = logDAO.streamBillsBetween(from, to)) {
+            bills.forEach(consumer);
+        }
     }
 
     /**
@@ -116,4 +867,127 @@ public class PurchaseBLL {
     public List<Bill> getAllBills(){
         return logDAO.getAllBills();
     }
+
+    /**
+     * Passes every bill in the log to the consumer without loading them all into memory.
+     *
+     * @param consumer the consumer receiving each bill
+     */
+    public void forEachBill(Consumer<? super Bill> consumer) {
+        logDAO.forEachBill(consumer);
+    }
+
+    /**
+     * Retrieves one page of purchases ordered by order ID.
+     *
+     * @param afterId the order ID of the last purchase of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit   the maximum number of purchases to return
+     * @return the purchases of the page
+     */
+    public List<Purchase> getPurchasePage(int afterId, int limit) {
+        return purchaseDAO.findPage(afterId, limit);
+    }
+
+    /**
+     * Retrieves one page of purchases ordered by the given column and then by order ID.
+     *
+     * @param sortColumn the column to order by
+     * @param afterValue the sort column value of the last purchase of the previous page, which may be null
+     * @param afterId    the order ID of the last purchase of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit      the maximum number of purchases to return
+     * @return the purchases of the page
+     */
+    public List<Purchase> getPurchasePage(String sortColumn, Object afterValue, int afterId, int limit) {
+        return purchaseDAO.findPage(sortColumn, afterValue, afterId, limit);
+    }
+
+    /**
+     * Retrieves one page of bills ordered by order ID.
+     *
+     * @param afterOrderId the order ID of the last bill of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit        the maximum number of bills to return
+     * @return the bills of the page
+     */
+    public List<Bill> getBillPage(int afterOrderId, int limit) {
+        return logDAO.getBillPage(afterOrderId, limit);
+    }
+
+    /**
+     * Passes a summary of every billed order, with client and product names, to the consumer.
+     * A multi-line order is described by its lines, as in "Lamp x2, Desk x1".
+     * Bills are read page by page; the purchases, order lines, clients and products of a page are each
+     * fetched with one multi-ID lookup instead of one query per bill.
+     *
+     * @param consumer the consumer receiving each order summary
+     */
+    public void forEachOrderSummary(Consumer<? super OrderSummary> consumer) {
+        int afterOrderId = Integer.MIN_VALUE;
+        List<Bill> bills;
+        do {
+            bills = logDAO.getBillPage(afterOrderId, SUMMARY_PAGE_SIZE);
+            if (bills.isEmpty()) {
+                break;
+            }
+
+            List<Integer> orderIds = new ArrayList<>(bills.size());
+            for (Bill bill : bills) {
+                orderIds.add(bill.orderId());
+            }
+            IntObjectMap<Purchase> purchases = purchaseDAO.findObjects(orderIds);
+
+            List<Integer> clientIds = new ArrayList<>(purchases.size());
+            List<Integer> productIds = new ArrayList<>(purchases.size());
+            List<Integer> headerIds = new ArrayList<>();
+            purchases.forEach((orderId, purchase) -> {
+                clientIds.add(purchase.getClientId());
+                if (purchase.getProductId() == -1) {
+                    headerIds.add(orderId);
+                } else {
+                    productIds.add(purchase.getProductId());
+                }
+            });
+            IntObjectMap<List<OrderLine>> orderLines = orderLineDAO.getLines(headerIds);
+            orderLines.forEach((orderId, lines) -> lines.forEach(line -> productIds.add(line.productId())));
+            IntObjectMap<Client> clients = clientDAO.findObjects(clientIds);
+            IntObjectMap<Product> products = productDAO.findObjects(productIds);
+
+            for (Bill bill : bills) {
+                Purchase purchase = purchases.get(bill.orderId());
+                Client client = purchase != null ? clients.get(purchase.getClientId()) : null;
+                List<OrderLine> lines = orderLines.get(bill.orderId());
+                String description;
+                if (lines != null) {
+                    description = describeLines(lines, products);
+                } else {
+                    Product product = purchase != null ? products.get(purchase.getProductId()) : null;
+                    description = product != null ? product.getName() : "Unknown";
+                }
+                consumer.accept(new OrderSummary(bill.orderId(),
+                        client != null ? client.getName() : "Unknown",
+                        description,
+                        purchase != null ? purchase.getQuantity() : 0,
+                        bill.totalAmount(), bill.timestamp()));
+            }
+            afterOrderId = bills.get(bills.size() - 1).orderId();
+        } while (bills.size() == SUMMARY_PAGE_SIZE);
+    }
+
+    /**
+     * Describes the lines of an order by product name and quantity, as in "Lamp x2, Desk x1".
+     *
+     * @param lines    the lines of the order
+     * @param products the products of the lines, by ID
+     * @return the description of the lines
+     */
+    private static String describeLines(List<OrderLine> lines, IntObjectMap<Product> products) {
+        StringBuilder description = new StringBuilder();
+        for (OrderLine line : lines) {
+            if (description.length() > 0) {
+                description.append(", ");
+            }
+            Product product = products.get(line.productId());
+            description.append(product != null ? product.getName() : "Unknown").append(" x").append(line.quantity());
+        }
+        return description.toString();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package business;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The QuantileSketch class estimates quantiles of non-negative values with a bounded relative error,
+ * using a fixed amount of memory per order of magnitude instead of keeping every value.
+ * <p>
+ * Values are counted in logarithmic buckets whose bounds grow by a constant factor, so every value in a
+ * bucket is within the relative accuracy of the bucket's representative value. Sketches are merged by
+ * adding their bucket counts, which gives exactly the sketch of all their values regardless of how the
+ * values were split or in which order the sketches are merged.
+ */
+public class QuantileSketch {
+
+    /**
+     * The default relative accuracy of the estimated quantiles.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Constructs an empty sketch with the default relative accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Constructs an empty sketch.
+     *
+     * @param relativeAccuracy the largest relative error of an estimated quantile, between 0 and 1
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value the value, not negative
+     */
+    public void add(double value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must not be negative");
+        }
+        count++;
+        if (value == 0) {
+            zeroCount++;
+            return;
+        }
+        buckets.merge((int) Math.ceil(Math.log(value) / logGamma), 1L, Long::sum);
+    }
+
+    /**
+     * Adds the values of another sketch with the same relative accuracy to this sketch.
+     *
+     * @param other the sketch to merge
+     * @return this sketch
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches with different accuracies cannot be merged");
+        }
+        other.buckets.forEach((index, bucketCount) -> buckets.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+        return this;
+    }
+
+    /**
+     * Estimates a quantile of the values added.
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the estimated value, or NaN if the sketch is empty
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return 2 * Math.exp(bucket.getKey() * logGamma) / (1 + Math.exp(logGamma));
+            }
+        }
+        return 2 * Math.exp(buckets.lastKey() * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    /**
+     * Gets the number of values added.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Checks whether another sketch holds the same counts with the same accuracy.
+     *
+     * @param o the object to compare with
+     * @return true if the sketches are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QuantileSketch other)) {
+            return false;
+        }
+        return relativeAccuracy == other.relativeAccuracy && zeroCount == other.zeroCount
+                && count == other.count && buckets.equals(other.buckets);
+    }
+
+    @Override
+    public int hashCode() {
+        return buckets.hashCode() * 31 + Long.hashCode(count);
+    }
+}
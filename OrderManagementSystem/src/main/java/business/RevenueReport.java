@@ -0,0 +1,390 @@
+package business;
+
+import data.PurchaseDAO;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The RevenueReport class computes the revenue of a period per day, per week and per product, with
+ * percentiles of the order value, and writes it to CSV files.
+ * <p>
+ * The period is split into time ranges that are read concurrently by a fork/join pool, each range with
+ * its own streaming query over the bills billed in it, found through the index on the bill timestamp.
+ * Each range produces a partial aggregate, and the partials are merged pairwise as the tasks complete.
+ * Amounts are summed as whole cents and order values are counted in mergeable quantile sketches, so
+ * merging is exact and the report is the same for any number of ranges or threads, including a
+ * single-threaded run with {@code parallelism} 1.
+ */
+public class RevenueReport {
+
+    /**
+     * The number of ranges per thread; more ranges than threads keeps the threads busy when
+     * some ranges hold many more bills than others.
+     */
+    private static final int RANGES_PER_THREAD = 4;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final PurchaseDAO purchaseDAO;
+
+    /**
+     * Constructs a new RevenueReport instance with the specified data source.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public RevenueReport(DataSource dataSource) {
+        this.purchaseDAO = new PurchaseDAO(dataSource);
+    }
+
+    /**
+     * Computes the report of the bills issued in a period.
+     *
+     * @param from        the start of the period, inclusive
+     * @param to          the end of the period, exclusive
+     * @param parallelism the number of threads reading the period, and of connections used at once
+     * @return the report, or null if the bills could not be read
+     */
+    public Result compute(Timestamp from, Timestamp to, int parallelism) {
+        if (parallelism <= 0 || !from.before(to)) {
+            throw new IllegalArgumentException("Invalid period or parallelism");
+        }
+        int ranges = parallelism == 1 ? 1 : parallelism * RANGES_PER_THREAD;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new RangeTask(from.getTime(), to.getTime(), ranges, 0, ranges));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads the ranges from {@code first} to {@code last} (exclusive), splitting them in halves until
+     * a task reads a single range, and merges the results of the halves.
+     */
+    private final class RangeTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final long fromMillis;
+        private final long toMillis;
+        private final int ranges;
+        private final int first;
+        private final int last;
+
+        private RangeTask(long fromMillis, long toMillis, int ranges, int first, int last) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.ranges = ranges;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Result compute() {
+            if (last - first == 1) {
+                return readRange(boundary(first), boundary(last));
+            }
+            int middle = (first + last) >>> 1;
+            RangeTask left = new RangeTask(fromMillis, toMillis, ranges, first, middle);
+            left.fork();
+            Result right = new RangeTask(fromMillis, toMillis, ranges, middle, last).compute();
+            Result merged = left.join();
+            return merged != null && right != null ? merged.merge(right) : null;
+        }
+
+        private long boundary(int range) {
+            return fromMillis + (long) ((double) (toMillis - fromMillis) * range / ranges);
+        }
+    }
+
+    /**
+     * Reads the bills issued in one range. The rows of an order arrive together, so the order value
+     * is complete once the next order starts.
+     */
+    private Result readRange(long fromMillis, long toMillis) {
+        Result result = new Result();
+        OrderAccumulator order = new OrderAccumulator(result);
+        boolean read = purchaseDAO.scanSalesBilledBetween(new Timestamp(fromMillis), new Timestamp(toMillis),
+                (orderId, clientId, productId, quantity, millis, amount, billed) -> {
+                    order.add(orderId, productId, quantity, millis, Math.round(amount * 100));
+                    return true;
+                });
+        order.finish();
+        return read ? result : null;
+    }
+
+    /**
+     * Collects the rows of the current order and adds the order to the result once it is complete.
+     */
+    private static final class OrderAccumulator {
+        private final Result result;
+        private int orderId = -1;
+        private long millis;
+        private long cents;
+
+        private OrderAccumulator(Result result) {
+            this.result = result;
+        }
+
+        private void add(int orderId, int productId, int quantity, long millis, long cents) {
+            if (orderId != this.orderId) {
+                finish();
+                this.orderId = orderId;
+                this.millis = millis;
+            }
+            this.cents += cents;
+            if (productId >= 0) {
+                result.products.computeIfAbsent(productId, id -> new ProductTotals()).add(quantity, cents);
+            }
+        }
+
+        private void finish() {
+            if (orderId >= 0) {
+                LocalDate day = Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate();
+                result.days.computeIfAbsent(day, d -> new Totals()).addOrder(cents);
+                result.overall.addOrder(cents);
+            }
+            orderId = -1;
+            cents = 0;
+        }
+    }
+
+    /**
+     * Writes a report to CSV files in a directory: daily.csv and weekly.csv with the orders, revenue and
+     * order value percentiles of each day and week (weeks start on Monday), and products.csv with the
+     * units sold and revenue of each product.
+     *
+     * @param result    the report
+     * @param directory the directory; created if missing
+     * @return true if the files were written, false otherwise
+     */
+    public boolean write(Result result, Path directory) {
+        try {
+            Files.createDirectories(directory);
+            writePeriods(directory.resolve("daily.csv"), "day", result.getDays());
+            writePeriods(directory.resolve("weekly.csv"), "week", result.getWeeks());
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("products.csv"))) {
+                writer.write("product_id,units_sold,revenue");
+                writer.newLine();
+                for (Map.Entry<Integer, ProductTotals> entry : result.getProducts().entrySet()) {
+                    writer.write(entry.getKey() + "," + entry.getValue().getUnits() + ","
+                            + BigDecimal.valueOf(entry.getValue().getCents(), 2));
+                    writer.newLine();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private static void writePeriods(Path file, String periodColumn, SortedMap<LocalDate, Totals> periods)
+            throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(periodColumn + ",orders,revenue");
+            for (double quantile : QUANTILES) {
+                writer.write(",p" + Math.round(quantile * 100));
+            }
+            writer.newLine();
+            for (Map.Entry<LocalDate, Totals> entry : periods.entrySet()) {
+                Totals totals = entry.getValue();
+                writer.write(entry.getKey() + "," + totals.getOrders() + "," + BigDecimal.valueOf(totals.getCents(), 2));
+                for (double quantile : QUANTILES) {
+                    writer.write(String.format(Locale.ROOT, ",%.2f", totals.getOrderValues().quantile(quantile)));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * The aggregates of a report or of a part of it.
+     */
+    public static final class Result {
+        private final TreeMap<LocalDate, Totals> days = new TreeMap<>();
+        private final TreeMap<Integer, ProductTotals> products = new TreeMap<>();
+        private final Totals overall = new Totals();
+
+        private Result merge(Result other) {
+            other.days.forEach((day, totals) -> days.merge(day, totals, Totals::merge));
+            other.products.forEach((id, totals) -> products.merge(id, totals, ProductTotals::merge));
+            overall.merge(other.overall);
+            return this;
+        }
+
+        /**
+         * Gets the totals of every day with orders.
+         *
+         * @return the totals per day in ascending date order
+         */
+        public SortedMap<LocalDate, Totals> getDays() {
+            return Collections.unmodifiableSortedMap(days);
+        }
+
+        /**
+         * Gets the totals of every week with orders, merged from the days of the week.
+         *
+         * @return the totals per week, keyed by the Monday starting the week
+         */
+        public SortedMap<LocalDate, Totals> getWeeks() {
+            TreeMap<LocalDate, Totals> weeks = new TreeMap<>();
+            days.forEach((day, totals) -> weeks
+                    .computeIfAbsent(day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)), d -> new Totals())
+                    .merge(totals));
+            return Collections.unmodifiableSortedMap(weeks);
+        }
+
+        /**
+         * Gets the totals of every product sold.
+         *
+         * @return the totals per product in ascending ID order
+         */
+        public SortedMap<Integer, ProductTotals> getProducts() {
+            return Collections.unmodifiableSortedMap(products);
+        }
+
+        /**
+         * Gets the totals of the whole period.
+         *
+         * @return the totals
+         */
+        public Totals getOverall() {
+            return overall;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Result other
+                    && days.equals(other.days) && products.equals(other.products) && overall.equals(other.overall);
+        }
+
+        @Override
+        public int hashCode() {
+            return overall.hashCode();
+        }
+    }
+
+    /**
+     * The number of orders, the revenue and the distribution of order values of a period.
+     */
+    public static final class Totals {
+        private long orders;
+        private long cents;
+        private final QuantileSketch orderValues = new QuantileSketch();
+
+        private void addOrder(long orderCents) {
+            orders++;
+            cents += orderCents;
+            orderValues.add(Math.max(0, orderCents) / 100.0);
+        }
+
+        private Totals merge(Totals other) {
+            orders += other.orders;
+            cents += other.cents;
+            orderValues.merge(other.orderValues);
+            return this;
+        }
+
+        /**
+         * Gets the number of orders.
+         *
+         * @return the number of orders
+         */
+        public long getOrders() {
+            return orders;
+        }
+
+        /**
+         * Gets the revenue in cents.
+         *
+         * @return the revenue in cents
+         */
+        public long getCents() {
+            return cents;
+        }
+
+        /**
+         * Gets the distribution of the order values.
+         *
+         * @return the sketch of the order values
+         */
+        public QuantileSketch getOrderValues() {
+            return orderValues;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Totals other
+                    && orders == other.orders && cents == other.cents && orderValues.equals(other.orderValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(orders) * 31 + Long.hashCode(cents);
+        }
+    }
+
+    /**
+     * The units sold and the revenue of a product.
+     */
+    public static final class ProductTotals {
+        private long units;
+        private long cents;
+
+        private void add(int quantity, long lineCents) {
+            units += quantity;
+            cents += lineCents;
+        }
+
+        private ProductTotals merge(ProductTotals other) {
+            units += other.units;
+            cents += other.cents;
+            return this;
+        }
+
+        /**
+         * Gets the units sold.
+         *
+         * @return the units sold
+         */
+        public long getUnits() {
+            return units;
+        }
+
+        /**
+         * Gets the revenue in cents.
+         *
+         * @return the revenue in cents
+         */
+        public long getCents() {
+            return cents;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof ProductTotals other && units == other.units && cents == other.cents;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(units) * 31 + Long.hashCode(cents);
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package business;
+
+import data.PurchaseDAO;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * The SalesSnapshot class holds the sales of all orders in memory as primitive columns, for analytics
+ * queries that would otherwise load every purchase as an object.
+ * <p>
+ * Every sales row is one product sold in one order: a single-product purchase is one row, a multi-line
+ * order one row per line. A row costs 28 bytes in five parallel arrays: client ID, product ID, quantity,
+ * order date in epoch milliseconds and billed amount. Queries are tight loops over these arrays, split
+ * into chunks that run in parallel and are merged at the end.
+ * <p>
+ * Each block of {@value #BLOCK_ROWS} rows also records its earliest and latest order date, and a query on
+ * a period skips the blocks outside it. Orders are loaded in ID order, so their dates are nearly sorted
+ * and a month of sales touches only the blocks of that month.
+ * <p>
+ * {@link #refresh()} appends the orders placed since the previous refresh. Readers work on the columns
+ * as they were when the query started, so queries and refreshes can run at the same time. Orders that
+ * are deleted or edited after they were loaded are only picked up by {@link #reload()}.
+ */
+public class SalesSnapshot {
+
+    /**
+     * How long an order may wait for its bill before it is loaded without one.
+     * Bills written behind through the journal reach the log table within a flush interval, so the
+     * newest orders without a bill are left for the next refresh instead.
+     */
+    private static final long BILL_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_CHUNK_ROWS = 1 << 16;
+    private static final int BLOCK_ROWS = 1024;
+
+    private final PurchaseDAO purchaseDAO;
+    private volatile Columns columns = emptyColumns();
+
+    /**
+     * Constructs an empty SalesSnapshot. Call {@link #refresh()} to load the sales.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public SalesSnapshot(DataSource dataSource) {
+        this.purchaseDAO = new PurchaseDAO(dataSource);
+    }
+
+    /**
+     * The sales rows loaded so far. The arrays may be longer than the number of rows; the rows past
+     * the size belong to a refresh in progress and are never read by queries holding this instance.
+     * The date range of a block may be wider than its rows, never narrower.
+     */
+    private record Columns(int size, int lastOrderId, int maxClientId, int maxProductId, int[] clientIds,
+                           int[] productIds, int[] quantities, long[] orderMillis, double[] amounts,
+                           long[] blockMinMillis, long[] blockMaxMillis) {
+    }
+
+    private static Columns emptyColumns() {
+        return new Columns(0, 0, -1, -1, new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY],
+                new int[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], new double[INITIAL_CAPACITY],
+                new long[INITIAL_CAPACITY / BLOCK_ROWS], new long[INITIAL_CAPACITY / BLOCK_ROWS]);
+    }
+
+    /**
+     * Appends the sales of the orders placed since the last refresh.
+     *
+     * @return the number of rows appended, or -1 if the orders could not be read
+     */
+    public synchronized int refresh() {
+        Columns current = columns;
+        Appender appender = new Appender(current);
+        if (!purchaseDAO.scanSales(current.lastOrderId(), appender::accept)) {
+            return -1;
+        }
+        appender.endOrder();
+        columns = appender.publish();
+        return columns.size() - current.size();
+    }
+
+    /**
+     * Discards the loaded sales and loads them all again.
+     *
+     * @return the number of rows loaded, or -1 if the orders could not be read
+     */
+    public synchronized int reload() {
+        Columns previous = columns;
+        columns = emptyColumns();
+        int loaded = refresh();
+        if (loaded < 0) {
+            columns = previous;
+        }
+        return loaded;
+    }
+
+    /**
+     * Appends the rows of one scan to the columns. The rows of an order are kept apart until the order
+     * ends, so that an order stopped halfway is never published.
+     */
+    private static final class Appender {
+        private final long billDeadline = System.currentTimeMillis() - BILL_GRACE_MILLIS;
+        private int size;
+        private int committedSize;
+        private int lastOrderId;
+        private int currentOrderId;
+        private int maxClientId;
+        private int maxProductId;
+        private int[] clientIds;
+        private int[] productIds;
+        private int[] quantities;
+        private long[] orderMillis;
+        private double[] amounts;
+        private long[] blockMinMillis;
+        private long[] blockMaxMillis;
+
+        private Appender(Columns columns) {
+            this.size = this.committedSize = columns.size();
+            this.lastOrderId = this.currentOrderId = columns.lastOrderId();
+            this.maxClientId = columns.maxClientId();
+            this.maxProductId = columns.maxProductId();
+            this.clientIds = columns.clientIds();
+            this.productIds = columns.productIds();
+            this.quantities = columns.quantities();
+            this.orderMillis = columns.orderMillis();
+            this.amounts = columns.amounts();
+            this.blockMinMillis = columns.blockMinMillis();
+            this.blockMaxMillis = columns.blockMaxMillis();
+        }
+
+        private boolean accept(int orderId, int clientId, int productId, int quantity, long millis, double amount,
+                               boolean billed) {
+            if (orderId != currentOrderId) {
+                endOrder();
+                if (!billed && millis > billDeadline) {
+                    return false;
+                }
+                currentOrderId = orderId;
+            }
+            if (size == clientIds.length) {
+                int capacity = clientIds.length * 2;
+                clientIds = Arrays.copyOf(clientIds, capacity);
+                productIds = Arrays.copyOf(productIds, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                orderMillis = Arrays.copyOf(orderMillis, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                blockMinMillis = Arrays.copyOf(blockMinMillis, capacity / BLOCK_ROWS);
+                blockMaxMillis = Arrays.copyOf(blockMaxMillis, capacity / BLOCK_ROWS);
+            }
+            int block = size / BLOCK_ROWS;
+            if (size % BLOCK_ROWS == 0) {
+                blockMinMillis[block] = millis;
+                blockMaxMillis[block] = millis;
+            } else {
+                blockMinMillis[block] = Math.min(blockMinMillis[block], millis);
+                blockMaxMillis[block] = Math.max(blockMaxMillis[block], millis);
+            }
+            maxClientId = Math.max(maxClientId, clientId);
+            maxProductId = Math.max(maxProductId, productId);
+            clientIds[size] = clientId;
+            productIds[size] = productId;
+            quantities[size] = quantity;
+            orderMillis[size] = millis;
+            amounts[size] = amount;
+            size++;
+            return true;
+        }
+
+        private void endOrder() {
+            committedSize = size;
+            lastOrderId = currentOrderId;
+        }
+
+        private Columns publish() {
+            return new Columns(committedSize, lastOrderId, maxClientId, maxProductId, clientIds, productIds,
+                    quantities, orderMillis, amounts, blockMinMillis, blockMaxMillis);
+        }
+    }
+
+    /**
+     * Gets the number of sales rows loaded.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * Gets the ID of the last order loaded.
+     *
+     * @return the order ID, or 0 if nothing was loaded
+     */
+    public int getLastOrderId() {
+        return columns.lastOrderId();
+    }
+
+    /**
+     * Selects the sales rows matching a filter.
+     *
+     * @param filter the filter
+     * @return the indexes of the matching rows in ascending order
+     */
+    public int[] select(Filter filter) {
+        Columns c = columns;
+        int[] selection = new int[c.size()];
+        int count = 0;
+        int row = 0;
+        while (row < c.size()) {
+            int end = blockEnd(row, c.size());
+            if (filter.mayMatch(c, row / BLOCK_ROWS)) {
+                for (; row < end; row++) {
+                    selection[count] = row;
+                    count += filter.matches(c, row) ? 1 : 0;
+                }
+            }
+            row = end;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+
+    /**
+     * Sums the quantity and amount of the sales rows matching a filter.
+     *
+     * @param filter the filter
+     * @return the totals of the matching rows
+     */
+    public Totals total(Filter filter) {
+        Columns c = columns;
+        return IntStream.range(0, chunkCount(c.size())).parallel()
+                .mapToObj(chunk -> {
+                    int from = chunkStart(c.size(), chunk);
+                    int to = chunkStart(c.size(), chunk + 1);
+                    long rows = 0;
+                    long quantity = 0;
+                    double amount = 0;
+                    int row = from;
+                    while (row < to) {
+                        int end = blockEnd(row, to);
+                        if (filter.mayMatch(c, row / BLOCK_ROWS)) {
+                            for (; row < end; row++) {
+                                if (filter.matches(c, row)) {
+                                    rows++;
+                                    quantity += c.quantities()[row];
+                                    amount += c.amounts()[row];
+                                }
+                            }
+                        }
+                        row = end;
+                    }
+                    return new Totals(rows, quantity, amount);
+                })
+                .reduce(new Totals(0, 0, 0), Totals::plus);
+    }
+
+    /**
+     * Groups the sales rows matching a filter by client or product and sums each group.
+     * Rows whose product is unknown are left out of a grouping by product.
+     *
+     * @param dimension the column to group by
+     * @param filter    the filter
+     * @return the groups with at least one matching row, in ascending key order
+     */
+    public Groups groupBy(Dimension dimension, Filter filter) {
+        Columns c = columns;
+        int[] keys = dimension == Dimension.CLIENT ? c.clientIds() : c.productIds();
+        int keyCount = (dimension == Dimension.CLIENT ? c.maxClientId() : c.maxProductId()) + 1;
+
+        Partial merged = IntStream.range(0, chunkCount(c.size())).parallel()
+                .mapToObj(chunk -> {
+                    Partial partial = new Partial(keyCount);
+                    int to = chunkStart(c.size(), chunk + 1);
+                    int row = chunkStart(c.size(), chunk);
+                    while (row < to) {
+                        int end = blockEnd(row, to);
+                        if (filter.mayMatch(c, row / BLOCK_ROWS)) {
+                            for (; row < end; row++) {
+                                int key = keys[row];
+                                if (key >= 0 && filter.matches(c, row)) {
+                                    partial.rows[key]++;
+                                    partial.quantities[key] += c.quantities()[row];
+                                    partial.amounts[key] += c.amounts()[row];
+                                }
+                            }
+                        }
+                        row = end;
+                    }
+                    return partial;
+                })
+                .reduce(Partial::merge)
+                .orElse(new Partial(0));
+        return merged.toGroups();
+    }
+
+    private static int chunkCount(int size) {
+        int byRows = Math.max(1, size / MIN_CHUNK_ROWS);
+        return Math.min(byRows, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    private static int chunkStart(int size, int chunk) {
+        return (int) ((long) size * chunk / chunkCount(size));
+    }
+
+    /**
+     * Gets the end of the block holding a row, or the end of the scan if that comes first.
+     */
+    private static int blockEnd(int row, int to) {
+        return Math.min(to, (row / BLOCK_ROWS + 1) * BLOCK_ROWS);
+    }
+
+    /**
+     * The per-key sums of one chunk of a grouping, indexed directly by key.
+     */
+    private static final class Partial {
+        private final long[] rows;
+        private final long[] quantities;
+        private final double[] amounts;
+
+        private Partial(int keyCount) {
+            this.rows = new long[keyCount];
+            this.quantities = new long[keyCount];
+            this.amounts = new double[keyCount];
+        }
+
+        private Partial merge(Partial other) {
+            for (int key = 0; key < rows.length; key++) {
+                rows[key] += other.rows[key];
+                quantities[key] += other.quantities[key];
+                amounts[key] += other.amounts[key];
+            }
+            return this;
+        }
+
+        private Groups toGroups() {
+            int count = 0;
+            for (long keyRows : rows) {
+                count += keyRows > 0 ? 1 : 0;
+            }
+            Groups groups = new Groups(new int[count], new long[count], new long[count], new double[count]);
+            int index = 0;
+            for (int key = 0; key < rows.length; key++) {
+                if (rows[key] > 0) {
+                    groups.keys()[index] = key;
+                    groups.rows()[index] = rows[key];
+                    groups.quantities()[index] = quantities[key];
+                    groups.amounts()[index++] = amounts[key];
+                }
+            }
+            return groups;
+        }
+    }
+
+    /**
+     * The columns a grouping can be keyed by.
+     */
+    public enum Dimension {
+        CLIENT,
+        PRODUCT
+    }
+
+    /**
+     * A conjunction of conditions on the sales rows. The client and product conditions are optional.
+     *
+     * @param fromMillis the earliest order date in epoch milliseconds, inclusive
+     * @param toMillis   the latest order date in epoch milliseconds, exclusive
+     * @param clientId   the ID of the client, or -1 for any client
+     * @param productId  the ID of the product, or -1 for any product
+     */
+    public record Filter(long fromMillis, long toMillis, int clientId, int productId) {
+
+        /**
+         * Creates a filter matching every row.
+         *
+         * @return the filter
+         */
+        public static Filter all() {
+            return new Filter(Long.MIN_VALUE, Long.MAX_VALUE, -1, -1);
+        }
+
+        /**
+         * Creates a filter matching the rows of orders placed in a period.
+         *
+         * @param fromMillis the start of the period in epoch milliseconds, inclusive
+         * @param toMillis   the end of the period in epoch milliseconds, exclusive
+         * @return the filter
+         */
+        public static Filter between(long fromMillis, long toMillis) {
+            return new Filter(fromMillis, toMillis, -1, -1);
+        }
+
+        /**
+         * Narrows the filter to one client.
+         *
+         * @param clientId the ID of the client
+         * @return the narrowed filter
+         */
+        public Filter client(int clientId) {
+            return new Filter(fromMillis, toMillis, clientId, productId);
+        }
+
+        /**
+         * Narrows the filter to one product.
+         *
+         * @param productId the ID of the product
+         * @return the narrowed filter
+         */
+        public Filter product(int productId) {
+            return new Filter(fromMillis, toMillis, clientId, productId);
+        }
+
+        /**
+         * Tells whether any row of a block can fall in the period of the filter.
+         */
+        private boolean mayMatch(Columns c, int block) {
+            return c.blockMaxMillis()[block] >= fromMillis && c.blockMinMillis()[block] < toMillis;
+        }
+
+        /**
+         * Evaluates the filter on one row without branching on each condition,
+         * which keeps the scan loops free of unpredictable branches.
+         */
+        private boolean matches(Columns c, int row) {
+            long millis = c.orderMillis()[row];
+            return millis >= fromMillis
+                    & millis < toMillis
+                    & (clientId < 0 | c.clientIds()[row] == clientId)
+                    & (productId < 0 | c.productIds()[row] == productId);
+        }
+    }
+
+    /**
+     * The totals of a set of sales rows.
+     *
+     * @param rows     the number of rows
+     * @param quantity the units sold
+     * @param amount   the amount billed
+     */
+    public record Totals(long rows, long quantity, double amount) {
+
+        private Totals plus(Totals other) {
+            return new Totals(rows + other.rows, quantity + other.quantity, amount + other.amount);
+        }
+    }
+
+    /**
+     * The groups of a grouping as parallel arrays, in ascending key order.
+     *
+     * @param keys       the client or product ID of each group
+     * @param rows       the number of rows of each group
+     * @param quantities the units sold in each group
+     * @param amounts    the amount billed in each group
+     */
+    public record Groups(int[] keys, long[] rows, long[] quantities, double[] amounts) {
+
+        /**
+         * Gets the number of groups.
+         *
+         * @return the number of groups
+         */
+        public int size() {
+            return keys.length;
+        }
+
+        /**
+         * Gets the indexes of the groups with the highest amounts.
+         *
+         * @param limit the maximum number of groups
+         * @return the indexes into the arrays of the groups, highest amount first
+         */
+        public List<Integer> top(int limit) {
+            List<Integer> indexes = new ArrayList<>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                indexes.add(i);
+            }
+            indexes.sort((a, b) -> Double.compare(amounts[b], amounts[a]));
+            return indexes.subList(0, Math.min(limit, indexes.size()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package business;
+
+import data.SalesSummaryDAO;
+import models.ClientSales;
+import models.ProductSales;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * The SalesSummaryVerifier class checks the sales summary tables against totals recomputed from
+ * the purchases and bills, and rebuilds the tables from them when asked to.
+ * <p>
+ * Bills written behind through the bill journal are only counted by the recomputation once they reach
+ * the log table, so the newest orders may show up as differences while the journal is being flushed.
+ */
+public class SalesSummaryVerifier {
+
+    /**
+     * The largest difference between two amounts that is still accepted as rounding.
+     */
+    private static final double AMOUNT_TOLERANCE = 0.005;
+
+    private final SalesSummaryDAO salesSummaryDAO;
+
+    /**
+     * Constructs a new SalesSummaryVerifier instance with the specified data source.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public SalesSummaryVerifier(DataSource dataSource) {
+        this.salesSummaryDAO = new SalesSummaryDAO(dataSource);
+    }
+
+    /**
+     * Recomputes the totals of every product, client and day from the order history
+     * and compares them with the summary tables.
+     *
+     * @return a description of every difference found; empty if the tables are correct
+     */
+    public List<String> verify() {
+        List<String> differences = new ArrayList<>();
+        compare("product", salesSummaryDAO.getAllProductSales(false), salesSummaryDAO.getAllProductSales(true),
+                ProductSales::productId,
+                (stored, recomputed) -> stored.unitsSold() == recomputed.unitsSold()
+                        && sameAmount(stored.revenue(), recomputed.revenue()),
+                differences);
+        compare("client", salesSummaryDAO.getAllClientSales(false), salesSummaryDAO.getAllClientSales(true),
+                ClientSales::clientId,
+                (stored, recomputed) -> stored.orderCount() == recomputed.orderCount()
+                        && sameAmount(stored.spend(), recomputed.spend()),
+                differences);
+        compare("day", salesSummaryDAO.getAllDailyRevenue(false), salesSummaryDAO.getAllDailyRevenue(true),
+                day -> day.day().toString(),
+                (stored, recomputed) -> stored.orderCount() == recomputed.orderCount()
+                        && sameAmount(stored.revenue(), recomputed.revenue()),
+                differences);
+        return differences;
+    }
+
+    /**
+     * Replaces the summary tables with totals recomputed from the order history.
+     * Orders must not be placed while the tables are rebuilt.
+     *
+     * @return true if the tables were rebuilt, false otherwise
+     */
+    public boolean rebuild() {
+        return salesSummaryDAO.rebuild();
+    }
+
+    private static boolean sameAmount(double a, double b) {
+        return Math.abs(a - b) <= AMOUNT_TOLERANCE;
+    }
+
+    /**
+     * Compares stored and recomputed rows by key, describing every row that is missing on either side
+     * or whose values differ.
+     */
+    private static <T, K> void compare(String kind, List<T> stored, List<T> recomputed, Function<T, K> key,
+                                       BiPredicate<T, T> matches, List<String> differences) {
+        Map<K, T> expected = new LinkedHashMap<>();
+        for (T row : recomputed) {
+            expected.put(key.apply(row), row);
+        }
+        for (T row : stored) {
+            T other = expected.remove(key.apply(row));
+            if (other == null) {
+                differences.add(kind + " " + key.apply(row) + ": stored " + row + " but no orders found");
+            } else if (!matches.test(row, other)) {
+                differences.add(kind + " " + key.apply(row) + ": stored " + row + ", recomputed " + other);
+            }
+        }
+        for (T row : expected.values()) {
+            differences.add(kind + " " + key.apply(row) + ": missing, recomputed " + row);
+        }
+    }
+}
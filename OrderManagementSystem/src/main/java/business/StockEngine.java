@@ -0,0 +1,460 @@
+package business;
+
+import data.ProductDAO;
+import data.StockDeltaDAO;
+import data.Transactions;
+import models.Product;
+import models.StockDelta;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The StockEngine class keeps the available stock of every product in memory, so that orders can be
+ * checked and reserved without touching the database.
+ * <p>
+ * Each product has its own atomic counter updated with compare-and-set, so orders for different
+ * products never contend. A product expected to sell very fast can be switched to hot mode with
+ * {@link #setHot(int, int)}, which splits its counters into buckets so that orders for it contend
+ * less too. An order first reserves units, then either commits them once its purchase is written
+ * or releases them if it fails. Reserved units are held, and stay held once sold until they are
+ * subtracted from the product table.
+ * <p>
+ * Sold units are journaled in the stock_delta table by the transaction that writes their order, and a
+ * background thread moves them into the product table as net deltas, deleting the journal rows in the
+ * same transaction. Until that transaction commits the units stay held, so the available stock is always
+ * the table's stock minus the held units. A bucket keeps its available and held units in one word, so
+ * reserving and releasing move units in one compare-and-set and never change the bucket's total; resetting
+ * the stock adjusts the available units by the difference between the table's stock and that total, which
+ * is the same whenever it is read. After a crash nothing is
+ * lost: {@link #start()} applies the journal left behind before it loads the stock.
+ * <p>
+ * While an engine is in use it is the authority on stock: every change to the stock of a product
+ * must go through it, otherwise the in-memory counters drift from the table until the next
+ * {@link #reconcile()}.
+ */
+public class StockEngine implements AutoCloseable {
+
+    /**
+     * The default interval between flushes of committed stock to the database.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    private static final int FLUSH_BATCH_SIZE = 10_000;
+
+    private final DataSource dataSource;
+    private final ProductDAO productDAO;
+    private final StockDeltaDAO stockDeltaDAO;
+    private final long flushIntervalMillis;
+    private final ConcurrentHashMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Constructs a StockEngine with the default flush interval.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public StockEngine(DataSource dataSource) {
+        this(dataSource, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Constructs a StockEngine. It tracks no products until {@link #start()} is called.
+     *
+     * @param dataSource          the data source providing database connections
+     * @param flushIntervalMillis the interval between flushes in milliseconds
+     */
+    public StockEngine(DataSource dataSource, long flushIntervalMillis) {
+        this.dataSource = dataSource;
+        this.productDAO = new ProductDAO(dataSource);
+        this.stockDeltaDAO = new StockDeltaDAO(dataSource);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stock-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Applies the units journaled before the last shutdown or crash, loads the stock of every product
+     * from the database and starts flushing sold units in the background.
+     */
+    public void start() {
+        reconcile();
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserves units of a product if enough are available.
+     * The units are taken from a randomly picked bucket; for a hot product whose bucket runs dry
+     * the rest is borrowed from the other buckets, and everything taken is returned if they fall short.
+     *
+     * @param productId the ID of the product
+     * @param quantity  the number of units to reserve
+     * @return true if the units were reserved, false if the product is unknown or has too little stock
+     */
+    public boolean reserve(int productId, int quantity) {
+        Counter counter = counters.get(productId);
+        if (counter == null || quantity <= 0) {
+            return false;
+        }
+        Bucket[] buckets = counter.buckets;
+        int home = counter.home();
+        Bucket bucket = buckets[home];
+        if (bucket.take(quantity, quantity) == quantity) {
+            return true;
+        }
+        if (buckets.length == 1) {
+            return false;
+        }
+
+        int taken = 0;
+        for (int i = 0; i < buckets.length && taken < quantity; i++) {
+            taken += buckets[(home + i) % buckets.length].take(1, quantity - taken);
+        }
+        if (taken < quantity) {
+            bucket.add(taken, -taken);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Confirms reserved units as sold, once the order that journaled them has committed.
+     * The units stay held, as they were while reserved, until a flush subtracts them from the product
+     * table, so the counters do not change.
+     *
+     * @param productId the ID of the product
+     * @param quantity  the number of reserved units sold
+     */
+    public void commit(int productId, int quantity) {
+    }
+
+    /**
+     * Returns reserved units to the available stock.
+     *
+     * @param productId the ID of the product
+     * @param quantity  the number of reserved units to return
+     */
+    public void release(int productId, int quantity) {
+        Counter counter = counters.get(productId);
+        if (counter != null) {
+            counter.buckets[counter.home()].add(quantity, -quantity);
+        }
+    }
+
+    /**
+     * Gets the number of units of a product available for reservation.
+     *
+     * @param productId the ID of the product
+     * @return the available units, or -1 if the product is unknown
+     */
+    public int getAvailable(int productId) {
+        Counter counter = counters.get(productId);
+        return counter != null ? counter.available() : -1;
+    }
+
+    /**
+     * Starts tracking a product, or resets the stock of a tracked product, from the stock stored in the database.
+     * Used after the stock of a product was written directly, for example when a product is added or edited.
+     * Units still reserved, and sold units not yet flushed, are kept out of the available stock. The stock is
+     * read while no flush is running, so it always matches the units still held.
+     *
+     * @param productId the ID of the product
+     */
+    public void track(int productId) {
+        flushLock.lock();
+        try {
+            int stock = productDAO.getStock(productId);
+            if (stock >= 0) {
+                reset(productId, stock);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the available stock of a product from its stock in the database. The caller holds the flush lock.
+     */
+    private void reset(int productId, int stock) {
+        Counter counter = counters.computeIfAbsent(productId, id -> new Counter());
+        synchronized (counter) {
+            counter.spread(stock - counter.total());
+        }
+    }
+
+    /**
+     * Switches a tracked product to or from hot mode.
+     * In hot mode the available stock of the product is split into buckets and every thread reserves
+     * from its own bucket, so a flash sale on one product does not serialize all orders on one counter.
+     * Buckets are never removed, so units in flight are never lost; switching back to one bucket only
+     * makes new reservations start from the first bucket again.
+     *
+     * @param productId the ID of the product
+     * @param buckets   the number of buckets, or 1 to switch hot mode off
+     * @return true if the mode was changed, false if the product is not tracked
+     */
+    public boolean setHot(int productId, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("buckets must be positive");
+        }
+        Counter counter = counters.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        synchronized (counter) {
+            if (buckets > counter.buckets.length) {
+                Bucket[] grown = Arrays.copyOf(counter.buckets, buckets);
+                for (int i = counter.buckets.length; i < buckets; i++) {
+                    grown[i] = new Bucket();
+                }
+                counter.buckets = grown;
+            }
+            counter.width = buckets;
+            counter.spread(0);
+        }
+        return true;
+    }
+
+    /**
+     * Stops tracking a product, for example after it was deleted.
+     *
+     * @param productId the ID of the product
+     */
+    public void forget(int productId) {
+        counters.remove(productId);
+    }
+
+    /**
+     * Moves the journaled units into the product table, in transactions of up to {@value #FLUSH_BATCH_SIZE}
+     * journal rows. Each transaction subtracts the net units of every product, in ascending ID order like
+     * the order paths, and deletes the journal rows it applied; only after it commits are the units no longer
+     * held. If a write fails, the journal keeps the rows for the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<StockDelta> deltas;
+            do {
+                deltas = stockDeltaDAO.getPendingDeltas(FLUSH_BATCH_SIZE);
+                if (deltas == null || deltas.isEmpty() || !apply(deltas)) {
+                    return;
+                }
+            } while (deltas.size() == FLUSH_BATCH_SIZE);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Applies journal rows to the product table in one transaction. The caller holds the flush lock.
+     *
+     * @return true if the rows were applied
+     */
+    private boolean apply(List<StockDelta> deltas) {
+        Map<Integer, Integer> pending = new TreeMap<>();
+        for (StockDelta delta : deltas) {
+            pending.merge(delta.productId(), delta.quantity(), Integer::sum);
+        }
+        int[] ids = new int[pending.size()];
+        int[] quantities = new int[pending.size()];
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : pending.entrySet()) {
+            ids[index] = entry.getKey();
+            quantities[index++] = entry.getValue();
+        }
+
+        boolean written;
+        try {
+            written = Transactions.execute(dataSource, connection -> {
+                if (!productDAO.applyStockDeltas(ids, quantities) || !stockDeltaDAO.deleteDeltas(deltas)) {
+                    connection.rollback();
+                    return false;
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            // the journal keeps the rows for the next flush; only errors that are not transient are printed
+            PurchaseBLL.failedWith(e);
+            written = false;
+        }
+        if (written) {
+            for (int i = 0; i < ids.length; i++) {
+                Counter counter = counters.get(ids[i]);
+                if (counter != null) {
+                    counter.buckets[0].add(0, -quantities[i]);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Flushes the journal and reloads the stock of every product from the database.
+     * Units still reserved are kept out of the available stock; products no longer in the table are dropped.
+     */
+    public void reconcile() {
+        flush();
+        flushLock.lock();
+        try {
+            Map<Integer, Product> products = new ConcurrentHashMap<>();
+            productDAO.forEachObject(product -> products.put(product.getId(), product));
+            counters.keySet().retainAll(products.keySet());
+            products.values().forEach(product -> reset(product.getId(), product.getStock()));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background flusher and flushes the journal once more.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * The stock counter of one product, split into buckets.
+     * Only the sums over all buckets are meaningful; a single bucket may even hold a negative number
+     * of units, because units are released in a bucket picked anew rather than the one they were reserved from.
+     */
+    private static final class Counter {
+        private volatile Bucket[] buckets = {new Bucket()};
+        private volatile int width = 1;
+
+        /**
+         * Picks a bucket among the buckets in use at random. A random pick spreads the callers evenly
+         * whatever their threads, including virtual threads that place a single order and end.
+         */
+        private int home() {
+            int width = this.width;
+            return width == 1 ? 0 : ThreadLocalRandom.current().nextInt(width);
+        }
+
+        private int available() {
+            int sum = 0;
+            for (Bucket bucket : buckets) {
+                sum += Bucket.available(bucket.get());
+            }
+            return sum;
+        }
+
+        /**
+         * Sums the available and held units. Reserving and releasing leave the total of each bucket
+         * unchanged, so the sum is exact while they run.
+         */
+        private int total() {
+            int sum = 0;
+            for (Bucket bucket : buckets) {
+                long units = bucket.get();
+                sum += Bucket.available(units) + Bucket.held(units);
+            }
+            return sum;
+        }
+
+        /**
+         * Spreads the available units, changed by the given number, evenly over the buckets in use.
+         * The caller holds the counter's lock.
+         */
+        private void spread(int change) {
+            int total = change;
+            for (Bucket bucket : buckets) {
+                total += bucket.drain();
+            }
+            int width = this.width;
+            for (int i = 0; i < width; i++) {
+                buckets[i].add(total / width + (i < total % width ? 1 : 0), 0);
+            }
+        }
+    }
+
+    /**
+     * The available and held units of one bucket, packed into one word so that both change in one
+     * compare-and-set. The word is kept in an array padded to a cache line of its own so that threads
+     * working on neighbouring buckets do not slow each other down.
+     */
+    private static final class Bucket {
+        private static final int PADDED_LENGTH = 16;
+
+        private final AtomicLongArray units = new AtomicLongArray(PADDED_LENGTH);
+
+        private static int available(long units) {
+            return (int) units;
+        }
+
+        private static int held(long units) {
+            return (int) (units >> 32);
+        }
+
+        private static long pack(int available, int held) {
+            return (long) held << 32 | available & 0xFFFFFFFFL;
+        }
+
+        private long get() {
+            return units.get(0);
+        }
+
+        /**
+         * Moves up to a number of available units to the held units, but nothing if fewer than a minimum are available.
+         *
+         * @return the number of units moved
+         */
+        private int take(int minimum, int maximum) {
+            long current;
+            int taken;
+            do {
+                current = get();
+                int available = available(current);
+                if (available < minimum) {
+                    return 0;
+                }
+                taken = Math.min(available, maximum);
+            } while (!units.compareAndSet(0, current, pack(available(current) - taken, held(current) + taken)));
+            return taken;
+        }
+
+        /**
+         * Adds to the available and the held units at once.
+         */
+        private void add(int available, int held) {
+            long current;
+            do {
+                current = get();
+            } while (!units.compareAndSet(0, current, pack(available(current) + available, held(current) + held)));
+        }
+
+        /**
+         * Removes all available units, keeping the held units.
+         *
+         * @return the number of units removed
+         */
+        private int drain() {
+            long current;
+            do {
+                current = get();
+            } while (!units.compareAndSet(0, current, pack(0, held(current))));
+            return available(current);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package business;
+
+import business.PurchaseBLL.SalesWindow;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The TopSellers class counts the units sold of each product and the spend of each client over every
+ * sales window, with one {@link HeavyHitters} tracker per window. One instance is shared by the purchase
+ * business logic of an application, so that all orders are counted in the same trackers.
+ */
+public class TopSellers {
+
+    /**
+     * The number of products or clients counted per slice of a window.
+     */
+    private static final int CAPACITY = 256;
+
+    private final Map<SalesWindow, HeavyHitters> products = trackers();
+    private final Map<SalesWindow, HeavyHitters> clients = trackers();
+
+    private static Map<SalesWindow, HeavyHitters> trackers() {
+        Map<SalesWindow, HeavyHitters> trackers = new EnumMap<>(SalesWindow.class);
+        for (SalesWindow window : SalesWindow.values()) {
+            trackers.put(window, new HeavyHitters(CAPACITY, window.millis(), window.slices()));
+        }
+        return trackers;
+    }
+
+    /**
+     * Counts an order in every window.
+     *
+     * @param clientId    the ID of the client
+     * @param productIds  the IDs of the products sold
+     * @param quantities  the units sold of each product
+     * @param totalAmount the amount of the order
+     * @param nowMillis   the time of the order in epoch milliseconds
+     */
+    public void record(int clientId, int[] productIds, int[] quantities, double totalAmount, long nowMillis) {
+        for (SalesWindow window : SalesWindow.values()) {
+            for (int i = 0; i < productIds.length; i++) {
+                products.get(window).add(productIds[i], quantities[i], nowMillis);
+            }
+            clients.get(window).add(clientId, Math.round(totalAmount * 100), nowMillis);
+        }
+    }
+
+    /**
+     * Gets the products with the most units sold in a window ending now.
+     *
+     * @param window the time window
+     * @param limit  the maximum number of products
+     * @return the product IDs with their units sold, most units first
+     */
+    public List<HeavyHitters.Entry> topProducts(SalesWindow window, int limit) {
+        return products.get(window).top(limit);
+    }
+
+    /**
+     * Gets the clients with the largest spend in a window ending now.
+     *
+     * @param window the time window
+     * @param limit  the maximum number of clients
+     * @return the client IDs with their spend in cents, largest spend first
+     */
+    public List<HeavyHitters.Entry> topClients(SalesWindow window, int limit) {
+        return clients.get(window).top(limit);
+    }
+}
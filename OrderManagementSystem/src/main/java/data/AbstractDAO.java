@@ -1,9 +1,14 @@
 package data;
 
-import java.lang.reflect.Field;
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The AbstractDAO class provides generic methods for interacting with a database.
@@ -12,15 +17,41 @@ import java.util.List;
  */
 public abstract class AbstractDAO<T> {
 
-    private final Connection connection;
+    /**
+     * The default number of rows sent and committed together by {@link #addObjects(List)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The IN-list sizes used by {@link #findObjects(Collection)}; a chunk is padded up to the next size,
+     * so that only these few statements are ever prepared.
+     */
+    private static final int[] IN_LIST_SIZES = {1, 4, 16, 64, 256};
+
+    private final DataSource dataSource;
+    private final EntityCache<T> cache;
+    private int fetchSize = ResultSetStreams.STREAMING_FETCH_SIZE;
+
+    /**
+     * Constructs an AbstractDAO over a data source.
+     * Every operation borrows a connection for its duration and returns it afterwards.
+     *
+     * @param dataSource The data source providing database connections.
+     */
+    public AbstractDAO(DataSource dataSource) {
+        this(dataSource, null);
+    }
 
     /**
-     * Constructs an AbstractDAO with a database connection.
+     * Constructs an AbstractDAO over a data source with a read-through entity cache.
+     * Lookups by primary key are served from the cache, updates write through to it and deletes invalidate it.
      *
-     * @param connection The database connection.
+     * @param dataSource The data source providing database connections.
+     * @param cache      The entity cache, or null to disable caching.
      */
-    public AbstractDAO(Connection connection) {
-        this.connection = connection;
+    public AbstractDAO(DataSource dataSource, EntityCache<T> cache) {
+        this.dataSource = dataSource;
+        this.cache = cache;
     }
 
     /**
@@ -30,62 +61,144 @@ public abstract class AbstractDAO<T> {
      * @return The auto-generated primary key of the inserted object.
      */
     public int addObject(T object) {
-        String tableName = getTableName();
+        EntityMapper<T> mapper = getEntityMapper();
         String primaryKey = getPrimaryKeyName();
-        StringBuilder columns = new StringBuilder();
-        StringBuilder values = new StringBuilder();
+        String query = mapper.insertQuery(getTableName(), primaryKey);
 
-        try {
-            for (Field field : object.getClass().getDeclaredFields()) {
-                field.setAccessible(true);
-                if (!field.getName().equals(primaryKey)) {
-                    columns.append(field.getName()).append(",");
-                    values.append("'").append(field.get(object)).append("',");
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query, Statement.RETURN_GENERATED_KEYS);
+            bindColumns(statement, mapper.getColumnProperties(primaryKey), object);
+            statement.executeUpdate();
+
+            try (ResultSet rs = statement.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
                 }
             }
-            columns.deleteCharAt(columns.length() - 1);
-            values.deleteCharAt(values.length() - 1);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
 
-            String query = "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
-            PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-            statement.executeUpdate();
+    /**
+     * Inserts a list of new objects into the database in batches of {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param objects The objects to be inserted.
+     * @return The auto-generated primary keys, in input order; -1 for objects that could not be inserted.
+     */
+    public int[] addObjects(List<T> objects) {
+        return addObjects(objects, DEFAULT_BATCH_SIZE);
+    }
 
-            ResultSet rs = statement.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
+    /**
+     * Inserts a list of new objects into the database in batches.
+     * Each batch is sent with a single executeBatch call and committed as one transaction;
+     * if a batch fails it is rolled back and its objects get -1 as key.
+     * When called inside a transaction, the batches join it instead and nothing is committed or rolled back here.
+     *
+     * @param objects   The objects to be inserted.
+     * @param batchSize The maximum number of rows per batch.
+     * @return The auto-generated primary keys, in input order; -1 for objects that could not be inserted.
+     */
+    public int[] addObjects(List<T> objects, int batchSize) {
+        int[] keys = new int[objects.size()];
+        Arrays.fill(keys, -1);
+        if (objects.isEmpty()) {
+            return keys;
+        }
+
+        EntityMapper<T> mapper = getEntityMapper();
+        String primaryKey = getPrimaryKeyName();
+        EntityMapper.Property[] properties = mapper.getColumnProperties(primaryKey);
+        String query = mapper.insertQuery(getTableName(), primaryKey);
+
+        try (Connection connection = getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement statement = prepare(connection, query, Statement.RETURN_GENERATED_KEYS);
+                for (int start = 0; start < objects.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, objects.size());
+                    try {
+                        for (T object : objects.subList(start, end)) {
+                            bindColumns(statement, properties, object);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                        try (ResultSet rs = statement.getGeneratedKeys()) {
+                            for (int i = start; i < end && rs.next(); i++) {
+                                keys[i] = rs.getInt(1);
+                            }
+                        }
+                        if (autoCommit) {
+                            connection.commit();
+                        }
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                        statement.clearBatch();
+                        Arrays.fill(keys, start, end, -1);
+                        if (!autoCommit) {
+                            return keys;
+                        }
+                        connection.rollback();
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
-        } catch (IllegalAccessException | SQLException e) {
+        } catch (SQLException e) {
             e.printStackTrace();
         }
-        return -1;
+        return keys;
     }
 
     /**
      * Updates an existing object in the database.
+     * Only the columns that changed since this object was loaded with {@link #findObject(int, Class)} or last
+     * written are written, and no statement is sent when nothing changed. Any other object gets a full-row
+     * update: a cached entity may be stale, so it is never used as the baseline.
+     * Inside a transaction, the written values become the baseline of the next update only if it commits.
      *
      * @param id     The primary key of the object to be updated.
      * @param object The updated object.
      */
     public void editObject(int id, T object) {
-        String tableName = getTableName();
+        EntityMapper<T> mapper = getEntityMapper();
         String primaryKey = getPrimaryKeyName();
-        StringBuilder setClause = new StringBuilder();
 
-        try {
-            for (Field field : object.getClass().getDeclaredFields()) {
-                field.setAccessible(true);
-                if (!field.getName().equals(primaryKey)) {
-                    setClause.append(field.getName()).append(" = '").append(field.get(object)).append("',");
-                }
-            }
-            setClause.deleteCharAt(setClause.length() - 1);
+        Object[] baseline = mapper.snapshot(object);
+        long columns = baseline != null ? mapper.dirtyColumns(baseline, object, primaryKey) : -1L;
+        if (columns == 0) {
+            return;
+        }
 
-            String query = "UPDATE " + tableName + " SET " + setClause + " WHERE " + primaryKey + " = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, id);
+        String query;
+        EntityMapper.Property[] properties;
+        if (columns == -1L) {
+            query = mapper.updateQuery(getTableName(), primaryKey);
+            properties = mapper.getColumnProperties(primaryKey);
+        } else {
+            query = mapper.updateQuery(getTableName(), primaryKey, columns);
+            properties = mapper.getColumnProperties(primaryKey, columns);
+        }
+
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            int index = bindColumns(statement, properties, object);
+            statement.setInt(index, id);
             statement.executeUpdate();
+            Object[] written = mapper.values(object);
+            Transactions.afterCommit(() -> mapper.track(object, written));
+            if (cache != null) {
+                if (Transactions.isActive()) {
+                    invalidateCached(id);
+                } else {
+                    cache.put(id, mapper.copy(object));
+                }
+            }
             System.out.println("Object updated successfully.");
-        } catch (IllegalAccessException | SQLException e) {
+        } catch (SQLException e) {
             e.printStackTrace();
         }
     }
@@ -99,11 +212,12 @@ public abstract class AbstractDAO<T> {
         String tableName = getTableName();
         String primaryKey = getPrimaryKeyName();
 
-        try {
-            String query = "DELETE FROM " + tableName + " WHERE " + primaryKey + " = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
+        String query = "DELETE FROM " + tableName + " WHERE " + primaryKey + " = ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
             statement.setInt(1, id);
             statement.executeUpdate();
+            invalidateCached(id);
             System.out.println("Object deleted successfully.");
         } catch (SQLException e) {
             e.printStackTrace();
@@ -112,88 +226,358 @@ public abstract class AbstractDAO<T> {
 
     /**
      * Finds an object in the database by its primary key.
+     * An object read from the database is tracked for {@link #editObject(int, Object)} once the current
+     * transaction commits; an object served from the cache is a copy and is not tracked.
      *
      * @param id     The primary key of the object to find.
      * @param tClass The class of the object.
      * @return The found object, or null if not found.
      */
     public T findObject(int id, Class<T> tClass) {
+        EntityMapper<T> mapper = EntityMapper.of(tClass);
+        if (cache != null) {
+            T cached = cache.get(id);
+            if (cached != null) {
+                return mapper.copy(cached);
+            }
+        }
+
         String tableName = getTableName();
         String primaryKey = getPrimaryKeyName();
 
-        try {
-            String query = "SELECT * FROM " + tableName + " WHERE " + primaryKey + " = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
+        String query = "SELECT * FROM " + tableName + " WHERE " + primaryKey + " = ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
             statement.setInt(1, id);
-            ResultSet resultSet = statement.executeQuery();
-
-            if (resultSet.next()) {
-                T object = tClass.newInstance();
-                for (Field field : tClass.getDeclaredFields()) {
-                    field.setAccessible(true);
-                    field.set(object, resultSet.getObject(field.getName()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    T object = mapper.compile(resultSet.getMetaData()).mapRow(resultSet);
+                    Object[] loaded = mapper.values(object);
+                    Transactions.afterCommit(() -> mapper.track(object, loaded));
+                    if (cache != null && !Transactions.isActive()) {
+                        cache.put(id, mapper.copy(object));
+                    }
+                    return object;
                 }
-                return object;
             }
-        } catch (InstantiationException | IllegalAccessException | SQLException e) {
+        } catch (SQLException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Finds several objects in the database by their primary keys.
+     * Cached objects are served from the cache; the others are loaded with chunked
+     * {@code IN (...)} queries, one per chunk instead of one per ID.
+     *
+     * @param ids The primary keys of the objects to find; duplicates are ignored.
+     * @return The found objects by primary key; IDs that do not exist are absent.
+     */
+    public IntObjectMap<T> findObjects(Collection<Integer> ids) {
+        EntityMapper<T> mapper = getEntityMapper();
+        IntObjectMap<T> found = new IntObjectMap<>(ids.size());
+        int[] missing = new int[ids.size()];
+        int missingCount = 0;
+        for (int id : ids) {
+            T cached = cache != null ? cache.get(id) : null;
+            if (cached != null) {
+                found.put(id, mapper.copy(cached));
+            } else {
+                missing[missingCount++] = id;
+            }
+        }
+        if (missingCount == 0) {
+            return found;
+        }
+        Arrays.sort(missing, 0, missingCount);
+
+        EntityMapper.Property key = mapper.getProperty(getPrimaryKeyName());
+        try (Connection connection = getConnection()) {
+            int start = 0;
+            while (start < missingCount) {
+                int size = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+                for (int candidate : IN_LIST_SIZES) {
+                    if (candidate >= missingCount - start) {
+                        size = candidate;
+                        break;
+                    }
+                }
+                int end = Math.min(start + size, missingCount);
+
+                PreparedStatement statement = prepare(connection, inListQuery(size));
+                for (int i = 0; i < size; i++) {
+                    statement.setInt(i + 1, missing[Math.min(start + i, end - 1)]);
+                }
+                for (T object : mapAll(statement)) {
+                    int id = (int) key.get(object);
+                    found.put(id, object);
+                    if (cache != null && !Transactions.isActive()) {
+                        cache.put(id, mapper.copy(object));
+                    }
+                }
+                start = end;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return found;
+    }
+
+    private String inListQuery(int size) {
+        StringBuilder query = new StringBuilder("SELECT * FROM ").append(getTableName())
+                .append(" WHERE ").append(getPrimaryKeyName()).append(" IN (");
+        for (int i = 0; i < size; i++) {
+            query.append(i == 0 ? "?" : ",?");
+        }
+        return query.append(")").toString();
+    }
+
     /**
      * Retrieves all objects of a certain type from the database.
+     * The rows are read through {@link #streamAllObjects()}; scans that do not need the whole table
+     * in memory should use the stream or {@link #forEachObject(Consumer)} instead.
      *
      * @return A list of all objects in the database.
      */
     public List<T> getAllObjects() {
-        List<T> objects = new ArrayList<>();
-        String tableName = getTableName();
+        try (Stream<T> objects = streamAllObjects()) {
+            return objects.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
 
-        try {
-            String query = "SELECT * FROM " + tableName;
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
+    /**
+     * Retrieves one page of objects ordered by primary key, starting after the given key.
+     * Seeking on the primary key index keeps the cost of every page constant, unlike OFFSET.
+     *
+     * @param afterKey The primary key of the last object of the previous page, or Integer.MIN_VALUE for the first page.
+     * @param limit    The maximum number of objects to return.
+     * @return The objects of the page.
+     */
+    public List<T> findPage(int afterKey, int limit) {
+        String primaryKey = getPrimaryKeyName();
+        String query = "SELECT * FROM " + getTableName() + " WHERE " + primaryKey + " > ? ORDER BY " + primaryKey + " LIMIT ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            statement.setInt(1, afterKey);
+            statement.setInt(2, limit);
+            return mapAll(statement);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
 
-            while (resultSet.next()) {
-                T object = createObjectFromResultSet(resultSet);
-                objects.add(object);
+    /**
+     * Retrieves one page of objects ordered by a column and then by primary key,
+     * starting after the given (column value, primary key) position.
+     * NULL sort values come first, as MySQL orders them. A NULL integer column is read as -1,
+     * so for integer columns an afterValue of -1 stands for NULL as well.
+     *
+     * @param sortColumn The column to order by; must be one of the object fields.
+     * @param afterValue The sort column value of the last object of the previous page, which may be null.
+     * @param afterKey   The primary key of the last object of the previous page, or Integer.MIN_VALUE for the first page.
+     * @param limit      The maximum number of objects to return.
+     * @return The objects of the page.
+     * @throws IllegalArgumentException if the sort column is not a field of the object type.
+     */
+    public List<T> findPage(String sortColumn, Object afterValue, int afterKey, int limit) {
+        EntityMapper.Property property = getEntityMapper().getProperty(sortColumn);
+        String column = property.getName();
+        String primaryKey = getPrimaryKeyName();
+        String select = "SELECT * FROM " + getTableName();
+        String orderBy = " ORDER BY " + column + ", " + primaryKey + " LIMIT ?";
+        boolean afterNull = afterValue == null
+                || property.getKind() == EntityMapper.Kind.INT && afterValue.equals(-1);
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement;
+            if (afterKey == Integer.MIN_VALUE) {
+                statement = prepare(connection, select + orderBy);
+                statement.setInt(1, limit);
+            } else if (afterNull) {
+                statement = prepare(connection, select + " WHERE (" + column + " IS NULL AND " + primaryKey + " > ?) OR "
+                        + column + " IS NOT NULL" + orderBy);
+                statement.setInt(1, afterKey);
+                statement.setInt(2, limit);
+            } else {
+                statement = prepare(connection, select
+                        + " WHERE " + column + " > ? OR (" + column + " = ? AND " + primaryKey + " > ?)" + orderBy);
+                statement.setObject(1, afterValue);
+                statement.setObject(2, afterValue);
+                statement.setInt(3, afterKey);
+                statement.setInt(4, limit);
             }
+            return mapAll(statement);
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return new ArrayList<>();
+    }
 
+    /**
+     * Executes a bound query and maps every row of its result.
+     *
+     * @param statement The statement to execute.
+     * @return The mapped objects.
+     * @throws SQLException if a database access error occurs.
+     */
+    List<T> mapAll(PreparedStatement statement) throws SQLException {
+        List<T> objects = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            RowMapper<T> rowMapper = getEntityMapper().compile(resultSet.getMetaData());
+            while (resultSet.next()) {
+                objects.add(rowMapper.mapRow(resultSet));
+            }
+        }
         return objects;
     }
 
+    /**
+     * Streams all objects of a certain type from the database without materializing the table.
+     * The rows are read through a forward-only, read-only result set using the configured fetch size.
+     * The stream holds a connection until it is closed, and no other statement can run on that
+     * connection while it is open.
+     *
+     * @return A stream over all objects in the database, or an empty stream if the query fails.
+     */
+    public Stream<T> streamAllObjects() {
+        String query = "SELECT * FROM " + getTableName();
+        try {
+            return ResultSetStreams.stream(getConnection(), query, fetchSize, getEntityMapper()::compile);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * Passes every object of a certain type to the consumer, one row at a time.
+     *
+     * @param consumer The consumer receiving each object.
+     */
+    public void forEachObject(Consumer<? super T> consumer) {
+        try (Stream<T> objects = streamAllObjects()) {
+            objects.forEach(consumer);
+        }
+    }
+
+    /**
+     * Sets the fetch size used by streaming scans.
+     * The default, Integer.MIN_VALUE, makes MySQL stream rows one at a time;
+     * a positive value fetches that many rows per round-trip when useCursorFetch is enabled.
+     *
+     * @param fetchSize The fetch size.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Gets the entity cache of the DAO.
+     *
+     * @return The entity cache, or null if the DAO does not cache.
+     */
+    public EntityCache<T> getCache() {
+        return cache;
+    }
+
+    /**
+     * Drops a cached entity, and drops it again when the current transaction completes,
+     * so that a value read by another thread before the commit cannot stay cached.
+     *
+     * @param id The primary key of the entity.
+     */
+    protected void invalidateCached(int id) {
+        if (cache != null) {
+            cache.invalidate(id);
+            Transactions.afterCompletion(() -> cache.invalidate(id));
+        }
+    }
+
+    /**
+     * Borrows a connection from the data source; closing it gives it back.
+     * When the calling thread already holds a pooled connection, the same connection is returned,
+     * so DAO calls made inside a business method share its unit of work.
+     *
+     * @return A database connection.
+     * @throws SQLException if no connection can be obtained.
+     */
+    protected Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Gets the data source of the DAO, for running several statements in one transaction.
+     *
+     * @return The data source providing database connections.
+     */
+    protected DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Gets a cached prepared statement of a connection.
+     * The statement stays open for reuse and must not be closed by the caller.
+     *
+     * @param connection The connection to prepare the statement on.
+     * @param query      The SQL query.
+     * @return The prepared statement.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    protected PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        return StatementCache.of(connection).prepare(query);
+    }
+
+    /**
+     * Gets a cached prepared statement of a connection.
+     * The statement stays open for reuse and must not be closed by the caller.
+     *
+     * @param connection        The connection to prepare the statement on.
+     * @param query             The SQL query.
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+     * @return The prepared statement.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    protected PreparedStatement prepare(Connection connection, String query, int autoGeneratedKeys) throws SQLException {
+        return StatementCache.of(connection).prepare(query, autoGeneratedKeys);
+    }
+
+    /**
+     * Binds the given properties of an object to consecutive statement parameters, starting at 1.
+     *
+     * @param statement  The statement to bind.
+     * @param properties The properties to bind.
+     * @param object     The object to read the values from.
+     * @return The index of the next unbound parameter.
+     * @throws SQLException if a parameter cannot be set.
+     */
+    int bindColumns(PreparedStatement statement, EntityMapper.Property[] properties, T object) throws SQLException {
+        int index = 1;
+        for (EntityMapper.Property property : properties) {
+            property.bind(statement, index++, object);
+        }
+        return index;
+    }
+
     /**
      * Creates an object from a ResultSet obtained from the database.
+     * Callers mapping many rows should compile a RowMapper once instead.
      *
      * @param resultSet The ResultSet containing the object data.
      * @return The created object.
      * @throws SQLException if a database access error occurs.
      */
     protected T createObjectFromResultSet(ResultSet resultSet) throws SQLException {
-        try {
-            T object = getObjectType().newInstance();
-            for (Field field : object.getClass().getDeclaredFields()) {
-                field.setAccessible(true);
-                Object value = resultSet.getObject(field.getName());
-                if (value == null) {
-                    if (field.getType() == int.class || field.getType() == Integer.class) {
-                        field.set(object, -1);
-                    } else {
-                        field.set(object, null);
-                    }
-                } else {
-                    field.set(object, value);
-                }
-            }
-            return object;
-        } catch (InstantiationException | IllegalAccessException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getEntityMapper().compile(resultSet.getMetaData()).mapRow(resultSet);
+    }
+
+    /**
+     * Gets the shared mapper of the object type the DAO interacts with.
+     *
+     * @return The entity mapper.
+     */
+    EntityMapper<T> getEntityMapper() {
+        return EntityMapper.of(getObjectType());
     }
 
     /**
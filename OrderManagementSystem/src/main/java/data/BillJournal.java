@@ -0,0 +1,458 @@
+package data;
+
+import models.Bill;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The BillJournal class is the write-behind store of the log table.
+ * <p>
+ * Bills are appended to a memory-mapped journal file and made durable with fsyncs shared by all
+ * concurrent appenders: a sync thread forces everything appended since the previous sync at once,
+ * so an append costs a local write plus a share of one fsync. A flusher thread periodically
+ * bulk-inserts the synced bills into the log table and then compacts the journal, moving the bills
+ * appended in the meantime to the front of the file. On start the bills left in the journal by a
+ * crash are inserted first.
+ * <p>
+ * Appenders wait on locks rather than monitors, so a virtual thread waiting for its fsync does not pin
+ * its carrier, and every wait is bounded: an append that cannot complete in time fails, and the caller
+ * falls back to inserting the bill directly.
+ * <p>
+ * The file starts with a header holding a magic number, the generation of the journal and the offset
+ * up to which bills were flushed. Every record carries the generation and a CRC, so records left over
+ * from before a compaction or torn by a crash are never replayed. Flushing skips bills whose order
+ * already has one in the log table, so replaying a bill that was inserted just before a crash is harmless.
+ */
+public class BillJournal implements AutoCloseable {
+
+    /**
+     * The system property enabling the journal at startup, for example {@code -Dbills.journal=true}.
+     * Without it bills are inserted into the log table directly.
+     */
+    public static final String PROPERTY = "bills.journal";
+
+    /**
+     * The default size of the journal file in bytes.
+     */
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+    /**
+     * The default interval between flushes to the log table.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    /**
+     * The default time an append waits for room in the journal and for its fsync.
+     */
+    public static final long DEFAULT_APPEND_TIMEOUT_MILLIS = 2000;
+
+    private static final int MAGIC = 0x42494C4C;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 28;
+    private static final int GENERATION_OFFSET = 4;
+    private static final int FLUSHED_OFFSET = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final LogDAO logDAO;
+    private final long flushIntervalMillis;
+    private final long appendTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition roomAvailable = lock.newCondition();
+    private final Condition recordsAppended = lock.newCondition();
+    private final Condition recordsSynced = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Thread syncer;
+    private final ScheduledExecutorService flusher;
+
+    private int generation;
+    private int writePosition;
+    private int syncedPosition;
+    private int flushedPosition;
+    private long appendedBytes;
+    private long syncedBytes;
+    private boolean syncing;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * Opens a journal with the default capacity and flush interval.
+     *
+     * @param dataSource the data source providing database connections
+     * @param file       the journal file; created if missing
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public BillJournal(DataSource dataSource, Path file) throws IOException {
+        this(dataSource, file, DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens a journal with the default append timeout.
+     *
+     * @param dataSource          the data source providing database connections
+     * @param file                the journal file; created if missing
+     * @param capacity            the size of the journal file in bytes
+     * @param flushIntervalMillis the interval between flushes to the log table in milliseconds
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public BillJournal(DataSource dataSource, Path file, int capacity, long flushIntervalMillis) throws IOException {
+        this(dataSource, file, capacity, flushIntervalMillis, DEFAULT_APPEND_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Opens a journal and finds the bills left in it. Nothing is appended durably or flushed until {@link #start()} is called.
+     *
+     * @param dataSource          the data source providing database connections
+     * @param file                the journal file; created if missing
+     * @param capacity            the size of the journal file in bytes
+     * @param flushIntervalMillis the interval between flushes to the log table in milliseconds
+     * @param appendTimeoutMillis the time an append waits for room and for its fsync in milliseconds
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public BillJournal(DataSource dataSource, Path file, int capacity, long flushIntervalMillis,
+                       long appendTimeoutMillis) throws IOException {
+        this.logDAO = new LogDAO(dataSource);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.appendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(appendTimeoutMillis);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        recover();
+        this.syncer = new Thread(this::syncLoop, "bill-journal-sync");
+        syncer.setDaemon(true);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "bill-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads whether bills are written behind through a journal from the {@value #PROPERTY} system property.
+     *
+     * @return true if the property is set to true, ignoring case
+     */
+    public static boolean isEnabledBySystemProperties() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * Inserts the bills left in the journal into the log table and starts the background threads.
+     */
+    public void start() {
+        flush();
+        syncer.start();
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the header and finds the end of the valid records, initializing a new or foreign file.
+     */
+    private void recover() {
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(GENERATION_OFFSET, 0);
+            buffer.putInt(FLUSHED_OFFSET, HEADER_SIZE);
+            buffer.force();
+        }
+        generation = buffer.getInt(GENERATION_OFFSET);
+        flushedPosition = buffer.getInt(FLUSHED_OFFSET);
+        if (flushedPosition < HEADER_SIZE || flushedPosition > buffer.capacity()) {
+            flushedPosition = HEADER_SIZE;
+        }
+        writePosition = flushedPosition;
+        while (writePosition + RECORD_SIZE <= buffer.capacity() && isValidRecord(writePosition)) {
+            writePosition += RECORD_SIZE;
+        }
+        syncedPosition = writePosition;
+    }
+
+    private boolean isValidRecord(int position) {
+        return buffer.getInt(position) == generation && buffer.getInt(position + 24) == checksum(position);
+    }
+
+    private int checksum(int position) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < 24; i++) {
+            crc.update(buffer.get(position + i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends a bill and waits until it is durable in the journal.
+     * If the journal is full, waits for the flusher to make room.
+     *
+     * @param bill the bill to append
+     * @return true if the bill is durable, false if the journal was closed, the wait timed out or was interrupted
+     */
+    public boolean append(Bill bill) {
+        long deadline = System.nanoTime() + appendTimeoutNanos;
+        lock.lock();
+        try {
+            while (!closed && (compacting || writePosition + RECORD_SIZE > buffer.capacity())) {
+                if (!await(roomAvailable, deadline)) {
+                    return false;
+                }
+            }
+            if (closed) {
+                return false;
+            }
+            int position = writePosition;
+            buffer.putInt(position, generation);
+            buffer.putInt(position + 4, bill.orderId());
+            buffer.putDouble(position + 8, bill.totalAmount());
+            buffer.putLong(position + 16, bill.timestamp() != null ? bill.timestamp().getTime() : System.currentTimeMillis());
+            buffer.putInt(position + 24, checksum(position));
+            writePosition = position + RECORD_SIZE;
+            appendedBytes += RECORD_SIZE;
+            long end = appendedBytes;
+            recordsAppended.signal();
+
+            while (syncedBytes < end) {
+                if (!await(recordsSynced, deadline)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits on a condition of the lock until signalled or until a deadline. The caller checks its condition again.
+     *
+     * @return false if the deadline had passed before waiting
+     */
+    private static boolean await(Condition condition, long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        condition.awaitNanos(remaining);
+        return true;
+    }
+
+    /**
+     * Forces newly appended records to disk, one fsync for everything appended since the last one.
+     */
+    private void syncLoop() {
+        while (true) {
+            int from;
+            int to;
+            lock.lock();
+            try {
+                while (!closed && (compacting || syncedPosition == writePosition)) {
+                    recordsAppended.await();
+                }
+                if (closed && syncedPosition == writePosition) {
+                    return;
+                }
+                from = syncedPosition;
+                to = writePosition;
+                syncing = true;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            buffer.force(from, to - from);
+            lock.lock();
+            try {
+                syncing = false;
+                syncedPosition = to;
+                syncedBytes += to - from;
+                recordsSynced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Inserts the durable bills not yet in the log table with one batch, then compacts the journal.
+     * Failed inserts are retried by the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            int from;
+            int to;
+            lock.lock();
+            try {
+                from = flushedPosition;
+                to = syncedPosition;
+            } finally {
+                lock.unlock();
+            }
+            if (from == to) {
+                return;
+            }
+
+            List<Bill> bills = new ArrayList<>((to - from) / RECORD_SIZE);
+            for (int position = from; position < to; position += RECORD_SIZE) {
+                bills.add(readRecord(position));
+            }
+            if (!logDAO.addMissingBills(bills)) {
+                return;
+            }
+
+            lock.lock();
+            try {
+                flushedPosition = to;
+                buffer.putInt(FLUSHED_OFFSET, flushedPosition);
+                buffer.force(0, HEADER_SIZE);
+                compact();
+                roomAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the records appended since the last flush to the front of the file under a new generation,
+     * so that the journal never fills up while bills keep arriving. The records are copied only if they fit
+     * before the first of them, so a crash during the copy leaves the originals intact: until the header
+     * names the new generation, recovery still reads the records at their old place. Records not yet
+     * synced are made durable by the copy. Appends and syncs wait while the records are moved.
+     * The caller holds the lock.
+     */
+    private void compact() {
+        int length = writePosition - flushedPosition;
+        if (flushedPosition == HEADER_SIZE || length > flushedPosition - HEADER_SIZE) {
+            return;
+        }
+        compacting = true;
+        try {
+            while (syncing) {
+                recordsSynced.awaitUninterruptibly();
+            }
+            int nextGeneration = generation + 1;
+            for (int offset = 0; offset < length; offset += RECORD_SIZE) {
+                int source = flushedPosition + offset;
+                int target = HEADER_SIZE + offset;
+                buffer.putInt(target, nextGeneration);
+                buffer.putInt(target + 4, buffer.getInt(source + 4));
+                buffer.putDouble(target + 8, buffer.getDouble(source + 8));
+                buffer.putLong(target + 16, buffer.getLong(source + 16));
+                buffer.putInt(target + 24, checksum(target));
+            }
+            if (length > 0) {
+                buffer.force(HEADER_SIZE, length);
+            }
+            generation = nextGeneration;
+            syncedBytes += writePosition - syncedPosition;
+            flushedPosition = HEADER_SIZE;
+            writePosition = syncedPosition = HEADER_SIZE + length;
+            buffer.putInt(GENERATION_OFFSET, generation);
+            buffer.putInt(FLUSHED_OFFSET, flushedPosition);
+            buffer.force(0, HEADER_SIZE);
+        } finally {
+            compacting = false;
+            recordsSynced.signalAll();
+            recordsAppended.signal();
+        }
+    }
+
+    private Bill readRecord(int position) {
+        return new Bill(buffer.getInt(position + 4), buffer.getDouble(position + 8),
+                new Timestamp(buffer.getLong(position + 16)));
+    }
+
+    /**
+     * Finds the bill of an order among the bills not yet flushed to the log table.
+     *
+     * @param orderId the ID of the order
+     * @return the bill, or null if the journal holds no unflushed bill for the order
+     */
+    public Bill findPending(int orderId) {
+        lock.lock();
+        try {
+            for (int position = flushedPosition; position < writePosition; position += RECORD_SIZE) {
+                if (buffer.getInt(position + 4) == orderId) {
+                    return readRecord(position);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the bills issued in a period among the bills not yet flushed to the log table.
+     *
+     * @param from the start of the period, inclusive
+     * @param to   the end of the period, exclusive
+     * @return the bills of the period in the order they were appended
+     */
+    public List<Bill> findPendingBetween(Timestamp from, Timestamp to) {
+        List<Bill> bills = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int position = flushedPosition; position < writePosition; position += RECORD_SIZE) {
+                long millis = buffer.getLong(position + 16);
+                if (millis >= from.getTime() && millis < to.getTime()) {
+                    bills.add(readRecord(position));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return bills;
+    }
+
+    /**
+     * Stops the background threads, flushes the remaining bills and closes the file.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            closed = true;
+            roomAvailable.signalAll();
+            recordsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (syncer.isAlive()) {
+                syncer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -2,7 +2,7 @@ package data;
 
 import models.Client;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 
 /**
  * This class provides data access methods for managing clients in the database.
@@ -10,13 +10,26 @@ import java.sql.Connection;
  */
 public class ClientDAO extends AbstractDAO<Client> {
 
+    private static final EntityCache<Client> SHARED_CACHE = new EntityCache<>(EntityCache.DEFAULT_MAX_SIZE, 0);
+
+    /**
+     * Constructs a new ClientDAO with the specified data source,
+     * using the cache shared by all ClientDAO instances.
+     *
+     * @param dataSource The data source providing database connections.
+     */
+    public ClientDAO(DataSource dataSource) {
+        this(dataSource, SHARED_CACHE);
+    }
+
     /**
-     * Constructs a new ClientDAO with the specified database connection.
+     * Constructs a new ClientDAO with the specified data source and entity cache.
      *
-     * @param connection The database connection.
+     * @param dataSource The data source providing database connections.
+     * @param cache      The cache of clients by ID, or null to disable caching.
      */
-    public ClientDAO(Connection connection) {
-        super(connection);
+    public ClientDAO(DataSource dataSource, EntityCache<Client> cache) {
+        super(dataSource, cache);
     }
 
     /**
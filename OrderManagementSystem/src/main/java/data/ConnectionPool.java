@@ -0,0 +1,435 @@
+package data;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * The ConnectionPool class is a bounded pool of database connections exposed as a DataSource.
+ * <p>
+ * Connections are borrowed per unit of work with {@link #getConnection()} and returned by closing them.
+ * A thread that already holds a connection gets the same connection again, so nested DAO calls made
+ * while a business method holds a connection share it (and its transaction). Every borrow gets its own
+ * handle, and closing a handle twice releases the borrow only once, so a stale handle cannot return a
+ * connection another borrower is still using. Idle connections are
+ * validated before reuse, borrowers wait at most the acquisition timeout, and connections held longer
+ * than the leak threshold are reported together with the stack trace of the borrower.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /**
+     * The default maximum number of open connections.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10;
+
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 30_000;
+    private static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 30_000;
+    private static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 60_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long validationIntervalNanos;
+    private final long leakThresholdNanos;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<PooledConnection> held = new ThreadLocal<>();
+    private final ScheduledExecutorService leakDetector;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new ConnectionPool with default timeouts.
+     *
+     * @param url      the JDBC URL
+     * @param user     the database user
+     * @param password the database password
+     * @param maxSize  the maximum number of open connections
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this(url, user, password, maxSize, DEFAULT_ACQUIRE_TIMEOUT_MILLIS,
+                DEFAULT_VALIDATION_INTERVAL_MILLIS, DEFAULT_LEAK_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * Constructs a new ConnectionPool.
+     *
+     * @param url                      the JDBC URL
+     * @param user                     the database user
+     * @param password                 the database password
+     * @param maxSize                  the maximum number of open connections
+     * @param acquireTimeoutMillis     how long a borrower waits for a free connection
+     * @param validationIntervalMillis how long a connection may sit idle before it is validated on borrow
+     * @param leakThresholdMillis      how long a connection may be held before it is reported as a leak, or 0 to disable
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long acquireTimeoutMillis, long validationIntervalMillis, long leakThresholdMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.permits = new Semaphore(maxSize, true);
+
+        if (leakThresholdMillis > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "connection-pool-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, leakThresholdMillis / 2);
+            leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool; closing it returns it to the pool.
+     * If the calling thread already holds a connection of this pool, a new handle to that connection is
+     * returned, and the connection goes back to the pool only when every handle has been closed.
+     *
+     * @return a pooled connection
+     * @throws SQLTransientConnectionException if no connection becomes available within the acquisition timeout
+     * @throws SQLException                    if a new connection cannot be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        PooledConnection current = held.get();
+        if (current != null && current.owner == Thread.currentThread() && current.holdCount > 0) {
+            current.holdCount++;
+            return current.newHandle();
+        }
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis
+                        + " ms waiting for a connection (" + borrowed.size() + " of " + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        } finally {
+            totalWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+            }
+            pooled.owner = Thread.currentThread();
+            pooled.holdCount = 1;
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowStack = leakDetector != null ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            held.set(pooled);
+            acquisitions.incrementAndGet();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a usable idle connection, validating connections that have been idle for too long.
+     *
+     * @return an idle connection, or null if none is available
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pooled.lastUsed < validationIntervalNanos || isValid(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool once its last handle has been closed.
+     *
+     * @param pooled the pooled connection whose handle was closed
+     */
+    private void release(PooledConnection pooled) {
+        if (pooled.holdCount <= 0 || --pooled.holdCount > 0) {
+            return;
+        }
+        if (pooled.owner == Thread.currentThread()) {
+            held.remove();
+        }
+        pooled.owner = null;
+        pooled.borrowStack = null;
+        borrowed.remove(pooled);
+
+        boolean reusable = !closed;
+        try {
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            pooled.lastUsed = System.nanoTime();
+            idle.offerFirst(pooled);
+        } else {
+            discard(pooled);
+        }
+        permits.release();
+    }
+
+    private void discard(PooledConnection pooled) {
+        StatementCache.release(pooled.physical);
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reports connections held longer than the leak threshold, once per borrow.
+     */
+    private void detectLeaks() {
+        long now = System.nanoTime();
+        for (PooledConnection pooled : borrowed) {
+            Throwable stack = pooled.borrowStack;
+            if (!pooled.leakReported && stack != null && now - pooled.borrowedAt > leakThresholdNanos) {
+                pooled.leakReported = true;
+                leaksDetected.incrementAndGet();
+                System.err.println("Possible connection leak: connection held for "
+                        + TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedAt) + " ms by " + pooled.owner);
+                stack.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the pool metrics.
+     *
+     * @return the current pool metrics
+     */
+    public Metrics getMetrics() {
+        long count = acquisitions.get();
+        return new Metrics(borrowed.size(), idle.size(), maxSize, permits.getQueueLength(), count,
+                timeouts.get(), TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()), leaksDetected.get());
+    }
+
+    /**
+     * Closes all idle connections and stops the leak detector.
+     * Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Gets the physical connection behind a handle of any ConnectionPool, for per-connection resources
+     * such as the statement cache. Other connections are returned unchanged.
+     *
+     * @param connection a connection, possibly a pool handle
+     * @return the physical connection
+     * @throws SQLException if the connection is a handle that has already been closed
+     */
+    static Connection physical(Connection connection) throws SQLException {
+        if (Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof ConnectionPool.Handle handle) {
+            if (handle.closed.get()) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            return handle.pooled.physical;
+        }
+        return connection;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only serves connections for its configured user");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * A snapshot of the pool state.
+     *
+     * @param active          the number of borrowed connections
+     * @param idle            the number of idle connections
+     * @param maxSize         the maximum number of open connections
+     * @param waiting         the approximate number of threads waiting for a connection
+     * @param acquisitions    the number of successful borrows
+     * @param timeouts        the number of borrows that timed out
+     * @param totalWaitMillis the total time spent waiting for a connection
+     * @param leaksDetected   the number of borrows reported as leaks
+     */
+    public record Metrics(int active, int idle, int maxSize, int waiting, long acquisitions,
+                          long timeouts, long totalWaitMillis, long leaksDetected) {
+
+        /**
+         * Gets the average time a borrow waited for a connection.
+         *
+         * @return the average wait in milliseconds
+         */
+        public double averageWaitMillis() {
+            return acquisitions == 0 ? 0 : (double) totalWaitMillis / acquisitions;
+        }
+    }
+
+    /**
+     * A physical connection and its borrow state.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile Thread owner;
+        private volatile Throwable borrowStack;
+        private volatile long borrowedAt;
+        private volatile boolean leakReported;
+        private long lastUsed = System.nanoTime();
+        private int holdCount;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    /**
+     * The connection handed out for one borrow. Closing it releases that borrow once;
+     * any later call other than close fails.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    if (closed.get()) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
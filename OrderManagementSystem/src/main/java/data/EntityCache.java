@@ -0,0 +1,153 @@
+package data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The EntityCache class is a size-bounded, least-recently-used cache of entities keyed by primary key.
+ * Entries can optionally expire after a fixed time to live. The cache is thread-safe and counts
+ * hits, misses, evictions and expirations.
+ * <p>
+ * The cache stores the objects it is given; the DAO layer puts and hands out copies so that callers
+ * mutating their objects never change the cached state.
+ *
+ * @param <T> The type of entity cached.
+ */
+public class EntityCache<T> {
+
+    /**
+     * The default maximum number of cached entities.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<Integer, Entry<T>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * Constructs a new EntityCache.
+     *
+     * @param maxSize   the maximum number of cached entities
+     * @param ttlMillis the time to live of an entry in milliseconds, or 0 for no expiry
+     */
+    public EntityCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * Constructs a new EntityCache reading the time from the given clock, so that tests can expire entries.
+     *
+     * @param maxSize   the maximum number of cached entities
+     * @param ttlMillis the time to live of an entry in milliseconds, or 0 for no expiry
+     * @param nanoClock the clock in nanoseconds, as {@link System#nanoTime()}
+     */
+    EntityCache(int maxSize, long ttlMillis, LongSupplier nanoClock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<T>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached entity with the given ID.
+     *
+     * @param id the primary key
+     * @return the cached entity, or null on a miss
+     */
+    public synchronized T get(int id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (ttlNanos > 0 && nanoClock.getAsLong() - entry.loadedAt > ttlNanos) {
+            entries.remove(id);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Caches an entity, replacing any previous entry with the same ID.
+     *
+     * @param id     the primary key
+     * @param entity the entity to cache
+     */
+    public synchronized void put(int id, T entity) {
+        entries.put(id, new Entry<>(entity, nanoClock.getAsLong()));
+    }
+
+    /**
+     * Removes the entity with the given ID from the cache.
+     *
+     * @param id the primary key
+     */
+    public synchronized void invalidate(int id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Removes all entities from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Takes a snapshot of the cache statistics.
+     *
+     * @return the current statistics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, expirations, entries.size(), maxSize);
+    }
+
+    /**
+     * A snapshot of the cache statistics.
+     *
+     * @param hits        the number of lookups served from the cache
+     * @param misses      the number of lookups not served from the cache
+     * @param evictions   the number of entries evicted to respect the size bound
+     * @param expirations the number of entries dropped because their time to live passed
+     * @param size        the number of cached entities
+     * @param maxSize     the maximum number of cached entities
+     */
+    public record Stats(long hits, long misses, long evictions, long expirations, int size, int maxSize) {
+
+        /**
+         * Gets the fraction of lookups served from the cache.
+         *
+         * @return the hit rate between 0 and 1
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private record Entry<T>(T value, long loadedAt) {
+    }
+}
@@ -0,0 +1,502 @@
+package data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The EntityMapper class holds everything needed to map a model class to and from table rows.
+ * The reflective work (field discovery, access checks, method handle lookup) is done once per class,
+ * and row mappers are compiled once per query from the ResultSetMetaData, so reading a row
+ * only performs typed getter calls and exact method handle invocations.
+ * <p>
+ * The mapper also tracks changes: objects loaded one at a time through the DAO, or written by it, are
+ * registered with a snapshot of their values once the transaction commits, so that a later update can be
+ * limited to the columns that actually changed. Bulk loads are not tracked; they take no lock and keep
+ * no snapshots. The snapshots are spread over several weakly keyed maps, each with its own lock.
+ *
+ * @param <T> The type of object the mapper handles.
+ */
+final class EntityMapper<T> {
+
+    private static final Map<Class<?>, EntityMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+    private static final int SNAPSHOT_STRIPES = 16;
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Property[] properties;
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+    private final Map<String, Property[]> columnProperties = new ConcurrentHashMap<>();
+    private final List<Map<Object, Object[]>> snapshots = new ArrayList<>(SNAPSHOT_STRIPES);
+
+    private EntityMapper(Class<T> type) {
+        this.type = type;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+
+            List<Property> found = new ArrayList<>();
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                found.add(new Property(field, lookup, found.size()));
+            }
+            this.properties = found.toArray(new Property[0]);
+            for (int i = 0; i < SNAPSHOT_STRIPES; i++) {
+                snapshots.add(Collections.synchronizedMap(new WeakHashMap<>()));
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot map " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the mapper for the given model class, building it on first use.
+     *
+     * @param type The model class.
+     * @param <T>  The type of the model class.
+     * @return The shared mapper for the class.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> EntityMapper<T> of(Class<T> type) {
+        return (EntityMapper<T>) MAPPERS.computeIfAbsent(type, EntityMapper::new);
+    }
+
+    /**
+     * Gets the mapped properties, in field declaration order.
+     *
+     * @return The mapped properties.
+     */
+    Property[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Gets the property with the given name.
+     *
+     * @param name The property (column) name.
+     * @return The property.
+     * @throws IllegalArgumentException if the class has no such property.
+     */
+    Property getProperty(String name) {
+        for (Property property : properties) {
+            if (property.name.equals(name)) {
+                return property;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + name + " for " + type.getSimpleName());
+    }
+
+    /**
+     * Gets the properties written by INSERT and UPDATE statements, i.e. all but the primary key.
+     *
+     * @param primaryKey The primary key column name.
+     * @return The writable properties, in field declaration order.
+     */
+    Property[] getColumnProperties(String primaryKey) {
+        return columnProperties.computeIfAbsent(primaryKey, k -> {
+            List<Property> columns = new ArrayList<>(properties.length);
+            for (Property property : properties) {
+                if (!property.name.equals(primaryKey)) {
+                    columns.add(property);
+                }
+            }
+            return columns.toArray(new Property[0]);
+        });
+    }
+
+    /**
+     * Gets the parameterized INSERT statement for the table, generated once.
+     * The placeholders follow the order of {@link #getColumnProperties(String)}.
+     *
+     * @param tableName  The table name.
+     * @param primaryKey The primary key column name.
+     * @return The INSERT statement.
+     */
+    String insertQuery(String tableName, String primaryKey) {
+        return queries.computeIfAbsent("INSERT:" + tableName, k -> {
+            StringBuilder columns = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (Property property : getColumnProperties(primaryKey)) {
+                columns.append(property.name).append(",");
+                values.append("?,");
+            }
+            columns.deleteCharAt(columns.length() - 1);
+            values.deleteCharAt(values.length() - 1);
+            return "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
+        });
+    }
+
+    /**
+     * Gets the parameterized UPDATE statement for the table, generated once.
+     * The placeholders follow the order of {@link #getColumnProperties(String)}, then the primary key.
+     *
+     * @param tableName  The table name.
+     * @param primaryKey The primary key column name.
+     * @return The UPDATE statement.
+     */
+    String updateQuery(String tableName, String primaryKey) {
+        return queries.computeIfAbsent("UPDATE:" + tableName, k -> {
+            StringBuilder setClause = new StringBuilder();
+            for (Property property : getColumnProperties(primaryKey)) {
+                setClause.append(property.name).append(" = ?,");
+            }
+            setClause.deleteCharAt(setClause.length() - 1);
+            return "UPDATE " + tableName + " SET " + setClause + " WHERE " + primaryKey + " = ?";
+        });
+    }
+
+    /**
+     * Gets the parameterized UPDATE statement that writes only the selected columns, generated once per selection.
+     *
+     * @param tableName  The table name.
+     * @param primaryKey The primary key column name.
+     * @param columns    The bit set of columns to write, indexed like {@link #getColumnProperties(String)}.
+     * @return The UPDATE statement.
+     */
+    String updateQuery(String tableName, String primaryKey, long columns) {
+        return queries.computeIfAbsent("UPDATE:" + tableName + ":" + Long.toHexString(columns), k -> {
+            StringBuilder setClause = new StringBuilder();
+            for (Property property : getColumnProperties(primaryKey, columns)) {
+                setClause.append(property.name).append(" = ?,");
+            }
+            setClause.deleteCharAt(setClause.length() - 1);
+            return "UPDATE " + tableName + " SET " + setClause + " WHERE " + primaryKey + " = ?";
+        });
+    }
+
+    /**
+     * Gets the selected writable properties.
+     *
+     * @param primaryKey The primary key column name.
+     * @param columns    The bit set of columns, indexed like {@link #getColumnProperties(String)}.
+     * @return The selected properties, in field declaration order.
+     */
+    Property[] getColumnProperties(String primaryKey, long columns) {
+        Property[] all = getColumnProperties(primaryKey);
+        Property[] selected = new Property[Long.bitCount(columns)];
+        for (int i = 0, j = 0; i < all.length; i++) {
+            if ((columns & (1L << i)) != 0) {
+                selected[j++] = all[i];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Registers an object for change tracking with the values the database holds for it.
+     *
+     * @param object The object loaded from or written to the database.
+     * @param values The committed values, indexed like {@link #getProperties()}.
+     */
+    void track(T object, Object[] values) {
+        stripe(object).put(object, values);
+    }
+
+    /**
+     * Gets the values an object had when it was last tracked.
+     *
+     * @param object The object.
+     * @return The tracked values indexed like {@link #getProperties()}, or null if the object is not tracked.
+     */
+    Object[] snapshot(T object) {
+        return stripe(object).get(object);
+    }
+
+    private Map<Object, Object[]> stripe(Object object) {
+        return snapshots.get((System.identityHashCode(object) & Integer.MAX_VALUE) % SNAPSHOT_STRIPES);
+    }
+
+    /**
+     * Reads the current values of all properties of an object.
+     *
+     * @param object The object.
+     * @return The values, indexed like {@link #getProperties()}.
+     */
+    Object[] values(T object) {
+        Object[] values = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            values[i] = properties[i].get(object);
+        }
+        return values;
+    }
+
+    /**
+     * Compares an object with a snapshot and returns the writable columns whose values differ.
+     * Classes with more than 64 writable columns are always reported as fully dirty.
+     *
+     * @param baseline   The snapshot to compare with.
+     * @param object     The object.
+     * @param primaryKey The primary key column name.
+     * @return The bit set of changed columns, indexed like {@link #getColumnProperties(String)}.
+     */
+    long dirtyColumns(Object[] baseline, T object, String primaryKey) {
+        Property[] columns = getColumnProperties(primaryKey);
+        if (columns.length > Long.SIZE) {
+            return -1L;
+        }
+        long dirty = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (!Objects.equals(baseline[columns[i].index], columns[i].get(object))) {
+                dirty |= 1L << i;
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Creates a new, empty instance of the model class.
+     *
+     * @return The new instance.
+     * @throws SQLException if the instance cannot be created.
+     */
+    @SuppressWarnings("unchecked")
+    T newInstance() throws SQLException {
+        try {
+            return (T) (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new SQLException("Cannot instantiate " + type.getName(), t);
+        }
+    }
+
+    /**
+     * Creates a field-by-field copy of an object.
+     *
+     * @param source The object to copy.
+     * @return The copy.
+     * @throws IllegalStateException if the copy cannot be created.
+     */
+    T copy(T source) {
+        try {
+            T target = newInstance();
+            for (Property property : properties) {
+                property.copy(source, target);
+            }
+            return target;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compiles a row mapper for result sets with the given metadata.
+     * Column indexes are resolved by name once; properties without a matching column are left untouched.
+     *
+     * @param metaData The metadata of the result set the mapper will read.
+     * @return The compiled row mapper.
+     * @throws SQLException if the metadata cannot be read.
+     */
+    RowMapper<T> compile(ResultSetMetaData metaData) throws SQLException {
+        int[] columns = new int[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            columns[i] = findColumn(metaData, properties[i].name);
+        }
+        return resultSet -> {
+            T object = newInstance();
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] > 0) {
+                    properties[i].read(resultSet, columns[i], object);
+                }
+            }
+            return object;
+        };
+    }
+
+    private static int findColumn(ResultSetMetaData metaData, String name) throws SQLException {
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            if (metaData.getColumnLabel(column).equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The kind of JDBC accessor used for a property.
+     */
+    enum Kind {
+        INT, DOUBLE, STRING, TIMESTAMP, OBJECT
+    }
+
+    /**
+     * A single mapped field with its pre-resolved accessors.
+     */
+    static final class Property {
+        private final String name;
+        private final Class<?> type;
+        private final Kind kind;
+        private final int index;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Property(Field field, MethodHandles.Lookup lookup, int index) throws IllegalAccessException {
+            this.name = field.getName();
+            this.type = field.getType();
+            this.kind = kindOf(type);
+            this.index = index;
+
+            Class<?> handleType = kind == Kind.INT || kind == Kind.DOUBLE ? type : Object.class;
+            this.getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(handleType, Object.class));
+            this.setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, handleType));
+        }
+
+        private static Kind kindOf(Class<?> type) {
+            if (type == int.class) {
+                return Kind.INT;
+            }
+            if (type == double.class) {
+                return Kind.DOUBLE;
+            }
+            if (type == String.class) {
+                return Kind.STRING;
+            }
+            if (type == Timestamp.class) {
+                return Kind.TIMESTAMP;
+            }
+            return Kind.OBJECT;
+        }
+
+        /**
+         * Gets the property name, which is also its column name.
+         *
+         * @return The property name.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the accessor kind of the property.
+         *
+         * @return The accessor kind.
+         */
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Reads the property from a column of the current row into the target object.
+         * A NULL integer column is stored as -1, as the DAOs have always done.
+         *
+         * @param resultSet The ResultSet positioned on the row.
+         * @param column    The column index.
+         * @param target    The object to populate.
+         * @throws SQLException if the column cannot be read or the field cannot be set.
+         */
+        void read(ResultSet resultSet, int column, Object target) throws SQLException {
+            try {
+                switch (kind) {
+                    case INT -> {
+                        int value = resultSet.getInt(column);
+                        setter.invokeExact(target, resultSet.wasNull() ? -1 : value);
+                    }
+                    case DOUBLE -> setter.invokeExact(target, resultSet.getDouble(column));
+                    case STRING -> setter.invokeExact(target, (Object) resultSet.getString(column));
+                    case TIMESTAMP -> setter.invokeExact(target, (Object) resultSet.getTimestamp(column));
+                    default -> setter.invokeExact(target, resultSet.getObject(column, boxed(type)));
+                }
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SQLException("Cannot set " + name, t);
+            }
+        }
+
+        /**
+         * Gets the property value of an object, boxing primitives.
+         *
+         * @param source The object to read the value from.
+         * @return The value.
+         */
+        Object get(Object source) {
+            try {
+                return switch (kind) {
+                    case INT -> (int) getter.invokeExact(source);
+                    case DOUBLE -> (double) getter.invokeExact(source);
+                    default -> (Object) getter.invokeExact(source);
+                };
+            } catch (Throwable t) {
+                throw new IllegalStateException("Cannot read " + name, t);
+            }
+        }
+
+        /**
+         * Copies the property value from one object to another.
+         *
+         * @param source The object to read the value from.
+         * @param target The object to write the value to.
+         */
+        void copy(Object source, Object target) {
+            try {
+                switch (kind) {
+                    case INT -> setter.invokeExact(target, (int) getter.invokeExact(source));
+                    case DOUBLE -> setter.invokeExact(target, (double) getter.invokeExact(source));
+                    default -> setter.invokeExact(target, (Object) getter.invokeExact(source));
+                }
+            } catch (Throwable t) {
+                throw new IllegalStateException("Cannot copy " + name, t);
+            }
+        }
+
+        /**
+         * Binds the property value of the source object to a statement parameter with the typed setter.
+         *
+         * @param statement The statement to bind.
+         * @param index     The parameter index.
+         * @param source    The object to read the value from.
+         * @throws SQLException if the parameter cannot be set or the field cannot be read.
+         */
+        void bind(PreparedStatement statement, int index, Object source) throws SQLException {
+            try {
+                switch (kind) {
+                    case INT -> statement.setInt(index, (int) getter.invokeExact(source));
+                    case DOUBLE -> statement.setDouble(index, (double) getter.invokeExact(source));
+                    case STRING -> {
+                        String value = (String) (Object) getter.invokeExact(source);
+                        if (value == null) {
+                            statement.setNull(index, Types.VARCHAR);
+                        } else {
+                            statement.setString(index, value);
+                        }
+                    }
+                    case TIMESTAMP -> {
+                        Timestamp value = (Timestamp) (Object) getter.invokeExact(source);
+                        if (value == null) {
+                            statement.setNull(index, Types.TIMESTAMP);
+                        } else {
+                            statement.setTimestamp(index, value);
+                        }
+                    }
+                    default -> statement.setObject(index, (Object) getter.invokeExact(source));
+                }
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SQLException("Cannot read " + name, t);
+            }
+        }
+
+        private static Class<?> boxed(Class<?> type) {
+            return MethodType.methodType(type).wrap().returnType();
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package data;
+
+import models.Bill;
+import models.Event;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The EventLog class is an append-only log of the changes made to stock, prices and bills.
+ * <p>
+ * Events are stored in segment files named {@code events-NNNNNN.log} in one directory. Every record
+ * has the same size and ends with a CRC of its content, so a segment can be read from any record
+ * boundary and a record torn by a crash is detected. A new segment is started when the current one
+ * holds its maximum number of records.
+ * <p>
+ * Because stock changes are deltas and bills are independent, the log can be replayed in any order:
+ * {@link #replay(int)} splits the segments into chunks and reads them in parallel.
+ */
+public class EventLog implements AutoCloseable {
+
+    /**
+     * The default maximum number of records in one segment.
+     */
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    /**
+     * The default maximum number of records replayed by one task.
+     */
+    public static final int DEFAULT_CHUNK_RECORDS = 1 << 18;
+
+    private static final int RECORD_SIZE = 40;
+    private static final int CRC_OFFSET = 36;
+    private static final int BILL_BATCH_SIZE = 1000;
+    private static final Event.Type[] TYPES = Event.Type.values();
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final int chunkRecords;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel segment;
+    private int segmentIndex;
+    private int segmentCount;
+
+    /**
+     * Opens the event log in a directory with the default segment size.
+     *
+     * @param directory the directory of the segment files; created if missing
+     * @throws IOException if the directory or the last segment cannot be opened
+     */
+    public EventLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Opens the event log in a directory with the default replay chunk size.
+     *
+     * @param directory      the directory of the segment files; created if missing
+     * @param segmentRecords the maximum number of records in one segment
+     * @throws IOException if the directory or the last segment cannot be opened
+     */
+    public EventLog(Path directory, int segmentRecords) throws IOException {
+        this(directory, segmentRecords, DEFAULT_CHUNK_RECORDS);
+    }
+
+    /**
+     * Opens the event log in a directory, cutting off a record torn at the end of the last segment.
+     *
+     * @param directory      the directory of the segment files; created if missing
+     * @param segmentRecords the maximum number of records in one segment
+     * @param chunkRecords   the maximum number of records of a segment replayed by one task
+     * @throws IOException if the directory or the last segment cannot be opened
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public EventLog(Path directory, int segmentRecords, int chunkRecords) throws IOException {
+        if (segmentRecords < 1 || chunkRecords < 1) {
+            throw new IllegalArgumentException("Segment and chunk sizes must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentRecords = segmentRecords;
+        this.chunkRecords = chunkRecords;
+        List<Path> segments = segments();
+        segmentIndex = segments.isEmpty() ? 0 : segments.size() - 1;
+        segment = FileChannel.open(segmentPath(segmentIndex),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long records = segment.size() / RECORD_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        long valid = 0;
+        while (valid < records) {
+            buffer.clear();
+            segment.read(buffer, valid * RECORD_SIZE);
+            if (!isValid(buffer, 0, new CRC32())) {
+                break;
+            }
+            valid++;
+        }
+        segment.truncate(valid * RECORD_SIZE);
+        segment.position(valid * RECORD_SIZE);
+        segmentCount = (int) valid;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("events-%06d.log", index));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("events-\\d{6}\\.log"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Appends an event to the log. The event reaches the operating system before the method returns;
+     * {@link #sync()} makes the appended events durable.
+     *
+     * @param event the event to append
+     * @return true if the event was appended, false on error
+     */
+    public synchronized boolean append(Event event) {
+        try {
+            if (segmentCount == segmentRecords) {
+                segment.force(false);
+                segment.close();
+                segmentIndex++;
+                segmentCount = 0;
+                segment = FileChannel.open(segmentPath(segmentIndex),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            record.clear();
+            record.putInt(event.type().ordinal() + 1);
+            record.putInt(event.orderId());
+            record.putInt(event.clientId());
+            record.putInt(event.productId());
+            record.putInt(event.quantity());
+            record.putDouble(event.amount());
+            record.putLong(event.timestamp() != null ? event.timestamp().getTime() : System.currentTimeMillis());
+            crc.reset();
+            crc.update(record.array(), 0, CRC_OFFSET);
+            record.putInt((int) crc.getValue());
+            record.flip();
+            while (record.hasRemaining()) {
+                segment.write(record);
+            }
+            segmentCount++;
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Records the current stock and price of every product as the starting point of an empty log,
+     * so that replays also cover products created before the log was started. Does nothing if the
+     * log already holds events.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public synchronized void seed(DataSource dataSource) {
+        if (segmentIndex > 0 || segmentCount > 0) {
+            return;
+        }
+        new ProductDAO(dataSource).forEachObject(product -> {
+            append(Event.stockAdjusted(product.getId(), product.getStock(), -1));
+            append(Event.productRepriced(product.getId(), product.getPrice()));
+        });
+        sync();
+    }
+
+    /**
+     * Forces the appended events to disk.
+     */
+    public synchronized void sync() {
+        try {
+            segment.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isValid(ByteBuffer buffer, int offset, CRC32 crc) {
+        int type = buffer.getInt(offset);
+        if (type < 1 || type > TYPES.length) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.slice(offset, CRC_OFFSET));
+        return buffer.getInt(offset + CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    private static Event readEvent(ByteBuffer buffer, int offset) {
+        return new Event(TYPES[buffer.getInt(offset) - 1], buffer.getInt(offset + 4), buffer.getInt(offset + 8),
+                buffer.getInt(offset + 12), buffer.getInt(offset + 16), buffer.getDouble(offset + 20),
+                new Timestamp(buffer.getLong(offset + 28)));
+    }
+
+    /**
+     * Passes every valid event to the consumer in the order it was appended.
+     *
+     * @param consumer the consumer receiving each event
+     * @throws IOException if a segment cannot be read
+     */
+    public void forEachEvent(Consumer<? super Event> consumer) throws IOException {
+        sync();
+        CRC32 checksum = new CRC32();
+        for (Path path : segments()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+                    if (isValid(buffer, offset, checksum)) {
+                        consumer.accept(readEvent(buffer, offset));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays the whole log in parallel, summing the stock changes of every product, keeping the
+     * latest price of every product and collecting the bill of every order.
+     *
+     * @param parallelism the number of threads reading the log
+     * @return the state rebuilt from the events
+     * @throws IOException if a segment cannot be read
+     */
+    public Replay replay(int parallelism) throws IOException {
+        sync();
+        List<Path> segments = segments();
+        List<MappedByteBuffer> buffers = new ArrayList<>(segments.size());
+        for (Path path : segments) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        List<Callable<Partial>> tasks = new ArrayList<>();
+        for (int index = 0; index < buffers.size(); index++) {
+            MappedByteBuffer buffer = buffers.get(index);
+            int records = buffer.capacity() / RECORD_SIZE;
+            long firstSequence = (long) index * segmentRecords;
+            for (int from = 0; from < records; from += chunkRecords) {
+                int start = from;
+                int end = Math.min(records, from + chunkRecords);
+                tasks.add(() -> replayChunk(buffer, start, end, firstSequence));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            Partial total = new Partial();
+            for (Future<Partial> future : executor.invokeAll(tasks)) {
+                total.merge(future.get());
+            }
+            return total.toReplay();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Replay interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Replay failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Partial replayChunk(ByteBuffer buffer, int fromRecord, int toRecord, long firstSequence) {
+        Partial partial = new Partial();
+        CRC32 checksum = new CRC32();
+        for (int index = fromRecord; index < toRecord; index++) {
+            int offset = index * RECORD_SIZE;
+            if (!isValid(buffer, offset, checksum)) {
+                partial.corrupted++;
+                continue;
+            }
+            partial.events++;
+            int productId = buffer.getInt(offset + 12);
+            int quantity = buffer.getInt(offset + 16);
+            switch (TYPES[buffer.getInt(offset) - 1]) {
+                case PURCHASE_CREATED -> {
+                    partial.bills.add(new Bill(buffer.getInt(offset + 4), buffer.getDouble(offset + 20),
+                            new Timestamp(buffer.getLong(offset + 28))));
+                    if (productId > 0) {
+                        partial.product(productId).stock -= quantity;
+                    }
+                }
+                case STOCK_ADJUSTED -> partial.product(productId).stock += quantity;
+                case PRODUCT_REPRICED -> {
+                    ProductTotals totals = partial.product(productId);
+                    long sequence = firstSequence + index;
+                    if (sequence > totals.priceSequence) {
+                        totals.priceSequence = sequence;
+                        totals.price = buffer.getDouble(offset + 20);
+                    }
+                }
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * Replays the log and writes the result back: sets the stock of every product that has events to the
+     * rebuilt value and inserts the bills missing from the log table.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param parallelism the number of threads reading the log
+     * @return the replayed state
+     * @throws IOException if a segment cannot be read
+     */
+    public Replay rebuild(DataSource dataSource, int parallelism) throws IOException {
+        Replay replay = replay(parallelism);
+
+        int[] productIds = replay.products().keys();
+        int[] stocks = new int[productIds.length];
+        for (int i = 0; i < productIds.length; i++) {
+            stocks[i] = replay.products().get(productIds[i]).stock();
+        }
+        new ProductDAO(dataSource).setStocks(productIds, stocks);
+
+        LogDAO logDAO = new LogDAO(dataSource);
+        List<Bill> bills = replay.bills();
+        for (int from = 0; from < bills.size(); from += BILL_BATCH_SIZE) {
+            logDAO.addMissingBills(bills.subList(from, Math.min(bills.size(), from + BILL_BATCH_SIZE)));
+        }
+        return replay;
+    }
+
+    /**
+     * Closes the current segment after forcing it to disk.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The state rebuilt by a replay.
+     *
+     * @param events    the number of valid events read
+     * @param corrupted the number of records skipped because their CRC did not match
+     * @param products  the rebuilt stock and latest price of every product with events
+     * @param bills     the bills of every order, in no particular order
+     */
+    public record Replay(long events, long corrupted, IntObjectMap<ProductState> products, List<Bill> bills) {
+    }
+
+    /**
+     * The rebuilt state of one product.
+     *
+     * @param stock the stock, as the sum of all stock changes
+     * @param price the latest price, or NaN if the product was never priced
+     */
+    public record ProductState(int stock, double price) {
+    }
+
+    /**
+     * The state accumulated by one replay task.
+     */
+    private static final class Partial {
+        private final IntObjectMap<ProductTotals> products = new IntObjectMap<>(1024);
+        private final List<Bill> bills = new ArrayList<>();
+        private long events;
+        private long corrupted;
+
+        private ProductTotals product(int productId) {
+            ProductTotals totals = products.get(productId);
+            if (totals == null) {
+                totals = new ProductTotals();
+                products.put(productId, totals);
+            }
+            return totals;
+        }
+
+        private void merge(Partial other) {
+            events += other.events;
+            corrupted += other.corrupted;
+            bills.addAll(other.bills);
+            other.products.forEach((productId, totals) -> {
+                ProductTotals mine = product(productId);
+                mine.stock += totals.stock;
+                if (totals.priceSequence > mine.priceSequence) {
+                    mine.priceSequence = totals.priceSequence;
+                    mine.price = totals.price;
+                }
+            });
+        }
+
+        private Replay toReplay() {
+            IntObjectMap<ProductState> states = new IntObjectMap<>(products.size());
+            products.forEach((productId, totals) ->
+                    states.put(productId, new ProductState((int) totals.stock, totals.price)));
+            return new Replay(events, corrupted, states, bills);
+        }
+    }
+
+    /**
+     * The running totals of one product during a replay.
+     */
+    private static final class ProductTotals {
+        private long stock;
+        private double price = Double.NaN;
+        private long priceSequence = -1;
+    }
+}
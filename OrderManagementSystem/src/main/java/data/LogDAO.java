@@ -2,69 +2,251 @@ package data;
 
 import models.Bill;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The LogDAO class provides data access methods for interacting with the log table in the database.
+ * The bills of recently placed orders are kept in a small cache, so that showing the bill of an order
+ * right after placing it does not go back to the database.
  */
 public class LogDAO {
 
-    private final Connection connection;
+    /**
+     * The number of recent bills kept in the cache.
+     */
+    public static final int RECENT_BILL_CACHE_SIZE = 1024;
+
+    private static final RowMapper<Bill> BILL_MAPPER = resultSet -> new Bill(
+            resultSet.getInt("order_id"),
+            resultSet.getDouble("total_amount"),
+            resultSet.getTimestamp("timestamp"));
+
+    private static final Comparator<Bill> BY_TIMESTAMP = Comparator.comparing(Bill::timestamp);
+
+    private final DataSource dataSource;
+    private final BillJournal journal;
+    private final EntityCache<Bill> recentBills = new EntityCache<>(RECENT_BILL_CACHE_SIZE, 0);
+    private int fetchSize = ResultSetStreams.STREAMING_FETCH_SIZE;
+
+    /**
+     * Constructs a new LogDAO instance with the specified data source.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public LogDAO(DataSource dataSource) {
+        this(dataSource, null);
+    }
 
     /**
-     * Constructs a new LogDAO instance with the specified database connection.
+     * Constructs a new LogDAO instance with the specified data source and bill journal.
+     * With a journal, bills are added write-behind: they are appended to the journal and
+     * inserted into the log table later by the journal's flusher.
      *
-     * @param connection the database connection
+     * @param dataSource the data source providing database connections
+     * @param journal    the bill journal, or null to insert bills directly
      */
-    public LogDAO(Connection connection) {
-        this.connection = connection;
+    public LogDAO(DataSource dataSource, BillJournal journal) {
+        this.dataSource = dataSource;
+        this.journal = journal;
     }
 
     /**
      * Adds a bill to the log table in the database.
+     * In write-behind mode the bill is appended to the journal instead, or inserted directly if the journal
+     * cannot take it. Inside a transaction the append happens once the transaction commits, so the bills of
+     * rolled back orders are never written; the order is committed by then, so the method returns true as
+     * soon as the append is scheduled, and a bill that can be neither appended nor inserted is reported.
      *
      * @param bill the bill to add
+     * @return true if the bill was added, or will be appended once the transaction commits, false otherwise
      */
-    public void addBill(Bill bill) {
-        String query = "INSERT INTO Log (order_id, total_amount) VALUES (?, ?)";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+    public boolean addBill(Bill bill) {
+        if (journal != null) {
+            if (!Transactions.isActive()) {
+                return writeBehind(bill);
+            }
+            Transactions.afterCommit(() -> writeBehind(bill));
+            return true;
+        }
+        if (!insertBill(bill)) {
+            return false;
+        }
+        Transactions.afterCommit(() -> recentBills.put(bill.orderId(), bill));
+        return true;
+    }
 
+    /**
+     * Appends a bill to the journal, falling back to inserting it into the log table.
+     *
+     * @param bill the bill to add
+     * @return true if the bill is durable in the journal or the log table, false otherwise
+     */
+    private boolean writeBehind(Bill bill) {
+        if (!journal.append(bill) && !insertBill(bill)) {
+            System.out.println("Bill message: The bill of order " + bill.orderId() + " could not be written.");
+            return false;
+        }
+        recentBills.put(bill.orderId(), bill);
+        return true;
+    }
+
+    private boolean insertBill(Bill bill) {
+        String query = "INSERT INTO Log (order_id, total_amount, timestamp) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
             statement.setInt(1, bill.orderId());
             statement.setDouble(2, bill.totalAmount());
+            statement.setTimestamp(3, bill.timestamp());
 
             statement.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
 
-            System.out.println("Bill added successfully.");
+    /**
+     * Adds several bills to the log table with a single batch.
+     *
+     * @param bills the bills to add
+     * @return true if all bills were added, false otherwise
+     */
+    public boolean addBills(List<Bill> bills) {
+        String query = "INSERT INTO Log (order_id, total_amount, timestamp) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (Bill bill : bills) {
+                statement.setInt(1, bill.orderId());
+                statement.setDouble(2, bill.totalAmount());
+                statement.setTimestamp(3, bill.timestamp());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
+    }
+
+    /**
+     * Adds the bills whose orders have no bill in the log table yet, with a single batch in one transaction.
+     * Used to flush the bill journal, where a bill may be replayed after it was already inserted.
+     *
+     * @param bills the bills to add
+     * @return true if the batch was applied, false otherwise
+     */
+    boolean addMissingBills(List<Bill> bills) {
+        String query = "INSERT INTO Log (order_id, total_amount, timestamp) SELECT ?, ?, ? FROM DUAL "
+                + "WHERE NOT EXISTS (SELECT 1 FROM Log WHERE order_id = ?)";
+        try {
+            return Transactions.execute(dataSource, transaction -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    PreparedStatement statement = StatementCache.of(connection).prepare(query);
+                    for (Bill bill : bills) {
+                        statement.setInt(1, bill.orderId());
+                        statement.setDouble(2, bill.totalAmount());
+                        statement.setTimestamp(3, bill.timestamp());
+                        statement.setInt(4, bill.orderId());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    return true;
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
      * Retrieves all bills from the log table in the database.
+     * The rows are read through {@link #streamAllBills()}; scans that do not need every bill in
+     * memory should use the stream instead.
      *
      * @return a list of Bill objects representing the bills in the log
      */
     public List<Bill> getAllBills() {
-        List<Bill> bills = new ArrayList<>();
-        String query = "SELECT * FROM Log";
+        try (Stream<Bill> bills = streamAllBills()) {
+            return bills.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Retrieves the bill of an order, including a bill still waiting in the journal.
+     * The bills of recently placed orders are served from the cache; others are looked up
+     * through the index on the order ID.
+     *
+     * @param orderId the ID of the order
+     * @return the bill of the order, or null if the order has no bill
+     */
+    public Bill getBillByOrderId(int orderId) {
+        Bill recent = recentBills.get(orderId);
+        if (recent != null) {
+            return recent;
+        }
+        if (journal != null) {
+            Bill pending = journal.findPending(orderId);
+            if (pending != null) {
+                return pending;
+            }
+        }
+        String query = "SELECT * FROM Log WHERE order_id = ?";
+
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setInt(1, orderId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return BILL_MAPPER.mapRow(resultSet);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
 
-        try (PreparedStatement statement = connection.prepareStatement(query);
-             ResultSet resultSet = statement.executeQuery()) {
+        return null;
+    }
 
-            while (resultSet.next()) {
-                int orderId = resultSet.getInt("order_id");
-                double totalAmount = resultSet.getDouble("total_amount");
-                Timestamp createdAt = resultSet.getTimestamp("timestamp");
+    /**
+     * Retrieves one page of bills ordered by order ID, starting after the given order ID.
+     *
+     * @param afterOrderId the order ID of the last bill of the previous page, or Integer.MIN_VALUE for the first page
+     * @param limit        the maximum number of bills to return
+     * @return the bills of the page
+     */
+    public List<Bill> getBillPage(int afterOrderId, int limit) {
+        List<Bill> bills = new ArrayList<>();
+        String query = "SELECT * FROM Log WHERE order_id > ? ORDER BY order_id LIMIT ?";
 
-                Bill bill = new Bill(orderId, totalAmount, createdAt);
-                bills.add(bill);
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setInt(1, afterOrderId);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    bills.add(BILL_MAPPER.mapRow(resultSet));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -72,4 +254,128 @@ public class LogDAO {
 
         return bills;
     }
+
+    /**
+     * Streams all bills from the log table without materializing them.
+     * The stream holds a connection until it is closed, and no other statement can run on that
+     * connection while it is open.
+     *
+     * @return a stream over the bills in the log, or an empty stream if the query fails
+     */
+    public Stream<Bill> streamAllBills() {
+        String query = "SELECT * FROM Log";
+        try {
+            return ResultSetStreams.stream(dataSource.getConnection(), query, fetchSize, metaData -> BILL_MAPPER);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * Streams the bills issued in a period, oldest first, without materializing them.
+     * The rows are found through the index on the timestamp column. Bills still waiting in the
+     * journal are merged in by timestamp, and replace any copy of themselves already flushed.
+     * The stream holds a connection until it is closed.
+     *
+     * @param from the start of the period, inclusive
+     * @param to   the end of the period, exclusive
+     * @return a stream over the bills of the period, or an empty stream if the query fails
+     */
+    public Stream<Bill> streamBillsBetween(Timestamp from, Timestamp to) {
+        String query = "SELECT * FROM Log WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp";
+        List<Bill> pending = new ArrayList<>();
+        if (journal != null) {
+            pending.addAll(journal.findPendingBetween(from, to));
+            pending.sort(BY_TIMESTAMP);
+        }
+        try {
+            Stream<Bill> stored = ResultSetStreams.stream(dataSource.getConnection(), query, fetchSize,
+                    metaData -> BILL_MAPPER, from, to);
+            if (pending.isEmpty()) {
+                return stored;
+            }
+            Set<Integer> pendingOrderIds = new HashSet<>();
+            pending.forEach(bill -> pendingOrderIds.add(bill.orderId()));
+            Iterator<Bill> flushed = stored.filter(bill -> !pendingOrderIds.contains(bill.orderId())).iterator();
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                            new MergingIterator(flushed, pending.iterator()), Spliterator.ORDERED | Spliterator.NONNULL),
+                    false).onClose(stored::close);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return pending.stream();
+    }
+
+    /**
+     * Retrieves the bills issued in a period, oldest first.
+     *
+     * @param from the start of the period, inclusive
+     * @param to   the end of the period, exclusive
+     * @return the bills of the period
+     */
+    public List<Bill> getBillsBetween(Timestamp from, Timestamp to) {
+        try (Stream<Bill> bills = streamBillsBetween(from, to)) {
+            return bills.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Passes every bill of the log table to the consumer, one row at a time.
+     *
+     * @param consumer the consumer receiving each bill
+     */
+    public void forEachBill(Consumer<? super Bill> consumer) {
+        try (Stream<Bill> bills = streamAllBills()) {
+            bills.forEach(consumer);
+        }
+    }
+
+    /**
+     * Sets the fetch size used by streaming scans of the log table.
+     *
+     * @param fetchSize the fetch size; Integer.MIN_VALUE streams rows one at a time
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Merges two iterators over bills that are each ordered by timestamp into one ordered iterator.
+     * On equal timestamps the bill of the first iterator comes first.
+     */
+    private static final class MergingIterator implements Iterator<Bill> {
+        private final Iterator<Bill> first;
+        private final Iterator<Bill> second;
+        private Bill nextFirst;
+        private Bill nextSecond;
+
+        private MergingIterator(Iterator<Bill> first, Iterator<Bill> second) {
+            this.first = first;
+            this.second = second;
+            this.nextFirst = first.hasNext() ? first.next() : null;
+            this.nextSecond = second.hasNext() ? second.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextFirst != null || nextSecond != null;
+        }
+
+        @Override
+        public Bill next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Bill bill;
+            if (nextSecond == null || (nextFirst != null && BY_TIMESTAMP.compare(nextFirst, nextSecond) <= 0)) {
+                bill = nextFirst;
+                nextFirst = first.hasNext() ? first.next() : null;
+            } else {
+                bill = nextSecond;
+                nextSecond = second.hasNext() ? second.next() : null;
+            }
+            return bill;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package data;
+
+import models.OrderLine;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The OrderLineDAO class provides data access methods for the line items of multi-line orders.
+ * The order header is a row of the purchase table without a product.
+ */
+public class OrderLineDAO {
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructs a new OrderLineDAO instance with the specified data source.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public OrderLineDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Inserts the lines of an order with a single batch.
+     *
+     * @param orderId    the ID of the order header
+     * @param lines      the lines, numbered in list order starting at 1
+     * @param unitPrices the unit price of each line, in list order
+     * @return true if all lines were inserted, false otherwise
+     */
+    public boolean addLines(int orderId, List<OrderLine> lines, double[] unitPrices) {
+        String query = "INSERT INTO purchase_line (order_id, line_no, product_id, quantity, unit_price) VALUES (?, ?, ?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (int i = 0; i < lines.size(); i++) {
+                OrderLine line = lines.get(i);
+                statement.setInt(1, orderId);
+                statement.setInt(2, i + 1);
+                statement.setInt(3, line.productId());
+                statement.setInt(4, line.quantity());
+                statement.setDouble(5, unitPrices[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the lines of an order.
+     *
+     * @param orderId the ID of the order header
+     * @return the lines of the order, in line order
+     */
+    public List<OrderLine> getLines(int orderId) {
+        List<OrderLine> lines = new ArrayList<>();
+        String query = "SELECT product_id, quantity FROM purchase_line WHERE order_id = ? ORDER BY line_no";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setInt(1, orderId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int productId = resultSet.getInt("product_id");
+                    lines.add(new OrderLine(resultSet.wasNull() ? -1 : productId, resultSet.getInt("quantity")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return lines;
+    }
+
+    /**
+     * Retrieves the lines of several orders with one query.
+     *
+     * @param orderIds the IDs of the order headers
+     * @return the lines of each order that has lines, in line order, by order ID
+     */
+    public IntObjectMap<List<OrderLine>> getLines(Collection<Integer> orderIds) {
+        IntObjectMap<List<OrderLine>> lines = new IntObjectMap<>(orderIds.size());
+        if (orderIds.isEmpty()) {
+            return lines;
+        }
+        StringBuilder query = new StringBuilder("SELECT order_id, product_id, quantity FROM purchase_line WHERE order_id IN (");
+        for (int i = 0; i < orderIds.size(); i++) {
+            query.append(i == 0 ? "?" : ",?");
+        }
+        query.append(") ORDER BY order_id, line_no");
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            int index = 1;
+            for (int orderId : orderIds) {
+                statement.setInt(index++, orderId);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int orderId = resultSet.getInt("order_id");
+                    int productId = resultSet.getInt("product_id");
+                    OrderLine line = new OrderLine(resultSet.wasNull() ? -1 : productId, resultSet.getInt("quantity"));
+                    List<OrderLine> orderLines = lines.get(orderId);
+                    if (orderLines == null) {
+                        orderLines = new ArrayList<>();
+                        lines.put(orderId, orderLines);
+                    }
+                    orderLines.add(line);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return lines;
+    }
+}
@@ -2,7 +2,11 @@ package data;
 
 import models.Product;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 /**
  * The ProductDAO class provides data access methods for interacting with the product table in the database.
@@ -10,13 +14,195 @@ import java.sql.Connection;
  */
 public class ProductDAO extends AbstractDAO<Product> {
 
+    private static final EntityCache<Product> SHARED_CACHE = new EntityCache<>(EntityCache.DEFAULT_MAX_SIZE, 0);
+
+    /**
+     * Constructs a new ProductDAO instance with the specified data source,
+     * using the cache shared by all ProductDAO instances.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public ProductDAO(DataSource dataSource) {
+        this(dataSource, SHARED_CACHE);
+    }
+
+    /**
+     * Constructs a new ProductDAO with the specified data source and entity cache.
+     *
+     * @param dataSource the data source providing database connections
+     * @param cache      the cache of products by ID, or null to disable caching
+     */
+    public ProductDAO(DataSource dataSource, EntityCache<Product> cache) {
+        super(dataSource, cache);
+    }
+
+    /**
+     * Reads the stock of a product from the database, bypassing the cache.
+     *
+     * @param productId the ID of the product
+     * @return the stock of the product, or -1 if the product does not exist or cannot be read
+     */
+    public int getStock(int productId) {
+        String query = "SELECT stock FROM product WHERE product_id = ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            statement.setInt(1, productId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Decrements the stock of a product if enough units are available.
+     * The check and the write happen in a single conditional UPDATE, so concurrent callers cannot oversell.
+     *
+     * @param productId the ID of the product
+     * @param quantity  the number of units to take from stock
+     * @return 1 if the stock was decremented, 0 if the product does not exist or has too little stock, -1 on error
+     * @throws IllegalArgumentException if the quantity is not positive, which would add stock instead
+     */
+    public int decrementStock(int productId, int quantity) {
+        requirePositive(quantity);
+        String query = "UPDATE product SET stock = stock - ? WHERE product_id = ? AND stock >= ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            statement.setInt(1, quantity);
+            statement.setInt(2, productId);
+            statement.setInt(3, quantity);
+            int updated = statement.executeUpdate();
+            invalidateCached(productId);
+            return updated;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Decrements the stock of several products with one batch of conditional updates.
+     * The updates are applied in the given order; callers inside a transaction should pass the
+     * products in ascending ID order so that concurrent orders lock rows in the same order.
+     *
+     * @param productIds the IDs of the products
+     * @param quantities the number of units to take from each product's stock
+     * @return true if every product had enough stock and was decremented, false otherwise
+     * @throws IllegalArgumentException if a quantity is not positive, which would add stock instead
+     */
+    public boolean decrementStocks(int[] productIds, int[] quantities) {
+        int[] counts = tryDecrementStocks(productIds, quantities);
+        if (counts == null) {
+            return false;
+        }
+        for (int count : counts) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
-     * Constructs a new ProductDAO instance with the specified database connection.
+     * Attempts to decrement the stock of several products with one batch of conditional updates,
+     * reporting the outcome of each update separately. The updates run in the given order, so an
+     * update sees the stock left by the previous ones.
      *
-     * @param connection the database connection
+     * @param productIds the IDs of the products
+     * @param quantities the number of units to take from each product's stock
+     * @return for each update, 1 if the stock was decremented and 0 if it was not; null on error
+     * @throws IllegalArgumentException if a quantity is not positive, which would add stock instead
      */
-    public ProductDAO(Connection connection) {
-        super(connection);
+    public int[] tryDecrementStocks(int[] productIds, int[] quantities) {
+        for (int quantity : quantities) {
+            requirePositive(quantity);
+        }
+        String query = "UPDATE product SET stock = stock - ? WHERE product_id = ? AND stock >= ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            for (int i = 0; i < productIds.length; i++) {
+                statement.setInt(1, quantities[i]);
+                statement.setInt(2, productIds[i]);
+                statement.setInt(3, quantities[i]);
+                statement.addBatch();
+            }
+            int[] counts = statement.executeBatch();
+            for (int productId : productIds) {
+                invalidateCached(productId);
+            }
+            return counts;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Subtracts net quantities from the stock of several products with one batch of updates.
+     * Unlike {@link #tryDecrementStocks(int[], int[])} the updates are unconditional; they are meant
+     * for deltas that were already checked against stock elsewhere. A negative quantity adds stock.
+     *
+     * @param productIds the IDs of the products
+     * @param quantities the net number of units to take from each product's stock
+     * @return true if the batch was applied, false on error
+     */
+    public boolean applyStockDeltas(int[] productIds, int[] quantities) {
+        String query = "UPDATE product SET stock = stock - ? WHERE product_id = ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            for (int i = 0; i < productIds.length; i++) {
+                statement.setInt(1, quantities[i]);
+                statement.setInt(2, productIds[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            for (int productId : productIds) {
+                invalidateCached(productId);
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Sets the stock of several products with one batch of updates in one transaction.
+     *
+     * @param productIds the IDs of the products
+     * @param stocks     the new stock of each product
+     * @return true if the batch was applied, false on error
+     */
+    public boolean setStocks(int[] productIds, int[] stocks) {
+        String query = "UPDATE product SET stock = ? WHERE product_id = ?";
+        try {
+            return Transactions.execute(getDataSource(), transaction -> {
+                try (Connection connection = getConnection()) {
+                    PreparedStatement statement = prepare(connection, query);
+                    for (int i = 0; i < productIds.length; i++) {
+                        statement.setInt(1, stocks[i]);
+                        statement.setInt(2, productIds[i]);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                for (int productId : productIds) {
+                    invalidateCached(productId);
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private static void requirePositive(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive");
+        }
     }
 
     /**
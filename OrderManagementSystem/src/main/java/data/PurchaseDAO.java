@@ -2,7 +2,14 @@ package data;
 
 import models.Purchase;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 
 /**
  * The PurchaseDAO class provides data access methods for interacting with the purchase table in the database.
@@ -11,12 +18,173 @@ import java.sql.Connection;
 public class PurchaseDAO extends AbstractDAO<models.Purchase> {
 
     /**
-     * Constructs a new PurchaseDAO instance with the specified database connection.
+     * Constructs a new PurchaseDAO instance with the specified data source.
      *
-     * @param connection the database connection
+     * @param dataSource the data source providing database connections
      */
-    public PurchaseDAO(Connection connection) {
-        super(connection);
+    public PurchaseDAO(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    /**
+     * Inserts the header row of a multi-line order: a purchase without a product,
+     * whose quantity is the total number of units of its lines.
+     *
+     * @param clientId      the ID of the client placing the order
+     * @param totalQuantity the total number of units ordered
+     * @param orderDate     the date of the order
+     * @return the ID of the order, or -1 if it could not be inserted
+     */
+    public int addOrderHeader(int clientId, int totalQuantity, Timestamp orderDate) {
+        String query = "INSERT INTO purchase (client_id, product_id, quantity, order_date) VALUES (?, NULL, ?, ?)";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query, Statement.RETURN_GENERATED_KEYS);
+            statement.setInt(1, clientId);
+            statement.setInt(2, totalQuantity);
+            statement.setTimestamp(3, orderDate);
+            statement.executeUpdate();
+            try (ResultSet rs = statement.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Records the idempotency key an order was submitted with.
+     * The key is the primary key of its table, so a second order with the same key cannot be recorded.
+     *
+     * @param idempotencyKey the key supplied by the caller
+     * @param orderId        the ID of the order
+     * @return 1 if the key was recorded, 0 if the key is already taken, -1 on error
+     */
+    public int addIdempotencyKey(String idempotencyKey, int orderId) {
+        String query = "INSERT INTO purchase_idempotency (idempotency_key, order_id) VALUES (?, ?)";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            statement.setString(1, idempotencyKey);
+            statement.setInt(2, orderId);
+            return statement.executeUpdate();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the order submitted with an idempotency key.
+     *
+     * @param idempotencyKey the key supplied by the caller
+     * @return the ID of the order, 0 if no order was submitted with the key, or -1 on error
+     */
+    public int findOrderIdByIdempotencyKey(String idempotencyKey) {
+        String query = "SELECT order_id FROM purchase_idempotency WHERE idempotency_key = ?";
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepare(connection, query);
+            statement.setString(1, idempotencyKey);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Receives the sales rows of a scan as primitive values, without creating an object per row.
+     */
+    @FunctionalInterface
+    public interface SalesRowConsumer {
+        /**
+         * Receives one sales row.
+         *
+         * @param orderId     the ID of the order
+         * @param clientId    the ID of the client
+         * @param productId   the ID of the product, or -1 if it is unknown
+         * @param quantity    the units sold
+         * @param orderMillis the date of the order in epoch milliseconds
+         * @param amount      the amount billed for the row
+         * @param billed      whether the order has a bill in the log table; if not, the amount is 0
+         * @return true to continue the scan, false to stop it
+         */
+        boolean accept(int orderId, int clientId, int productId, int quantity, long orderMillis, double amount,
+                       boolean billed);
+    }
+
+    /**
+     * Streams the sales rows of the orders after an order ID, in order ID order.
+     * A single-product purchase yields one row billed with the total of its bill; a multi-line order
+     * yields one row per line, billed with the quantity of the line times its unit price.
+     *
+     * @param afterOrderId the ID of the last order already read, or 0 to read all orders
+     * @param consumer     the consumer receiving each row
+     * @return true if the scan completed or was stopped by the consumer, false on error
+     */
+    public boolean scanSales(int afterOrderId, SalesRowConsumer consumer) {
+        return scanSales("p.order_date", "FROM purchase p "
+                        + "LEFT JOIN purchase_line pl ON pl.order_id = p.order_id "
+                        + "LEFT JOIN Log l ON l.order_id = p.order_id "
+                        + "WHERE p.order_id > ?",
+                consumer, afterOrderId);
+    }
+
+    /**
+     * Streams the sales rows of the orders billed in a period, in order ID order, like
+     * {@link #scanSales(int, SalesRowConsumer)}. The orders are found through the index on the bill timestamp,
+     * and the date passed for each row is the time of its bill.
+     *
+     * @param from     the start of the period, inclusive
+     * @param to       the end of the period, exclusive
+     * @param consumer the consumer receiving each row
+     * @return true if the scan completed or was stopped by the consumer, false on error
+     */
+    public boolean scanSalesBilledBetween(Timestamp from, Timestamp to, SalesRowConsumer consumer) {
+        return scanSales("l.timestamp", "FROM Log l "
+                        + "JOIN purchase p ON p.order_id = l.order_id "
+                        + "LEFT JOIN purchase_line pl ON pl.order_id = p.order_id "
+                        + "WHERE l.timestamp >= ? AND l.timestamp < ?",
+                consumer, from, to);
+    }
+
+    private boolean scanSales(String dateColumn, String from, SalesRowConsumer consumer, Object... parameters) {
+        String query = "SELECT p.order_id, p.client_id, COALESCE(pl.product_id, p.product_id), "
+                + "COALESCE(pl.quantity, p.quantity), " + dateColumn + ", "
+                + "CASE WHEN pl.order_id IS NULL THEN l.total_amount ELSE pl.quantity * pl.unit_price END, "
+                + "l.order_id IS NOT NULL "
+                + from + " ORDER BY p.order_id, pl.line_no";
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(ResultSetStreams.STREAMING_FETCH_SIZE);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    int productId = rs.getInt(3);
+                    if (rs.wasNull()) {
+                        productId = -1;
+                    }
+                    Timestamp date = rs.getTimestamp(5);
+                    boolean billed = rs.getBoolean(7);
+                    if (!consumer.accept(rs.getInt(1), rs.getInt(2), productId, rs.getInt(4),
+                            date != null ? date.getTime() : 0, billed ? rs.getDouble(6) : 0, billed)) {
+                        break;
+                    }
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
@@ -0,0 +1,102 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The ResultSetStreams class turns forward-only, read-only result sets into lazily mapped streams,
+ * so that large scans hold only the rows being processed instead of the whole table.
+ */
+final class ResultSetStreams {
+
+    /**
+     * The fetch size that switches MySQL Connector/J to row-by-row streaming.
+     */
+    static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private ResultSetStreams() {
+    }
+
+    /**
+     * Creates the row mapper for a result set once its metadata is known.
+     *
+     * @param <T> The type of object produced for each row.
+     */
+    @FunctionalInterface
+    interface MapperFactory<T> {
+        RowMapper<T> create(ResultSetMetaData metaData) throws SQLException;
+    }
+
+    /**
+     * Runs a query on a forward-only, read-only statement and streams the mapped rows.
+     * Closing the stream closes the result set, the statement and the connection.
+     *
+     * @param connection    The connection to run the query on; ownership passes to the stream.
+     * @param query         The SQL query.
+     * @param fetchSize     The fetch size; {@link #STREAMING_FETCH_SIZE} for MySQL row streaming.
+     * @param mapperFactory Creates the row mapper from the result set metadata.
+     * @param parameters    The query parameters.
+     * @param <T>           The type of object produced for each row.
+     * @return The stream of mapped rows.
+     * @throws SQLException if the query fails; the connection is closed in that case.
+     */
+    static <T> Stream<T> stream(Connection connection, String query, int fetchSize,
+                                MapperFactory<T> mapperFactory, Object... parameters) throws SQLException {
+        PreparedStatement statement = null;
+        ResultSet resultSet;
+        RowMapper<T> rowMapper;
+        try {
+            statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            resultSet = statement.executeQuery();
+            rowMapper = mapperFactory.create(resultSet.getMetaData());
+        } catch (SQLException e) {
+            try (connection) {
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.mapRow(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+        };
+
+        Statement owned = statement;
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try (connection; owned; resultSet) {
+                // closes the result set, the statement, then the connection
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A RowMapper converts the current row of a ResultSet into an object.
+ *
+ * @param <T> The type of object produced for each row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row of the result set.
+     *
+     * @param resultSet The ResultSet positioned on the row to map.
+     * @return The mapped object.
+     * @throws SQLException if a database access error occurs.
+     */
+    T mapRow(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,344 @@
+package data;
+
+import models.ClientSales;
+import models.DailyRevenue;
+import models.ProductSales;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SalesSummaryDAO class provides data access methods for the summary tables that keep running sales
+ * totals per product, per client and per day, so that reports read a few rows instead of the order history.
+ * <p>
+ * The revenue of a day is spread over {@link #DAILY_SHARDS} rows, chosen by client, so that concurrent
+ * orders do not all wait for the lock on the same row; the rows of a day are summed when read.
+ */
+public class SalesSummaryDAO {
+
+    /**
+     * The number of rows the revenue of one day is spread over.
+     */
+    public static final int DAILY_SHARDS = 16;
+
+    private static final String PRODUCT_SALES_FROM_HISTORY =
+            "SELECT product_id, SUM(units), SUM(revenue) FROM ("
+                    + "SELECT p.product_id, p.quantity AS units, l.total_amount AS revenue "
+                    + "FROM purchase p JOIN Log l ON l.order_id = p.order_id WHERE p.product_id IS NOT NULL "
+                    + "UNION ALL "
+                    + "SELECT pl.product_id, pl.quantity, pl.quantity * pl.unit_price "
+                    + "FROM purchase_line pl JOIN Log l ON l.order_id = pl.order_id WHERE pl.product_id IS NOT NULL"
+                    + ") sales GROUP BY product_id";
+    private static final String CLIENT_SALES_FROM_HISTORY =
+            "SELECT p.client_id, COUNT(*), SUM(l.total_amount) "
+                    + "FROM purchase p JOIN Log l ON l.order_id = p.order_id GROUP BY p.client_id";
+    private static final String DAILY_REVENUE_FROM_HISTORY =
+            "SELECT DATE(p.order_date) AS sale_date, MOD(p.client_id, " + DAILY_SHARDS + ") AS shard, "
+                    + "COUNT(*) AS order_count, SUM(l.total_amount) AS revenue "
+                    + "FROM purchase p JOIN Log l ON l.order_id = p.order_id "
+                    + "GROUP BY DATE(p.order_date), MOD(p.client_id, " + DAILY_SHARDS + ")";
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructs a new SalesSummaryDAO instance with the specified data source.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public SalesSummaryDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Adds one billed order to the running totals of its products, its client and its day.
+     * Meant to run in the transaction that writes the order, so the totals commit or roll back with it.
+     * Like the stock updates, the product rows are locked in the given order, so callers pass the
+     * products in ascending ID order; the client and day rows are locked after them.
+     *
+     * @param clientId    the ID of the client
+     * @param productIds  the IDs of the products sold
+     * @param quantities  the units sold of each product
+     * @param revenues    the revenue of each product
+     * @param totalAmount the total of the bill
+     * @param orderDate   the date of the order
+     * @return true if the totals were updated, false otherwise
+     */
+    public boolean addSale(int clientId, int[] productIds, int[] quantities, double[] revenues,
+                           double totalAmount, Timestamp orderDate) {
+        return addProductSales(productIds, quantities, revenues)
+                && addClientSales(new int[]{clientId}, new int[]{1}, new double[]{totalAmount})
+                && addDailyRevenue(orderDate, new int[]{shardOf(clientId)}, new int[]{1}, new double[]{totalAmount});
+    }
+
+    /**
+     * Adds units and revenue to the running totals of products, with a single batch.
+     *
+     * @param productIds the IDs of the products, in ascending order
+     * @param quantities the units sold of each product
+     * @param revenues   the revenue of each product
+     * @return true if the totals were updated, false otherwise
+     */
+    public boolean addProductSales(int[] productIds, int[] quantities, double[] revenues) {
+        String query = "INSERT INTO product_sales (product_id, units_sold, revenue) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE units_sold = units_sold + VALUES(units_sold), "
+                + "revenue = revenue + VALUES(revenue)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (int i = 0; i < productIds.length; i++) {
+                statement.setInt(1, productIds[i]);
+                statement.setLong(2, quantities[i]);
+                statement.setDouble(3, revenues[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Adds orders and spend to the running totals of clients, with a single batch.
+     *
+     * @param clientIds   the IDs of the clients, in ascending order
+     * @param orderCounts the number of orders of each client
+     * @param spends      the amount billed to each client
+     * @return true if the totals were updated, false otherwise
+     */
+    public boolean addClientSales(int[] clientIds, int[] orderCounts, double[] spends) {
+        String query = "INSERT INTO client_sales (client_id, order_count, spend) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), "
+                + "spend = spend + VALUES(spend)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (int i = 0; i < clientIds.length; i++) {
+                statement.setInt(1, clientIds[i]);
+                statement.setLong(2, orderCounts[i]);
+                statement.setDouble(3, spends[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Adds orders and revenue to the running totals of a day, with a single batch.
+     *
+     * @param orderDate   the date of the orders
+     * @param shards      the rows of the day to add to, in ascending order, see {@link #shardOf(int)}
+     * @param orderCounts the number of orders added to each row
+     * @param revenues    the revenue added to each row
+     * @return true if the totals were updated, false otherwise
+     */
+    public boolean addDailyRevenue(Timestamp orderDate, int[] shards, int[] orderCounts, double[] revenues) {
+        String query = "INSERT INTO daily_revenue (sale_date, shard, order_count, revenue) VALUES (DATE(?), ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), "
+                + "revenue = revenue + VALUES(revenue)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (int i = 0; i < shards.length; i++) {
+                statement.setTimestamp(1, orderDate);
+                statement.setInt(2, shards[i]);
+                statement.setLong(3, orderCounts[i]);
+                statement.setDouble(4, revenues[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Gets the row of a day the orders of a client are added to.
+     *
+     * @param clientId the ID of the client
+     * @return the shard of the client
+     */
+    public static int shardOf(int clientId) {
+        return Math.floorMod(clientId, DAILY_SHARDS);
+    }
+
+    /**
+     * Retrieves the running totals of a product.
+     *
+     * @param productId the ID of the product
+     * @return the totals, all zero if the product has no sales, or null on error
+     */
+    public ProductSales getProductSales(int productId) {
+        String query = "SELECT units_sold, revenue FROM product_sales WHERE product_id = ?";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setInt(1, productId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next()
+                        ? new ProductSales(productId, resultSet.getLong(1), resultSet.getDouble(2))
+                        : new ProductSales(productId, 0, 0);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the running totals of a client.
+     *
+     * @param clientId the ID of the client
+     * @return the totals, all zero if the client has no orders, or null on error
+     */
+    public ClientSales getClientSales(int clientId) {
+        String query = "SELECT order_count, spend FROM client_sales WHERE client_id = ?";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setInt(1, clientId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next()
+                        ? new ClientSales(clientId, resultSet.getLong(1), resultSet.getDouble(2))
+                        : new ClientSales(clientId, 0, 0);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the revenue of every day with orders in a period.
+     *
+     * @param from the first day of the period, inclusive
+     * @param to   the last day of the period, inclusive
+     * @return the revenue per day in ascending date order
+     */
+    public List<DailyRevenue> getDailyRevenue(Date from, Date to) {
+        List<DailyRevenue> days = new ArrayList<>();
+        String query = "SELECT sale_date, SUM(order_count), SUM(revenue) FROM daily_revenue "
+                + "WHERE sale_date BETWEEN ? AND ? GROUP BY sale_date ORDER BY sale_date";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setDate(1, from);
+            statement.setDate(2, to);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    days.add(new DailyRevenue(resultSet.getDate(1), resultSet.getLong(2), resultSet.getDouble(3)));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return days;
+    }
+
+    /**
+     * Retrieves the totals of every product from the summary table, or recomputed from the order history.
+     *
+     * @param fromHistory true to recompute the totals from the purchases and bills
+     * @return the totals per product in ascending ID order
+     */
+    public List<ProductSales> getAllProductSales(boolean fromHistory) {
+        List<ProductSales> sales = new ArrayList<>();
+        String query = fromHistory ? PRODUCT_SALES_FROM_HISTORY
+                : "SELECT product_id, units_sold, revenue FROM product_sales";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query + " ORDER BY 1");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                sales.add(new ProductSales(resultSet.getInt(1), resultSet.getLong(2), resultSet.getDouble(3)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return sales;
+    }
+
+    /**
+     * Retrieves the totals of every client from the summary table, or recomputed from the order history.
+     *
+     * @param fromHistory true to recompute the totals from the purchases and bills
+     * @return the totals per client in ascending ID order
+     */
+    public List<ClientSales> getAllClientSales(boolean fromHistory) {
+        List<ClientSales> sales = new ArrayList<>();
+        String query = fromHistory ? CLIENT_SALES_FROM_HISTORY
+                : "SELECT client_id, order_count, spend FROM client_sales";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query + " ORDER BY 1");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                sales.add(new ClientSales(resultSet.getInt(1), resultSet.getLong(2), resultSet.getDouble(3)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return sales;
+    }
+
+    /**
+     * Retrieves the revenue of every day from the summary table, or recomputed from the order history.
+     *
+     * @param fromHistory true to recompute the revenue from the purchases and bills
+     * @return the revenue per day in ascending date order
+     */
+    public List<DailyRevenue> getAllDailyRevenue(boolean fromHistory) {
+        List<DailyRevenue> days = new ArrayList<>();
+        String query = "SELECT sale_date, SUM(order_count), SUM(revenue) FROM "
+                + (fromHistory ? "(" + DAILY_REVENUE_FROM_HISTORY + ") history"
+                : "daily_revenue")
+                + " GROUP BY sale_date ORDER BY sale_date";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                days.add(new DailyRevenue(resultSet.getDate(1), resultSet.getLong(2), resultSet.getDouble(3)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return days;
+    }
+
+    /**
+     * Replaces the contents of the summary tables with totals recomputed from the order history,
+     * in one transaction. Used to fill the tables for orders placed before they existed, or to repair them.
+     * Orders must not be placed while the tables are rebuilt, or their totals may be counted twice.
+     *
+     * @return true if the tables were rebuilt, false otherwise
+     */
+    public boolean rebuild() {
+        try {
+            return Transactions.execute(dataSource, transaction -> {
+                try (Connection connection = dataSource.getConnection();
+                     Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DELETE FROM product_sales");
+                    statement.executeUpdate("DELETE FROM client_sales");
+                    statement.executeUpdate("DELETE FROM daily_revenue");
+                    statement.executeUpdate("INSERT INTO product_sales (product_id, units_sold, revenue) "
+                            + PRODUCT_SALES_FROM_HISTORY);
+                    statement.executeUpdate("INSERT INTO client_sales (client_id, order_count, spend) "
+                            + CLIENT_SALES_FROM_HISTORY);
+                    statement.executeUpdate("INSERT INTO daily_revenue (sale_date, shard, order_count, revenue) "
+                            + DAILY_REVENUE_FROM_HISTORY);
+                    return true;
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+}
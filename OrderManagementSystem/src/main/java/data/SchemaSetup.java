@@ -0,0 +1,122 @@
+package data;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * The SchemaSetup class creates the tables and indexes the application needs beyond the original dump.
+ * Every statement is idempotent, so the setup can run on each start.
+ */
+public final class SchemaSetup {
+
+    private static final List<String> STATEMENTS = List.of(
+            "CREATE TABLE IF NOT EXISTS purchase_line ("
+                    + "order_id int NOT NULL, "
+                    + "line_no int NOT NULL, "
+                    + "product_id int DEFAULT NULL, "
+                    + "quantity int NOT NULL, "
+                    + "unit_price double NOT NULL, "
+                    + "PRIMARY KEY (order_id, line_no), "
+                    + "KEY purchase_line_product (product_id), "
+                    + "CONSTRAINT purchase_line_order FOREIGN KEY (order_id) REFERENCES purchase (order_id) ON DELETE CASCADE, "
+                    + "CONSTRAINT purchase_line_product FOREIGN KEY (product_id) REFERENCES product (product_id) ON DELETE SET NULL)",
+            "CREATE TABLE IF NOT EXISTS purchase_idempotency ("
+                    + "idempotency_key varchar(64) NOT NULL, "
+                    + "order_id int NOT NULL, "
+                    + "created_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "PRIMARY KEY (idempotency_key), "
+                    + "KEY purchase_idempotency_order (order_id), "
+                    + "CONSTRAINT purchase_idempotency_order FOREIGN KEY (order_id) REFERENCES purchase (order_id) ON DELETE CASCADE)",
+            "CREATE TABLE IF NOT EXISTS product_sales ("
+                    + "product_id int NOT NULL, "
+                    + "units_sold bigint NOT NULL, "
+                    + "revenue double NOT NULL, "
+                    + "PRIMARY KEY (product_id))",
+            "CREATE TABLE IF NOT EXISTS client_sales ("
+                    + "client_id int NOT NULL, "
+                    + "order_count bigint NOT NULL, "
+                    + "spend double NOT NULL, "
+                    + "PRIMARY KEY (client_id))",
+            "CREATE TABLE IF NOT EXISTS daily_revenue ("
+                    + "sale_date date NOT NULL, "
+                    + "shard int NOT NULL, "
+                    + "order_count bigint NOT NULL, "
+                    + "revenue double NOT NULL, "
+                    + "PRIMARY KEY (sale_date, shard))",
+            "CREATE TABLE IF NOT EXISTS stock_delta ("
+                    + "delta_id int NOT NULL AUTO_INCREMENT, "
+                    + "product_id int NOT NULL, "
+                    + "quantity int NOT NULL, "
+                    + "order_id int NOT NULL, "
+                    + "PRIMARY KEY (delta_id), "
+                    + "KEY stock_delta_product (product_id), "
+                    + "CONSTRAINT stock_delta_product FOREIGN KEY (product_id) REFERENCES product (product_id) ON DELETE CASCADE)"
+    );
+
+    /**
+     * The indexes added to tables of the original dump, as table, index name and indexed columns.
+     * The dump already indexes the order ID of the log table through its foreign key.
+     */
+    private static final String[][] INDEXES = {
+            {"Log", "log_timestamp", "timestamp"}
+    };
+
+    private SchemaSetup() {
+    }
+
+    /**
+     * Creates the missing tables and indexes.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public static void apply(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String ddl : STATEMENTS) {
+                statement.execute(ddl);
+            }
+            for (String[] index : INDEXES) {
+                if (!hasIndex(connection, index[0], index[1])) {
+                    statement.execute("CREATE INDEX " + index[1] + " ON " + index[0] + " (" + index[2] + ")");
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Checks for an index through the JDBC metadata, matching table and index names case-insensitively
+     * because MySQL reports them as stored, which depends on lower_case_table_names.
+     */
+    private static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, null, null)) {
+            while (tables.next()) {
+                String name = tables.getString("TABLE_NAME");
+                if (name.equalsIgnoreCase(table)
+                        && hasIndex(metaData, tables.getString("TABLE_CAT"), tables.getString("TABLE_SCHEM"), name, index)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasIndex(DatabaseMetaData metaData, String catalog, String schema, String table, String index)
+            throws SQLException {
+        try (ResultSet indexes = metaData.getIndexInfo(catalog, schema, table, false, true)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
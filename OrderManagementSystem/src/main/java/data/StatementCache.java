@@ -0,0 +1,113 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The StatementCache class keeps the prepared statements of one connection open for reuse.
+ * The cache is bounded; the least recently used statement is closed when the limit is exceeded.
+ * Statements obtained from the cache must not be closed by the caller, but their result sets must be.
+ * A cache belongs to a physical connection, shared by every pool handle to it, and lives as long as that
+ * connection; {@link #release(Connection)} closes it together with the connection.
+ */
+final class StatementCache {
+
+    /**
+     * The maximum number of statements kept open per connection.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final Map<Connection, StatementCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    private StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the statement cache of the specified connection, creating it on first use.
+     *
+     * @param connection the database connection or a pool handle to it
+     * @return the cache bound to the physical connection
+     * @throws SQLException if the connection is a pool handle that has already been closed
+     */
+    public static StatementCache of(Connection connection) throws SQLException {
+        return CACHES.computeIfAbsent(ConnectionPool.physical(connection), c -> new StatementCache(c, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Closes and forgets all cached statements of the specified connection.
+     *
+     * @param connection the physical database connection
+     */
+    public static void release(Connection connection) {
+        StatementCache cache = CACHES.remove(connection);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns a cached prepared statement for the query, preparing it on a miss.
+     *
+     * @param query the SQL query
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String query) throws SQLException {
+        return prepare(query, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a cached prepared statement for the query, preparing it on a miss.
+     *
+     * @param query             the SQL query
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public synchronized PreparedStatement prepare(String query, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + query : query;
+        PreparedStatement statement = statements.get(key);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(query, autoGeneratedKeys);
+            statements.put(key, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    public synchronized void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package data;
+
+import models.StockDelta;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The StockDeltaDAO class provides data access methods for the stock_delta journal, which holds the units
+ * sold through the stock engine until they are subtracted from the product table.
+ * The journal rows are written in the transaction of their order, so sold units survive a crash even
+ * though the product stock is only updated later.
+ */
+public class StockDeltaDAO {
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructs a new StockDeltaDAO instance with the specified data source.
+     *
+     * @param dataSource the data source providing database connections
+     */
+    public StockDeltaDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Journals the units sold by an order with a single batch.
+     *
+     * @param orderId    the ID of the order
+     * @param productIds the IDs of the products sold
+     * @param quantities the units sold of each product
+     * @return true if every row was inserted, false otherwise
+     */
+    public boolean addDeltas(int orderId, int[] productIds, int[] quantities) {
+        String query = "INSERT INTO stock_delta (product_id, quantity, order_id) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (int i = 0; i < productIds.length; i++) {
+                statement.setInt(1, productIds[i]);
+                statement.setInt(2, quantities[i]);
+                statement.setInt(3, orderId);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the oldest journal rows.
+     *
+     * @param limit the maximum number of rows to return
+     * @return the rows in insertion order, or null on error
+     */
+    public List<StockDelta> getPendingDeltas(int limit) {
+        String query = "SELECT delta_id, product_id, quantity FROM stock_delta ORDER BY delta_id LIMIT ?";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            statement.setInt(1, limit);
+            List<StockDelta> deltas = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    deltas.add(new StockDelta(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3)));
+                }
+            }
+            return deltas;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Deletes journal rows by ID with a single batch, once their units were subtracted from stock.
+     * Meant to run in the transaction that updates the stock.
+     *
+     * @param deltas the rows to delete
+     * @return true if the rows were deleted, false otherwise
+     */
+    public boolean deleteDeltas(List<StockDelta> deltas) {
+        String query = "DELETE FROM stock_delta WHERE delta_id = ?";
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = StatementCache.of(connection).prepare(query);
+            for (StockDelta delta : deltas) {
+                statement.setInt(1, delta.deltaId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package data;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Transactions class runs units of work inside a single database transaction.
+ * DAO calls made by the work on the same thread borrow the transaction's connection from the pool,
+ * so they take part in the transaction without passing the connection around.
+ */
+public final class Transactions {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private Transactions() {
+    }
+
+    /**
+     * A unit of work executed inside a transaction.
+     *
+     * @param <R> The type of the result.
+     */
+    @FunctionalInterface
+    public interface Work<R> {
+
+        /**
+         * Executes the work.
+         * To abandon the transaction without throwing, the work may call {@code connection.rollback()}.
+         * The connection is a wrapper noticing that call; statements are prepared by the DAOs, which borrow
+         * the pooled connection of the transaction themselves.
+         *
+         * @param connection The connection of the transaction.
+         * @return The result of the work.
+         * @throws SQLException if a database access error occurs; the transaction is rolled back.
+         */
+        R execute(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Executes the work in a transaction, committing it on success and rolling it back on failure.
+     * If the calling thread is already inside a transaction, the work joins it instead.
+     *
+     * @param dataSource The data source to borrow the connection from.
+     * @param work       The work to execute.
+     * @param <R>        The type of the result.
+     * @return The result of the work.
+     * @throws SQLException if the work or the commit fails.
+     */
+    public static <R> R execute(DataSource dataSource, Work<R> work) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            Scope outer = CURRENT.get();
+            if (!connection.getAutoCommit()) {
+                return work.execute(outer != null ? outer.track(connection) : connection);
+            }
+            Scope scope = new Scope();
+            CURRENT.set(scope);
+            connection.setAutoCommit(false);
+            try {
+                R result = work.execute(scope.track(connection));
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                scope.rolledBack = true;
+                connection.rollback();
+                throw e;
+            } finally {
+                CURRENT.remove();
+                connection.setAutoCommit(true);
+                scope.completionCallbacks.forEach(Runnable::run);
+                if (!scope.rolledBack) {
+                    scope.commitCallbacks.forEach(Runnable::run);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the calling thread is executing work inside a transaction.
+     *
+     * @return true inside {@link #execute(DataSource, Work)}, false otherwise
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Runs the action once the current transaction has committed or rolled back,
+     * or immediately if the calling thread is not inside a transaction.
+     *
+     * @param action the action to run
+     */
+    public static void afterCompletion(Runnable action) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            action.run();
+        } else {
+            scope.completionCallbacks.add(action);
+        }
+    }
+
+    /**
+     * Runs the action once the current transaction has committed, and not at all if it rolls back,
+     * or immediately if the calling thread is not inside a transaction.
+     * A transaction counts as rolled back once its work has called {@code connection.rollback()}.
+     *
+     * @param action the action to run
+     */
+    public static void afterCommit(Runnable action) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            action.run();
+        } else {
+            scope.commitCallbacks.add(action);
+        }
+    }
+
+    /**
+     * The state of the transaction running on a thread.
+     */
+    private static final class Scope {
+        private final List<Runnable> completionCallbacks = new ArrayList<>();
+        private final List<Runnable> commitCallbacks = new ArrayList<>();
+        private boolean rolledBack;
+
+        /**
+         * Wraps the connection handed to the work, so that a rollback by the work is noticed.
+         *
+         * @param connection the connection of the transaction
+         * @return the connection to hand to the work
+         */
+        private Connection track(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("rollback") && args == null) {
+                            rolledBack = true;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package models;
+
+/**
+ * The ClientSales class represents the running order count and spend of a client.
+ */
+public record ClientSales(int clientId, long orderCount, double spend) {
+
+}
@@ -0,0 +1,10 @@
+package models;
+
+import java.sql.Date;
+
+/**
+ * The DailyRevenue class represents the orders placed and the revenue billed on one day.
+ */
+public record DailyRevenue(Date day, long orderCount, double revenue) {
+
+}
@@ -0,0 +1,78 @@
+package models;
+
+import java.sql.Timestamp;
+
+/**
+ * The Event class represents one change recorded in the event log.
+ * Which fields are meaningful depends on the type of the event; the others are -1 or 0.
+ *
+ * @param type      the type of the event
+ * @param orderId   the ID of the order that caused the event, or -1
+ * @param clientId  the ID of the client who placed the order, or -1
+ * @param productId the ID of the product concerned, or -1 for the header of a multi-line order
+ * @param quantity  the units purchased, or the change of stock for a stock adjustment
+ * @param amount    the total of the bill for a purchase, or the new price for a repricing
+ * @param timestamp the time of the event
+ */
+public record Event(Type type, int orderId, int clientId, int productId, int quantity, double amount,
+                    Timestamp timestamp) {
+
+    /**
+     * The types of events.
+     */
+    public enum Type {
+        /**
+         * An order was placed and billed. A purchase of a single product also takes its units from stock.
+         */
+        PURCHASE_CREATED,
+        /**
+         * The stock of a product changed by the given number of units.
+         */
+        STOCK_ADJUSTED,
+        /**
+         * The price of a product changed.
+         */
+        PRODUCT_REPRICED
+    }
+
+    /**
+     * Creates the event of a placed order.
+     *
+     * @param orderId     the ID of the order
+     * @param clientId    the ID of the client
+     * @param productId   the ID of the product, or -1 for a multi-line order
+     * @param quantity    the units purchased
+     * @param totalAmount the total of the bill
+     * @param timestamp   the date of the order
+     * @return the event
+     */
+    public static Event purchaseCreated(int orderId, int clientId, int productId, int quantity,
+                                        double totalAmount, Timestamp timestamp) {
+        return new Event(Type.PURCHASE_CREATED, orderId, clientId, productId, quantity, totalAmount, timestamp);
+    }
+
+    /**
+     * Creates the event of a change of stock.
+     *
+     * @param productId the ID of the product
+     * @param delta     the change of stock in units
+     * @param orderId   the ID of the order that caused the change, or -1
+     * @return the event
+     */
+    public static Event stockAdjusted(int productId, int delta, int orderId) {
+        return new Event(Type.STOCK_ADJUSTED, orderId, -1, productId, delta, 0,
+                new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * Creates the event of a change of price.
+     *
+     * @param productId the ID of the product
+     * @param price     the new price
+     * @return the event
+     */
+    public static Event productRepriced(int productId, double price) {
+        return new Event(Type.PRODUCT_REPRICED, -1, -1, productId, 0, price,
+                new Timestamp(System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,8 @@
+package models;
+
+/**
+ * The OrderLine class represents one product and quantity of a multi-line order.
+ */
+public record OrderLine(int productId, int quantity) {
+
+}
@@ -0,0 +1,12 @@
+package models;
+
+import java.sql.Timestamp;
+
+/**
+ * The OrderSummary class represents a billed order together with the names of its client and product.
+ * For a multi-line order, the product name describes the lines, as in "Lamp x2, Desk x1".
+ */
+public record OrderSummary(int orderId, String clientName, String productName, int quantity,
+                           double totalAmount, Timestamp timestamp) {
+
+}
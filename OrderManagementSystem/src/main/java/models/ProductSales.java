@@ -0,0 +1,8 @@
+package models;
+
+/**
+ * The ProductSales class represents the running sales totals of a product.
+ */
+public record ProductSales(int productId, long unitsSold, double revenue) {
+
+}
@@ -49,6 +49,33 @@ public class Purchase {
         this.order_id = id;
     }
 
+    /**
+     * Retrieves the ID of the client who made the purchase.
+     *
+     * @return The client ID, or -1 if the client was deleted
+     */
+    public int getClientId() {
+        return client_id;
+    }
+
+    /**
+     * Retrieves the ID of the purchased product.
+     *
+     * @return The product ID, or -1 if the product was deleted
+     */
+    public int getProductId() {
+        return product_id;
+    }
+
+    /**
+     * Retrieves the purchased quantity.
+     *
+     * @return The quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
     /**
      * Retrieves the date of the purchase.
      *
@@ -0,0 +1,51 @@
+package models;
+
+/**
+ * The PurchaseResult class represents the outcome of placing an order.
+ * A successful result carries the order ID and its bill; a failed one carries the reason.
+ */
+public record PurchaseResult(int orderId, Bill bill, Failure failure) {
+
+    /**
+     * The reasons an order can be refused.
+     */
+    public enum Failure {
+        OUT_OF_STOCK,
+        PRODUCT_NOT_FOUND,
+        CLIENT_NOT_FOUND,
+        INVALID_QUANTITY,
+        EMPTY_ORDER,
+        OVERLOADED,
+        ERROR
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param orderId the ID of the created order
+     * @param bill    the bill of the order
+     * @return the result
+     */
+    public static PurchaseResult success(int orderId, Bill bill) {
+        return new PurchaseResult(orderId, bill, null);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param failure the reason the order was refused
+     * @return the result
+     */
+    public static PurchaseResult failure(Failure failure) {
+        return new PurchaseResult(-1, null, failure);
+    }
+
+    /**
+     * Checks whether the order was created.
+     *
+     * @return true if the order was created, false otherwise
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,9 @@
+package models;
+
+/**
+ * The StockDelta class represents units sold through the stock engine that are not yet
+ * subtracted from the stock of their product.
+ */
+public record StockDelta(int deltaId, int productId, int quantity) {
+
+}
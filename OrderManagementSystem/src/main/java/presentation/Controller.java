@@ -1,44 +1,71 @@
 package presentation;
 
 import business.ClientBLL;
+import business.IdempotencyIndex;
+import business.OrderIntake;
+import business.OrderMode;
 import business.ProductBLL;
 import business.PurchaseBLL;
+import business.StockEngine;
+import business.TopSellers;
+import data.BillJournal;
+import data.ConnectionPool;
+import data.EventLog;
+import data.SchemaSetup;
 import models.Bill;
 import models.Client;
 import models.Product;
 import models.Purchase;
+import models.PurchaseResult;
 
+import javax.sql.DataSource;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
 
 /**
  * The Controller class for managing the interaction between the view and the business logic.
  */
 public class Controller {
     private final View view;
-    private final Connection connection;
-    private static final String URL = "jdbc:mysql://localhost:3306/orders_management";
-    private static final String USER = "root";
-    private static final String PASSWORD = "maria";
+    private final ClientBLL clientBLL;
+    private final ProductBLL productBLL;
+    private final PurchaseBLL purchaseBLL;
+    private TablePager<Client> clientPager;
+    private TablePager<Product> productPager;
+    private TablePager<Client> orderClientPager;
+    private TablePager<Product> orderProductPager;
+    private TablePager<Purchase> purchasePager;
+    static final String URL = "jdbc:mysql://localhost:3306/orders_management?useServerPrepStmts=true&rewriteBatchedStatements=true";
+    static final String USER = "root";
+    static final String PASSWORD = "maria";
+    static final String BILL_JOURNAL_FILE = "bills.journal";
+    static final String EVENT_LOG_DIRECTORY = "events";
+    static final String REPORT_DIRECTORY = "reports";
 
     /**
-     * Constructs a Controller with the specified view and database connection.
+     * Constructs a Controller with the specified view, data source, order mode components, bill journal and event log.
      *
-     * @param view       the view to be controlled
-     * @param connection the database connection to be used
+     * @param view        the view to be controlled
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine tracking product stock in memory, or null
+     * @param orderIntake the order intake group-committing orders, or null
+     * @param billJournal the journal bills are written behind through, or null
+     * @param eventLog    the log orders and product changes are recorded in
      */
-    public Controller(View view, Connection connection) {
+    public Controller(View view, DataSource dataSource, StockEngine stockEngine, OrderIntake orderIntake,
+                      BillJournal billJournal, EventLog eventLog) {
         this.view = view;
         this.view.show();
-        this.connection = connection;
+        this.clientBLL = new ClientBLL(dataSource);
+        this.productBLL = new ProductBLL(dataSource, stockEngine, eventLog);
+        this.purchaseBLL = new PurchaseBLL(dataSource, stockEngine, orderIntake, billJournal, eventLog,
+                new TopSellers(),
+                new IdempotencyIndex(IdempotencyIndex.DEFAULT_MAX_SIZE, IdempotencyIndex.DEFAULT_TTL_MILLIS));
         this.view.displayOptionsWindow(new ClientButtonListener(),
                 new ProductButtonListener(),
                 new OrderButtonListener());
@@ -55,10 +82,13 @@ public class Controller {
             for (int i = 0; i < fields.length; i++) {
                 columnNames[i] = fields[i].getName();
             }
+            clientPager = new TablePager<>(clientBLL::getClientPage, Client::getId, view::displayAll);
             view.displayClientsWindow(new ClientAddButtonListener(),
                     new ClientDeleteButtonListener(),
                     new ClientEditButtonListener(),
                     new ClientViewAllButtonListener(),
+                    event -> clientPager.previous(),
+                    event -> clientPager.next(),
                     columnNames);
         }
     }
@@ -83,8 +113,6 @@ public class Controller {
             String email = view.getClientEmail();
             String phoneNumber = view.getClientPhoneNumber();
 
-            ClientBLL clientBLL = new ClientBLL(connection);
-
             Client newClient = new Client(-1, name, email, phoneNumber);
             int result = clientBLL.addClient(newClient);
 
@@ -103,8 +131,7 @@ public class Controller {
                     System.out.println("New client added: " + newClient);
                     break;
             }
-            List<Client> clients = clientBLL.getAllClients();
-            view.populateTableData((List<Object>) (List<?>) clients);
+            clientPager.reload();
         }
     }
 
@@ -138,13 +165,11 @@ public class Controller {
      * @param client the client to be deleted
      */
     public void deleteClient(Client client) {
-        ClientBLL clientBLL = new ClientBLL(connection);
         int result = clientBLL.deleteClient(client.getId());
         if(result == -1) {
             JOptionPane.showMessageDialog(null, "Error: Client does not exist!");
         }
-        List<Client> clients = clientBLL.getAllClients();
-        view.populateTableData((List<Object>) (List<?>) clients);
+        clientPager.reload();
     }
 
     /**
@@ -162,8 +187,6 @@ public class Controller {
                 String email = view.getClientEmail();
                 String phoneNumber = view.getClientPhoneNumber();
 
-                ClientBLL clientBLL = new ClientBLL(connection);
-
                 Client editedClient = new Client(client.getId(), name, email, phoneNumber);
                 int result = clientBLL.updateClient(editedClient);
                 switch (result) {
@@ -180,22 +203,19 @@ public class Controller {
                         System.out.println("Client updated: " + editedClient);
                         break;
                 }
-                List<Client> clients = clientBLL.getAllClients();
-                view.populateTableData((List<Object>) (List<?>) clients);
+                clientPager.reload();
             }
         });
 
     }
 
     /**
-     * Listener for the view all clients button.
+     * Listener for the view clients button, which shows the first page of clients.
      */
     class ClientViewAllButtonListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            ClientBLL clientBLL = new ClientBLL(connection);
-            List<Client> clients = clientBLL.getAllClients();
-            view.displayAll((List<Object>) (List<?>) clients);
+            clientPager.first();
         }
     }
 
@@ -210,7 +230,9 @@ public class Controller {
             for (int i = 0; i < fields.length; i++) {
                 columnNames[i] = fields[i].getName();
             }
-            view.displayProductsWindow(new ProductAddButtonListener(), new ProductViewAllButtonListener(), new ProductDeleteButtonListener(), new ProductEditButtonListener(), columnNames);
+            productPager = new TablePager<>(productBLL::getProductPage, Product::getId, view::displayAll);
+            view.displayProductsWindow(new ProductAddButtonListener(), new ProductViewAllButtonListener(), new ProductDeleteButtonListener(), new ProductEditButtonListener(),
+                    event -> productPager.previous(), event -> productPager.next(), columnNames);
         }
     }
 
@@ -232,13 +254,11 @@ public class Controller {
      * @param product the product to be deleted
      */
     public void deleteProduct(Product product) {
-        ProductBLL productBLL = new ProductBLL(connection);
         int result = productBLL.deleteProduct(product.getId());
         if(result == -1) {
             JOptionPane.showMessageDialog(null, "Error: Product does not exist!");
         }
-        List<Product> products = productBLL.getAllProducts();
-        view.populateTableData((List<Object>) (List<?>) products);
+        productPager.reload();
     }
 
     /**
@@ -267,8 +287,6 @@ public class Controller {
                 double price = Double.parseDouble(view.getProductPrice());
                 int stock = Integer.parseInt(view.getProductStock());
 
-                ProductBLL productBLL = new ProductBLL(connection);
-
                 Product editedProduct = new Product(product.getId(), name, price, stock);
                 int result = productBLL.updateProduct(editedProduct);
                 switch (result) {
@@ -282,8 +300,7 @@ public class Controller {
                         System.out.println("Product updated: " + editedProduct);
                         break;
                 }
-                List<Product> products = productBLL.getAllProducts();
-                view.populateTableData((List<Object>) (List<?>) products);
+                productPager.reload();
             }
         });
     }
@@ -316,8 +333,6 @@ public class Controller {
                 return;
             }
 
-            ProductBLL productBLL = new ProductBLL(connection);
-
             Product newProduct = new Product(-1, name, price, stock);
             int result = productBLL.addProduct(newProduct);
 
@@ -333,20 +348,17 @@ public class Controller {
                     System.out.println("New product added: " + newProduct);
                     break;
             }
-            List<Product> products = productBLL.getAllProducts();
-            view.populateTableData((List<Object>) (List<?>) products);
+            productPager.reload();
         }
     }
 
     /**
-     * Listener for the view all products button.
+     * Listener for the view products button, which shows the first page of products.
      */
     class ProductViewAllButtonListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            ProductBLL productBLL = new ProductBLL(connection);
-            List<Product> products = productBLL.getAllProducts();
-            view.displayAll((List<Object>) (List<?>) products);
+            productPager.first();
         }
     }
 
@@ -374,9 +386,16 @@ public class Controller {
                 purchaseColumnNames[i] = purchaseFields[i].getName();
             }
 
-            view.displayPurchaseWindow(new OrderAddButtonListener(), new OrderViewAllButtonListener(), new BillViewAllButtonListener(), clientColumnNames, productColumnNames, purchaseColumnNames);
-            populateClientTable();
-            populateProductTable();
+            orderClientPager = new TablePager<>(clientBLL::getClientPage, Client::getId, view::populateClientTable);
+            orderProductPager = new TablePager<>(productBLL::getProductPage, Product::getId, view::populateProductTable);
+            purchasePager = new TablePager<>(purchaseBLL::getPurchasePage, Purchase::getId, view::populateTableData);
+            view.displayPurchaseWindow(new OrderAddButtonListener(), new OrderViewAllButtonListener(), new BillViewAllButtonListener(),
+                    event -> orderClientPager.previous(), event -> orderClientPager.next(),
+                    event -> orderProductPager.previous(), event -> orderProductPager.next(),
+                    event -> purchasePager.previous(), event -> purchasePager.next(),
+                    clientColumnNames, productColumnNames, purchaseColumnNames);
+            orderClientPager.first();
+            orderProductPager.first();
         }
     }
 
@@ -396,45 +415,48 @@ public class Controller {
             if (result == JOptionPane.OK_OPTION) {
                 int quantity = (int) quantitySpinner.getValue();
 
-                PurchaseBLL purchaseBLL = new PurchaseBLL(connection);
-                int createResult = purchaseBLL.createPurchase(client, product, quantity);
+                PurchaseResult createResult = purchaseBLL.createPurchase(client, product, quantity);
 
-                switch (createResult) {
-                    case -1:
-                        JOptionPane.showMessageDialog(null, "Not enough products available.");
-                        break;
-                    case -2:
-                        JOptionPane.showMessageDialog(null, "Product not found.");
-                        break;
-                    case -3:
-                        JOptionPane.showMessageDialog(null, "Client not found.");
-                        break;
-                    default:
-                        if (createResult > 0) {
-                            int option = JOptionPane.showConfirmDialog(null, "Order created successfully. View bill?", "View Bill", JOptionPane.YES_NO_OPTION);
-                            if (option == JOptionPane.YES_OPTION) {
-                                Bill bill = purchaseBLL.getBill();
-                                Object[][] billData = {{"Order ID", bill.orderId()},
-                                        {"Total Amount", bill.totalAmount()},
-                                        {"Order Date", bill.timestamp()}};
-
-                                String[] columnNames = {"Attribute", "Value"};
-                                JTable billTable = new JTable(billData, columnNames);
-                                billTable.setEnabled(false);
-
-                                JScrollPane scrollPane = new JScrollPane(billTable);
-                                JOptionPane.showMessageDialog(null, scrollPane, "Bill Information", JOptionPane.INFORMATION_MESSAGE);
-                            }
-                        } else {
-                            JOptionPane.showMessageDialog(null, "Unknown error occurred.");
+                if (createResult.isSuccess()) {
+                    int option = JOptionPane.showConfirmDialog(null, "Order created successfully. View bill?", "View Bill", JOptionPane.YES_NO_OPTION);
+                    if (option == JOptionPane.YES_OPTION) {
+                        Bill bill = purchaseBLL.findBill(createResult.orderId());
+                        if (bill == null) {
+                            bill = createResult.bill();
                         }
-                        break;
+                        Object[][] billData = {{"Order ID", bill.orderId()},
+                                {"Total Amount", bill.totalAmount()},
+                                {"Order Date", bill.timestamp()}};
+
+                        String[] columnNames = {"Attribute", "Value"};
+                        JTable billTable = new JTable(billData, columnNames);
+                        billTable.setEnabled(false);
+
+                        JScrollPane scrollPane = new JScrollPane(billTable);
+                        JOptionPane.showMessageDialog(null, scrollPane, "Bill Information", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } else {
+                    switch (createResult.failure()) {
+                        case OUT_OF_STOCK:
+                            JOptionPane.showMessageDialog(null, "Not enough products available.");
+                            break;
+                        case PRODUCT_NOT_FOUND:
+                            JOptionPane.showMessageDialog(null, "Product not found.");
+                            break;
+                        case CLIENT_NOT_FOUND:
+                            JOptionPane.showMessageDialog(null, "Client not found.");
+                            break;
+                        case OVERLOADED:
+                            JOptionPane.showMessageDialog(null, "Too many orders, try again later.");
+                            break;
+                        default:
+                            JOptionPane.showMessageDialog(null, "Unknown error occurred.");
+                            break;
+                    }
                 }
             }
-            PurchaseBLL purchaseBLL = new PurchaseBLL(connection);
-            List<Purchase> purchases = purchaseBLL.getAllPurchases();
-            view.displayAll((List<Object>) (List<?>) purchases);
-            populateProductTable();
+            purchasePager.reload();
+            orderProductPager.reload();
         }
     }
 
@@ -444,9 +466,8 @@ public class Controller {
     class OrderViewAllButtonListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            PurchaseBLL purchaseBLL = new PurchaseBLL(connection);
-            List<Purchase> purchases = purchaseBLL.getAllPurchases();
-            view.displayAll((List<Object>) (List<?>) purchases);
+            view.clearTable();
+            purchaseBLL.forEachPurchase(view::appendToTable);
         }
     }
 
@@ -456,17 +477,11 @@ public class Controller {
     class BillViewAllButtonListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            PurchaseBLL purchaseBLL = new PurchaseBLL(connection);
-            List<Bill> allBills = purchaseBLL.getAllBills();
-
-            Object[][] billData = new Object[allBills.size()][6];
-            for (int i = 0; i < allBills.size(); i++) {
-                Bill bill = allBills.get(i);
-                billData[i] = new Object[]{bill.orderId(), bill.totalAmount(), bill.timestamp()};
-            }
-
-            String[] columnNames = {"Order ID", "Total Amount", "Order Date"};
-            DefaultTableModel billTableModel = new DefaultTableModel(billData, columnNames);
+            String[] columnNames = {"Order ID", "Client", "Product", "Quantity", "Total Amount", "Order Date"};
+            DefaultTableModel billTableModel = new DefaultTableModel(columnNames, 0);
+            purchaseBLL.forEachOrderSummary(summary -> billTableModel.addRow(
+                    new Object[]{summary.orderId(), summary.clientName(), summary.productName(),
+                            summary.quantity(), summary.totalAmount(), summary.timestamp()}));
             JTable billTable = new JTable(billTableModel);
             billTable.setEnabled(false);
 
@@ -475,35 +490,44 @@ public class Controller {
         }
     }
 
-    /**
-     * Populates the client table with data from the database.
-     */
-    private void populateClientTable() {
-        ClientBLL clientBLL = new ClientBLL(connection);
-        List<Client> clients = clientBLL.getAllClients();
-        List<Object> clientObjects = new ArrayList<>(clients);
-        view.populateClientTable(clientObjects);
-    }
-
-    /**
-     * Populates the product table with data from the database.
-     */
-    private void populateProductTable() {
-        ProductBLL productBLL = new ProductBLL(connection);
-        List<Product> products = productBLL.getAllProducts();
-        List<Object> productObjects = new ArrayList<>(products);
-        view.populateProductTable(productObjects);
-    }
-
     /**
      * Main method to start the application.
      *
      * @param args the command line arguments
-     * @throws SQLException if a database access error occurs
+     * @throws IOException if the bill journal or the event log cannot be opened
      */
-    public static void main(String[] args) throws SQLException {
+    public static void main(String[] args) throws IOException {
         View view = new View();
-        Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
-        new Controller(view, connection);
+        ConnectionPool connectionPool = new ConnectionPool(URL, USER, PASSWORD, ConnectionPool.DEFAULT_MAX_SIZE);
+        SchemaSetup.apply(connectionPool);
+        OrderMode orderMode = OrderMode.fromSystemProperties();
+        StockEngine stockEngine = orderMode == OrderMode.STOCK_ENGINE ? new StockEngine(connectionPool) : null;
+        if (stockEngine != null) {
+            stockEngine.start();
+        }
+        OrderIntake orderIntake = orderMode == OrderMode.GROUP_COMMIT ? new OrderIntake(connectionPool) : null;
+        if (orderIntake != null) {
+            orderIntake.start();
+        }
+        BillJournal billJournal = BillJournal.isEnabledBySystemProperties()
+                ? new BillJournal(connectionPool, Path.of(BILL_JOURNAL_FILE)) : null;
+        if (billJournal != null) {
+            billJournal.start();
+        }
+        EventLog eventLog = new EventLog(Path.of(EVENT_LOG_DIRECTORY));
+        eventLog.seed(connectionPool);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (orderIntake != null) {
+                orderIntake.close();
+            }
+            if (billJournal != null) {
+                billJournal.close();
+            }
+            if (stockEngine != null) {
+                stockEngine.close();
+            }
+            eventLog.close();
+        }));
+        new Controller(view, connectionPool, stockEngine, orderIntake, billJournal, eventLog);
     }
 }
\ No newline at end of file
@@ -0,0 +1,661 @@
+package presentation;
+
+import business.AdmissionController;
+import business.ClientBLL;
+import business.IdempotencyIndex;
+import business.OrderIntake;
+import business.OrderMode;
+import business.ProductBLL;
+import business.PurchaseBLL;
+import business.RevenueReport;
+import business.SalesSummaryVerifier;
+import business.StockEngine;
+import business.TopSellers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import data.BillJournal;
+import data.ConnectionPool;
+import data.EventLog;
+import data.SchemaSetup;
+import models.Bill;
+import models.Client;
+import models.OrderLine;
+import models.Product;
+import models.ProductSales;
+import models.PurchaseResult;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * The OrderServer class is the headless entry point of the application.
+ * It exposes the client, product and purchase operations of the business logic layer over HTTP,
+ * with JSON request and response bodies, and handles every request on its own virtual thread.
+ * <p>
+ * Routes:
+ * <ul>
+ *     <li>{@code GET /clients}, {@code POST /clients}, {@code PUT /clients/{id}}, {@code DELETE /clients/{id}}</li>
+ *     <li>{@code GET /products}, {@code POST /products}, {@code PUT /products/{id}}, {@code DELETE /products/{id}}</li>
+ *     <li>{@code PUT /products/{id}/hot} with the number of stock buckets</li>
+ *     <li>{@code GET /purchases}, {@code POST /purchases} with client_id, product_id and quantity</li>
+ *     <li>{@code POST /orders} with client_id and lines of product_id and quantity</li>
+ *     <li>{@code GET /bills/{orderId}}</li>
+ *     <li>{@code GET /admission} with the metrics of the admission controller</li>
+ *     <li>{@code GET /top/products}, {@code GET /top/clients} with the best sellers of the last hour,
+ *     or of the window given as {@code window=LAST_DAY}</li>
+ *     <li>{@code GET /sales/products?from=2024-05-01&to=2024-06-01} with the units sold and revenue of every
+ *     product in the orders placed from the first day up to the second</li>
+ *     <li>{@code GET /sales/summary} with every difference between the sales summary tables and the totals
+ *     recomputed from the order history</li>
+ *     <li>{@code POST /reports/revenue?from=2024-05-01&to=2024-06-01} writing the daily, weekly and product
+ *     revenue of the bills issued in the period as CSV files into a directory under the report directory</li>
+ * </ul>
+ * List routes are paged with the {@code after} and {@code limit} query parameters. Purchases and orders
+ * posted with an {@code Idempotency-Key} header are created at most once per key.
+ * Every write passes an admission controller first; a write it turns away is answered with 503 at once.
+ */
+public class OrderServer implements AutoCloseable {
+
+    /**
+     * The default port the server listens on.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_TOP_SIZE = 10;
+    private static final int DEFAULT_MAX_QUEUED = 200;
+
+    /**
+     * The system property naming the directory revenue reports are written to; "reports" by default.
+     */
+    public static final String REPORT_DIRECTORY_PROPERTY = "reports.directory";
+
+    /**
+     * The system property setting the sustained number of writes admitted per second, for example
+     * {@code -Dadmission.rate=500}; without it writes are not rate limited.
+     */
+    public static final String ADMISSION_RATE_PROPERTY = "admission.rate";
+
+    /**
+     * The system property setting the number of writes admitted at once after an idle period;
+     * one second's worth of the rate by default.
+     */
+    public static final String ADMISSION_BURST_PROPERTY = "admission.burst";
+
+    /**
+     * The number of threads, and of connections, a revenue report reads its period with.
+     */
+    private static final int REPORT_PARALLELISM = 4;
+
+    private final ClientBLL clientBLL;
+    private final ProductBLL productBLL;
+    private final PurchaseBLL purchaseBLL;
+    private final SalesSummaryVerifier salesSummaryVerifier;
+    private final RevenueReport revenueReport;
+    private final Path reportDirectory;
+    private final AdmissionController admissionController;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs an OrderServer bound to the given port. The server does not accept requests until started.
+     *
+     * @param dataSource  the data source providing database connections
+     * @param stockEngine the stock engine tracking product stock in memory, or null
+     * @param orderIntake the order intake group-committing orders, or null
+     * @param billJournal the journal bills are written behind through, or null
+     * @param eventLog    the log orders and product changes are recorded in, or null
+     * @param admission   the admission controller writes must pass, or null to admit every write
+     * @param port        the port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public OrderServer(DataSource dataSource, StockEngine stockEngine, OrderIntake orderIntake, BillJournal billJournal,
+                       EventLog eventLog, AdmissionController admission, int port) throws IOException {
+        this.admissionController = admission;
+        this.clientBLL = new ClientBLL(dataSource);
+        this.productBLL = new ProductBLL(dataSource, stockEngine, eventLog);
+        this.purchaseBLL = new PurchaseBLL(dataSource, stockEngine, orderIntake, billJournal, eventLog,
+                new TopSellers(),
+                new IdempotencyIndex(IdempotencyIndex.DEFAULT_MAX_SIZE, IdempotencyIndex.DEFAULT_TTL_MILLIS));
+        this.salesSummaryVerifier = new SalesSummaryVerifier(dataSource);
+        this.revenueReport = new RevenueReport(dataSource);
+        this.reportDirectory = Path.of(System.getProperty(REPORT_DIRECTORY_PROPERTY, Controller.REPORT_DIRECTORY));
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/clients", exchange -> handle(exchange, this::clients));
+        server.createContext("/products", exchange -> handle(exchange, this::products));
+        server.createContext("/purchases", exchange -> handle(exchange, this::purchases));
+        server.createContext("/orders", exchange -> handle(exchange, this::orders));
+        server.createContext("/bills", exchange -> handle(exchange, this::bills));
+        server.createContext("/admission", exchange -> handle(exchange, this::admission));
+        server.createContext("/top", exchange -> handle(exchange, this::top));
+        server.createContext("/sales", exchange -> handle(exchange, this::sales));
+        server.createContext("/reports", exchange -> handle(exchange, this::reports));
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Gets the port the server listens on, which is chosen by the system if the server was bound to port 0.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for the requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Handles the requests of one route.
+     */
+    @FunctionalInterface
+    private interface Route {
+        Response handle(Request request);
+    }
+
+    /**
+     * A parsed request: the method, the path segments after the route, the query parameters
+     * and the value of the Idempotency-Key header.
+     */
+    private record Request(String method, List<String> path, Map<String, String> query, String body,
+                           String idempotencyKey) {
+
+        Map<String, Object> json() {
+            try {
+                return Json.parseObject(body);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid JSON: " + e.getMessage());
+            }
+        }
+
+        int pathId() {
+            if (path.isEmpty()) {
+                throw new BadRequestException("Missing ID in the path");
+            }
+            return parseInt("ID", path.get(0));
+        }
+
+        int queryInt(String name, int defaultValue) {
+            String value = query.get(name);
+            return value != null ? parseInt(name, value) : defaultValue;
+        }
+
+        Timestamp queryDay(String name) {
+            String value = query.get(name);
+            if (value == null) {
+                throw new BadRequestException(name + " is required");
+            }
+            try {
+                return Timestamp.valueOf(LocalDate.parse(value).atStartOfDay());
+            } catch (DateTimeParseException e) {
+                throw new BadRequestException(name + " must be a date like 2024-05-01");
+            }
+        }
+
+        int limit(int defaultValue) {
+            int limit = queryInt("limit", defaultValue);
+            if (limit <= 0) {
+                throw new BadRequestException("limit must be positive");
+            }
+            return limit;
+        }
+
+        private static int parseInt(String name, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException(name + " must be an integer");
+            }
+        }
+    }
+
+    /**
+     * Thrown while reading a request that is malformed or misses a field, and answered with 400.
+     * Any other exception is a bug and answered with 500.
+     */
+    private static final class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A response: the HTTP status and the value written as the JSON body.
+     */
+    private record Response(int status, Object body) {
+
+        static Response ok(Object body) {
+            return new Response(200, body);
+        }
+
+        static Response error(int status, Object code, String message) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("error", code);
+            body.put("message", message);
+            return new Response(status, body);
+        }
+    }
+
+    private static final Response NOT_FOUND = Response.error(404, 0, "Not found.");
+    private static final Response METHOD_NOT_ALLOWED = Response.error(405, 0, "Method not allowed.");
+    private static final Response OVERLOADED = Response.error(503, PurchaseResult.Failure.OVERLOADED,
+            "Too many requests, try again later.");
+
+    /**
+     * Runs a write if the admission controller admits it.
+     *
+     * @param write the write to run
+     * @return the response of the write, or 503 if it was not admitted
+     */
+    private Response admit(Supplier<Response> write) {
+        return admissionController != null ? admissionController.execute(write, OVERLOADED) : write.get();
+    }
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            response = route.handle(parse(exchange));
+        } catch (BadRequestException e) {
+            response = Response.error(400, 0, "Bad request: " + e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            response = Response.error(500, -4, "Unknown error occurred.");
+        }
+
+        byte[] bytes = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Request parse(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        String route = exchange.getHttpContext().getPath();
+        List<String> path = new ArrayList<>();
+        for (String segment : uri.getPath().substring(route.length()).split("/")) {
+            if (!segment.isEmpty()) {
+                path.add(segment);
+            }
+        }
+
+        Map<String, String> query = new HashMap<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    query.put(decode(parameter.substring(0, separator)), decode(parameter.substring(separator + 1)));
+                }
+            }
+        }
+
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        return new Request(exchange.getRequestMethod(), path, query, body,
+                exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+    }
+
+    private static String decode(String component) {
+        try {
+            return URLDecoder.decode(component, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid query parameter " + component);
+        }
+    }
+
+    private static int intField(Map<?, ?> json, String name) {
+        return numberField(json, name).intValue();
+    }
+
+    private static Number numberField(Map<?, ?> json, String name) {
+        if (!(json.get(name) instanceof Number number)) {
+            throw new BadRequestException(name + " must be a number");
+        }
+        return number;
+    }
+
+    private static String stringField(Map<?, ?> json, String name) {
+        if (!(json.get(name) instanceof String string)) {
+            throw new BadRequestException(name + " must be a string");
+        }
+        return string;
+    }
+
+    private static Response idResponse(String name, int id) {
+        Map<String, Object> body = new HashMap<>();
+        body.put(name, id);
+        return Response.ok(body);
+    }
+
+    private Response clients(Request request) {
+        switch (request.method()) {
+            case "GET" -> {
+                return Response.ok(clientBLL.getClientPage(request.queryInt("after", Integer.MIN_VALUE),
+                        request.limit(DEFAULT_PAGE_SIZE)));
+            }
+            case "POST" -> {
+                Client client = readClient(0, request.json());
+                return admit(() -> {
+                    int result = clientBLL.addClient(client);
+                    return result > 0 ? idResponse("client_id", result) : clientError(result);
+                });
+            }
+            case "PUT" -> {
+                Client client = readClient(request.pathId(), request.json());
+                return admit(() -> {
+                    int result = clientBLL.updateClient(client);
+                    return result == 0 ? idResponse("client_id", client.getId()) : clientError(result);
+                });
+            }
+            case "DELETE" -> {
+                int id = request.pathId();
+                return admit(() -> {
+                    int result = clientBLL.deleteClient(id);
+                    return result == 0 ? idResponse("client_id", id) : clientError(result);
+                });
+            }
+            default -> {
+                return METHOD_NOT_ALLOWED;
+            }
+        }
+    }
+
+    private static Client readClient(int id, Map<String, Object> json) {
+        return new Client(id, stringField(json, "name"), stringField(json, "email"), stringField(json, "phone"));
+    }
+
+    private static Response clientError(int result) {
+        return switch (result) {
+            case -1 -> Response.error(404, result, "Client not found.");
+            case -2 -> Response.error(400, result, "Invalid phone number.");
+            case -3 -> Response.error(400, result, "Invalid email.");
+            default -> Response.error(500, result, "Unknown error occurred.");
+        };
+    }
+
+    private Response products(Request request) {
+        switch (request.method()) {
+            case "GET" -> {
+                return Response.ok(productBLL.getProductPage(request.queryInt("after", Integer.MIN_VALUE),
+                        request.limit(DEFAULT_PAGE_SIZE)));
+            }
+            case "POST" -> {
+                Product product = readProduct(0, request.json());
+                return admit(() -> {
+                    int result = productBLL.addProduct(product);
+                    return result > 0 ? idResponse("product_id", result) : productError(result);
+                });
+            }
+            case "PUT" -> {
+                if (request.path().size() == 2 && request.path().get(1).equals("hot")) {
+                    int id = request.pathId();
+                    int buckets = intField(request.json(), "buckets");
+                    return admit(() -> {
+                        int result = productBLL.setHotProduct(id, buckets);
+                        if (result == -2) {
+                            return Response.error(400, result, "Invalid number of buckets.");
+                        }
+                        return result == 0 ? idResponse("product_id", id) : productError(result);
+                    });
+                }
+                Product product = readProduct(request.pathId(), request.json());
+                return admit(() -> {
+                    int result = productBLL.updateProduct(product);
+                    return result == 0 ? idResponse("product_id", product.getId()) : productError(result);
+                });
+            }
+            case "DELETE" -> {
+                int id = request.pathId();
+                return admit(() -> {
+                    int result = productBLL.deleteProduct(id);
+                    return result == 0 ? idResponse("product_id", id) : productError(result);
+                });
+            }
+            default -> {
+                return METHOD_NOT_ALLOWED;
+            }
+        }
+    }
+
+    private static Product readProduct(int id, Map<String, Object> json) {
+        return new Product(id, stringField(json, "name"), numberField(json, "price").doubleValue(),
+                intField(json, "stock"));
+    }
+
+    private static Response productError(int result) {
+        return switch (result) {
+            case -1 -> Response.error(404, result, "Product not found.");
+            case -2 -> Response.error(400, result, "Invalid price.");
+            default -> Response.error(500, result, "Unknown error occurred.");
+        };
+    }
+
+    private Response purchases(Request request) {
+        switch (request.method()) {
+            case "GET" -> {
+                return Response.ok(purchaseBLL.getPurchasePage(request.queryInt("after", Integer.MIN_VALUE),
+                        request.limit(DEFAULT_PAGE_SIZE)));
+            }
+            case "POST" -> {
+                Map<String, Object> json = request.json();
+                Client client = new Client(intField(json, "client_id"), null, null, null);
+                Product product = new Product(intField(json, "product_id"), null, 0, 0);
+                int quantity = intField(json, "quantity");
+                return admit(() -> orderResponse(purchaseBLL.createPurchase(client, product, quantity,
+                        request.idempotencyKey())));
+            }
+            default -> {
+                return METHOD_NOT_ALLOWED;
+            }
+        }
+    }
+
+    private Response orders(Request request) {
+        if (!request.method().equals("POST")) {
+            return METHOD_NOT_ALLOWED;
+        }
+        Map<String, Object> json = request.json();
+        if (!(json.get("lines") instanceof List<?> items)) {
+            throw new BadRequestException("lines must be an array");
+        }
+        List<OrderLine> lines = new ArrayList<>();
+        for (Object item : items) {
+            if (!(item instanceof Map<?, ?> fields)) {
+                throw new BadRequestException("Every line must be an object");
+            }
+            lines.add(new OrderLine(intField(fields, "product_id"), intField(fields, "quantity")));
+        }
+
+        Client client = new Client(intField(json, "client_id"), null, null, null);
+        return admit(() -> orderResponse(purchaseBLL.createOrder(client, lines, request.idempotencyKey())));
+    }
+
+    private Response admission(Request request) {
+        if (!request.method().equals("GET")) {
+            return METHOD_NOT_ALLOWED;
+        }
+        return admissionController != null ? Response.ok(admissionController.getMetrics()) : NOT_FOUND;
+    }
+
+    private Response top(Request request) {
+        if (!request.method().equals("GET")) {
+            return METHOD_NOT_ALLOWED;
+        }
+        PurchaseBLL.SalesWindow window;
+        try {
+            window = PurchaseBLL.SalesWindow.valueOf(
+                    request.query().getOrDefault("window", PurchaseBLL.SalesWindow.LAST_HOUR.name()));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown window");
+        }
+        int limit = request.limit(DEFAULT_TOP_SIZE);
+        if (request.path().isEmpty()) {
+            return NOT_FOUND;
+        }
+        return switch (request.path().get(0)) {
+            case "products" -> Response.ok(purchaseBLL.getTopProducts(window, limit));
+            case "clients" -> Response.ok(purchaseBLL.getTopClients(window, limit));
+            default -> NOT_FOUND;
+        };
+    }
+
+    private Response sales(Request request) {
+        if (!request.method().equals("GET")) {
+            return METHOD_NOT_ALLOWED;
+        }
+        if (request.path().size() != 1) {
+            return NOT_FOUND;
+        }
+        return switch (request.path().get(0)) {
+            case "products" -> {
+                List<ProductSales> sales = purchaseBLL.getProductSalesBetween(request.queryDay("from"),
+                        request.queryDay("to"));
+                yield sales != null ? Response.ok(sales) : Response.error(500, -4, "Unknown error occurred.");
+            }
+            case "summary" -> Response.ok(salesSummaryVerifier.verify());
+            default -> NOT_FOUND;
+        };
+    }
+
+    private Response reports(Request request) {
+        if (request.path().size() != 1 || !request.path().get(0).equals("revenue")) {
+            return NOT_FOUND;
+        }
+        if (!request.method().equals("POST")) {
+            return METHOD_NOT_ALLOWED;
+        }
+        Timestamp from = request.queryDay("from");
+        Timestamp to = request.queryDay("to");
+        if (!from.before(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        Path directory = reportDirectory.resolve(
+                "revenue-" + request.query().get("from") + "-" + request.query().get("to"));
+        return admit(() -> {
+            RevenueReport.Result result = revenueReport.compute(from, to, REPORT_PARALLELISM);
+            if (result == null || !revenueReport.write(result, directory)) {
+                return Response.error(500, -4, "Unknown error occurred.");
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("directory", directory.toAbsolutePath().toString());
+            summary.put("orders", result.getOverall().getOrders());
+            summary.put("revenue", result.getOverall().getCents() / 100.0);
+            return Response.ok(summary);
+        });
+    }
+
+    private Response bills(Request request) {
+        if (!request.method().equals("GET")) {
+            return METHOD_NOT_ALLOWED;
+        }
+        Bill bill = purchaseBLL.findBill(request.pathId());
+        return bill != null ? Response.ok(bill) : NOT_FOUND;
+    }
+
+    private static Response orderResponse(PurchaseResult result) {
+        if (result.isSuccess()) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("order_id", result.orderId());
+            body.put("bill", result.bill());
+            return Response.ok(body);
+        }
+        return switch (result.failure()) {
+            case OUT_OF_STOCK -> Response.error(409, result.failure(), "Not enough products available.");
+            case PRODUCT_NOT_FOUND -> Response.error(404, result.failure(), "Product not found.");
+            case CLIENT_NOT_FOUND -> Response.error(404, result.failure(), "Client not found.");
+            case INVALID_QUANTITY -> Response.error(400, result.failure(), "Invalid quantity.");
+            case EMPTY_ORDER -> Response.error(400, result.failure(), "The order has no lines.");
+            case OVERLOADED -> Response.error(503, result.failure(), "Too many orders, try again later.");
+            case ERROR -> Response.error(500, result.failure(), "Unknown error occurred.");
+        };
+    }
+
+    /**
+     * Starts the application in headless mode.
+     *
+     * @param args the command line arguments; the optional first argument is the port
+     * @throws IOException if the port cannot be bound or the bill journal or event log cannot be opened
+     * @throws IllegalArgumentException if the admission rate or burst is invalid
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        ConnectionPool connectionPool = new ConnectionPool(Controller.URL, Controller.USER, Controller.PASSWORD,
+                ConnectionPool.DEFAULT_MAX_SIZE);
+        SchemaSetup.apply(connectionPool);
+        OrderMode orderMode = OrderMode.fromSystemProperties();
+        StockEngine stockEngine = orderMode == OrderMode.STOCK_ENGINE ? new StockEngine(connectionPool) : null;
+        if (stockEngine != null) {
+            stockEngine.start();
+        }
+        OrderIntake orderIntake = orderMode == OrderMode.GROUP_COMMIT ? new OrderIntake(connectionPool) : null;
+        if (orderIntake != null) {
+            orderIntake.start();
+        }
+        BillJournal billJournal = BillJournal.isEnabledBySystemProperties()
+                ? new BillJournal(connectionPool, Path.of(Controller.BILL_JOURNAL_FILE)) : null;
+        if (billJournal != null) {
+            billJournal.start();
+        }
+        EventLog eventLog = new EventLog(Path.of(Controller.EVENT_LOG_DIRECTORY));
+        eventLog.seed(connectionPool);
+        double rate = Double.parseDouble(System.getProperty(ADMISSION_RATE_PROPERTY, "0"));
+        int burst = Integer.getInteger(ADMISSION_BURST_PROPERTY, (int) Math.ceil(rate));
+        AdmissionController admission = new AdmissionController(1, ConnectionPool.DEFAULT_MAX_SIZE,
+                DEFAULT_MAX_QUEUED, AdmissionController.DEFAULT_QUEUE_TIMEOUT_MILLIS, rate, burst);
+        OrderServer server = new OrderServer(connectionPool, stockEngine, orderIntake, billJournal, eventLog,
+                admission, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            if (orderIntake != null) {
+                orderIntake.close();
+            }
+            if (billJournal != null) {
+                billJournal.close();
+            }
+            if (stockEngine != null) {
+                stockEngine.close();
+            }
+            eventLog.close();
+            connectionPool.close();
+        }));
+        server.start();
+        System.out.println("Order server listening on port " + port);
+    }
+}
@@ -0,0 +1,99 @@
+package presentation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * The TablePager class shows a table one page at a time, ordered by primary key.
+ * Pages are loaded with keyset queries, so only the rows of the page shown are read. The start key of
+ * every page passed is kept, so that the previous page can be loaded again.
+ *
+ * @param <T> the type of the rows
+ */
+class TablePager<T> {
+
+    /**
+     * The number of rows shown per page.
+     */
+    static final int PAGE_SIZE = 100;
+
+    private final BiFunction<Integer, Integer, List<T>> loader;
+    private final ToIntFunction<T> keyOf;
+    private final Consumer<List<Object>> display;
+    private final Deque<Integer> previousStarts = new ArrayDeque<>();
+    private int start = Integer.MIN_VALUE;
+    private int lastKey = Integer.MIN_VALUE;
+    private boolean full;
+
+    /**
+     * Constructs a TablePager positioned before the first page.
+     *
+     * @param loader  loads the rows after a key, given the key and the maximum number of rows
+     * @param keyOf   gets the primary key of a row
+     * @param display shows the rows of a page
+     */
+    TablePager(BiFunction<Integer, Integer, List<T>> loader, ToIntFunction<T> keyOf, Consumer<List<Object>> display) {
+        this.loader = loader;
+        this.keyOf = keyOf;
+        this.display = display;
+    }
+
+    /**
+     * Shows the first page.
+     */
+    void first() {
+        previousStarts.clear();
+        start = Integer.MIN_VALUE;
+        load();
+    }
+
+    /**
+     * Shows the current page again, after its rows were changed.
+     */
+    void reload() {
+        load();
+    }
+
+    /**
+     * Shows the next page, if the current page is full.
+     */
+    void next() {
+        if (!full) {
+            return;
+        }
+        previousStarts.push(start);
+        start = lastKey;
+        load();
+    }
+
+    /**
+     * Shows the previous page, if there is one.
+     */
+    void previous() {
+        if (previousStarts.isEmpty()) {
+            return;
+        }
+        start = previousStarts.pop();
+        load();
+    }
+
+    /**
+     * Loads and shows the page starting after the current start key.
+     * A page left empty by deleted rows falls back to the page before it.
+     */
+    private void load() {
+        List<T> page = loader.apply(start, PAGE_SIZE);
+        while (page.isEmpty() && !previousStarts.isEmpty()) {
+            start = previousStarts.pop();
+            page = loader.apply(start, PAGE_SIZE);
+        }
+        full = page.size() == PAGE_SIZE;
+        lastKey = page.isEmpty() ? start : keyOf.applyAsInt(page.get(page.size() - 1));
+        display.accept(new ArrayList<>(page));
+    }
+}
@@ -108,18 +108,23 @@ public class View {
     }
 
     /**
-     * Displays the window for managing clients with buttons to add, delete, edit, and view all clients.
+     * Displays the window for managing clients with buttons to add, delete, edit, and view clients,
+     * and to move between the pages of the clients table.
      *
      * @param clientAddButtonListener   the action listener for the add client button
      * @param clientDeleteButtonListener the action listener for the delete client button
      * @param clientEditButtonListener   the action listener for the edit client button
-     * @param clientViewAllButtonListener the action listener for the view all clients button
+     * @param clientViewAllButtonListener the action listener for the view clients button
+     * @param previousPageListener      the action listener for the previous page button
+     * @param nextPageListener          the action listener for the next page button
      * @param columnNames               the column names for the clients table
      */
     public void displayClientsWindow(ActionListener clientAddButtonListener,
                                      ActionListener clientDeleteButtonListener,
                                      ActionListener clientEditButtonListener,
                                      ActionListener clientViewAllButtonListener,
+                                     ActionListener previousPageListener,
+                                     ActionListener nextPageListener,
                                      String[] columnNames) {
         JFrame clientsFrame = createClientsFrame();
         JPanel clientsPanel = new JPanel(new BorderLayout());
@@ -149,6 +154,7 @@ public class View {
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
         clientsPanel.add(tablePanel, BorderLayout.CENTER);
+        clientsPanel.add(createPagePanel(previousPageListener, nextPageListener), BorderLayout.SOUTH);
 
         table.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -232,13 +238,13 @@ public class View {
     }
 
     /**
-     * Creates a button for viewing all clients.
+     * Creates a button for viewing the first page of clients.
      *
-     * @param clientViewAllButtonListener the action listener for the view all clients button
-     * @return the created view all button
+     * @param clientViewAllButtonListener the action listener for the view clients button
+     * @return the created view button
      */
     private JButton createViewAllButtonClients(ActionListener clientViewAllButtonListener) {
-        JButton viewAllButton = new JButton("View All Clients");
+        JButton viewAllButton = new JButton("View Clients");
         viewAllButton.addActionListener(clientViewAllButtonListener);
         return viewAllButton;
     }
@@ -365,30 +371,35 @@ public class View {
     }
 
     /**
-     * Creates a button for viewing all products.
+     * Creates a button for viewing the first page of products.
      *
-     * @param productViewAllButtonListener the action listener for the view all products button
-     * @return the created view all button
+     * @param productViewAllButtonListener the action listener for the view products button
+     * @return the created view button
      */
     private JButton createViewAllButtonProduct(ActionListener productViewAllButtonListener) {
-        JButton viewAllButton = new JButton("View All Products");
+        JButton viewAllButton = new JButton("View Products");
         viewAllButton.addActionListener(productViewAllButtonListener);
         return viewAllButton;
     }
 
     /**
-     * Displays the window for managing products with buttons to add, delete, edit, and view all products.
+     * Displays the window for managing products with buttons to add, delete, edit, and view products,
+     * and to move between the pages of the products table.
      *
      * @param productAddButtonListener    the action listener for the add product button
      * @param productDeleteButtonListener the action listener for the delete product button
      * @param productEditButtonListener   the action listener for the edit product button
-     * @param productViewAllButtonListener the action listener for the view all products button
+     * @param productViewAllButtonListener the action listener for the view products button
+     * @param previousPageListener        the action listener for the previous page button
+     * @param nextPageListener            the action listener for the next page button
      * @param columnNames                 the column names for the products table
      */
     public void displayProductsWindow(ActionListener productAddButtonListener,
                                       ActionListener productViewAllButtonListener,
                                       ActionListener productDeleteButtonListener,
                                       ActionListener productEditButtonListener,
+                                      ActionListener previousPageListener,
+                                      ActionListener nextPageListener,
                                       String[] columnNames) {
         JFrame productsFrame = createProductsFrame();
         JPanel productsPanel = new JPanel(new BorderLayout());
@@ -418,6 +429,7 @@ public class View {
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
         productsPanel.add(tablePanel, BorderLayout.CENTER);
+        productsPanel.add(createPagePanel(previousPageListener, nextPageListener), BorderLayout.SOUTH);
 
         table.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -444,6 +456,25 @@ public class View {
         productsFrame.setVisible(true);
     }
 
+    /**
+     * Creates a panel with buttons for moving to the previous and the next page of a table.
+     *
+     * @param previousPageListener the action listener for the previous page button
+     * @param nextPageListener     the action listener for the next page button
+     * @return the created page panel
+     */
+    private JPanel createPagePanel(ActionListener previousPageListener, ActionListener nextPageListener) {
+        JPanel pagePanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
+        JButton previousButton = new JButton("Previous");
+        previousButton.addActionListener(previousPageListener);
+        pagePanel.add(previousButton);
+
+        JButton nextButton = new JButton("Next");
+        nextButton.addActionListener(nextPageListener);
+        pagePanel.add(nextButton);
+        return pagePanel;
+    }
+
     /**
      * Creates a new JFrame for managing products.
      *
@@ -567,11 +598,21 @@ public class View {
      * @param orderAddButtonListener    ActionListener for the "Add New Order" button.
      * @param orderViewAllButtonListener ActionListener for the "View All Orders" button.
      * @param viewAllBillsButtonListener ActionListener for the "View All Bills" button.
+     * @param clientPreviousListener     ActionListener for the "Previous" button of the client table.
+     * @param clientNextListener         ActionListener for the "Next" button of the client table.
+     * @param productPreviousListener    ActionListener for the "Previous" button of the product table.
+     * @param productNextListener        ActionListener for the "Next" button of the product table.
+     * @param purchasePreviousListener   ActionListener for the "Previous" button of the purchase table.
+     * @param purchaseNextListener       ActionListener for the "Next" button of the purchase table.
      * @param clientColumnNames          Column names for the client table.
      * @param productColumnNames         Column names for the product table.
      * @param purchaseColumnNames        Column names for the purchase table.
      */
-    public void displayPurchaseWindow(ActionListener orderAddButtonListener, ActionListener orderViewAllButtonListener, ActionListener viewAllBillsButtonListener, String[] clientColumnNames, String[] productColumnNames, String[] purchaseColumnNames) {
+    public void displayPurchaseWindow(ActionListener orderAddButtonListener, ActionListener orderViewAllButtonListener, ActionListener viewAllBillsButtonListener,
+                                      ActionListener clientPreviousListener, ActionListener clientNextListener,
+                                      ActionListener productPreviousListener, ActionListener productNextListener,
+                                      ActionListener purchasePreviousListener, ActionListener purchaseNextListener,
+                                      String[] clientColumnNames, String[] productColumnNames, String[] purchaseColumnNames) {
         JFrame purchaseFrame = new JFrame("Manage Orders");
         purchaseFrame.setSize(900, 600);
         purchaseFrame.setLocationRelativeTo(frame);
@@ -614,6 +655,7 @@ public class View {
         });
         JScrollPane clientScrollPane = new JScrollPane(clientTable);
         purchasePanel.add(clientScrollPane);
+        purchasePanel.add(createPagePanel(clientPreviousListener, clientNextListener));
 
         productTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -626,11 +668,13 @@ public class View {
         });
         JScrollPane productScrollPane = new JScrollPane(productTable);
         purchasePanel.add(productScrollPane);
+        purchasePanel.add(createPagePanel(productPreviousListener, productNextListener));
 
         model = new DefaultTableModel(purchaseColumnNames, 0);
         JTable purchaseTable = new JTable(model);
         JScrollPane purchaseScrollPane = new JScrollPane(purchaseTable);
         purchasePanel.add(purchaseScrollPane);
+        purchasePanel.add(createPagePanel(purchasePreviousListener, purchaseNextListener));
 
         purchaseFrame.setVisible(true);
     }
@@ -694,24 +738,47 @@ public class View {
     public void populateTable(DefaultTableModel model, List<Object> objects) {
         model.setRowCount(0);
 
-        if (!objects.isEmpty()) {
-            Class<?> clazz = objects.get(0).getClass();
+        for (Object object : objects) {
+            addObjectRow(model, object);
+        }
+    }
 
-            for (Object object : objects) {
-                Object[] rowData = new Object[model.getColumnCount()];
-                for (int i = 0; i < model.getColumnCount(); i++) {
-                    try {
-                        String columnName = model.getColumnName(i);
-                        java.lang.reflect.Field field = clazz.getDeclaredField(columnName);
-                        field.setAccessible(true);
-                        rowData[i] = field.get(object);
-                    } catch (NoSuchFieldException | IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                }
-                model.addRow(rowData);
+    /**
+     * Clears the table used to display all objects.
+     */
+    public void clearTable() {
+        model.setRowCount(0);
+    }
+
+    /**
+     * Appends one object as a row of the table used to display all objects.
+     *
+     * @param object The object to append.
+     */
+    public void appendToTable(Object object) {
+        addObjectRow(model, object);
+    }
+
+    /**
+     * Adds an object as a row of a table, matching the table columns to the object fields.
+     *
+     * @param model  The table model to add the row to.
+     * @param object The object to add.
+     */
+    private void addObjectRow(DefaultTableModel model, Object object) {
+        Class<?> clazz = object.getClass();
+        Object[] rowData = new Object[model.getColumnCount()];
+        for (int i = 0; i < model.getColumnCount(); i++) {
+            try {
+                String columnName = model.getColumnName(i);
+                java.lang.reflect.Field field = clazz.getDeclaredField(columnName);
+                field.setAccessible(true);
+                rowData[i] = field.get(object);
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                e.printStackTrace();
             }
         }
+        model.addRow(rowData);
     }
 
     /**
@@ -0,0 +1,145 @@
+package business;
+
+import business.AdmissionController.Decision;
+import business.AdmissionController.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private static final long LONG_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private static void complete(AdmissionController controller, long latencyMillis) {
+        assertEquals(Decision.ADMITTED, controller.acquire());
+        controller.release(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+
+    private static void awaitWaiting(AdmissionController controller, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (controller.getMetrics().waiting() < waiting) {
+            assertTrue(System.nanoTime() < deadline, "no request started waiting");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void tokenBucketRefillsAtTheRateUpToTheBurst() {
+        AdmissionController controller = new AdmissionController(4, 4, 0, 0, 10, 2, now::get);
+        complete(controller, 1);
+        complete(controller, 1);
+        assertEquals(Decision.RATE_LIMITED, controller.acquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(Decision.RATE_LIMITED, controller.acquire());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        complete(controller, 1);
+        assertEquals(Decision.RATE_LIMITED, controller.acquire());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        complete(controller, 1);
+        complete(controller, 1);
+        assertEquals(Decision.RATE_LIMITED, controller.acquire());
+        assertEquals(new Metrics(5, 0, 4, 0, 0, 0, 0, 4, 0), controller.getMetrics());
+    }
+
+    @Test
+    void saturatedControllerRejectsWithQueueFullAndTimedOut() throws Exception {
+        AdmissionController controller = new AdmissionController(1, 1, 1, 100, 0, 0);
+        assertEquals(Decision.ADMITTED, controller.acquire());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Decision> queued = executor.submit(controller::acquire);
+            awaitWaiting(controller, 1);
+            assertEquals(Decision.QUEUE_FULL, controller.acquire());
+            assertEquals(Decision.TIMED_OUT, queued.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        Metrics metrics = controller.getMetrics();
+        assertEquals(new Metrics(1, 1, 0, 1, 1, 1, 0, 1, 0), metrics);
+        assertEquals(2, metrics.rejected());
+    }
+
+    @Test
+    void releaseWakesTheLongestWaitingRequest() throws Exception {
+        AdmissionController controller = new AdmissionController(1, 1, 2, LONG_WAIT_MILLIS, 0, 0);
+        assertEquals(Decision.ADMITTED, controller.acquire());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Decision> first = executor.submit(controller::acquire);
+            awaitWaiting(controller, 1);
+            Future<Decision> second = executor.submit(controller::acquire);
+            awaitWaiting(controller, 2);
+
+            controller.release(0);
+            assertEquals(Decision.ADMITTED, first.get(5, TimeUnit.SECONDS));
+            assertFalse(second.isDone());
+            assertEquals(1, controller.getMetrics().waiting());
+
+            controller.release(0);
+            assertEquals(Decision.ADMITTED, second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(new Metrics(3, 2, 0, 0, 0, 1, 0, 1, 0), controller.getMetrics());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRisesAndGrowsBackOnceItSettles() {
+        AdmissionController controller = new AdmissionController(2, 10, 0, 0, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            complete(controller, 1);
+        }
+        assertEquals(10, controller.getMetrics().limit());
+
+        complete(controller, 10);
+        assertEquals(10, controller.getMetrics().limit());
+        complete(controller, 10);
+        assertEquals(9, controller.getMetrics().limit());
+        complete(controller, 10);
+        assertEquals(9, controller.getMetrics().limit(), "backs off once per window");
+
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < 300; i++) {
+            complete(controller, 50);
+            lowest = Math.min(lowest, controller.getMetrics().limit());
+        }
+        assertEquals(2, lowest, "backs off down to the minimum and no further");
+        assertEquals(10, controller.getMetrics().limit(), "the baseline drifts up to a steady latency");
+        assertEquals(50, controller.getMetrics().latencyMillis(), 1);
+    }
+
+    @Test
+    void executeReturnsTheRejectedResultWithoutRunningTheRequest() {
+        AdmissionController controller = new AdmissionController(1, 0);
+        assertEquals(Decision.ADMITTED, controller.acquire());
+        assertEquals("rejected", controller.execute(() -> "ran", "rejected"));
+
+        controller.release(0);
+        assertEquals("ran", controller.execute(() -> "ran", "rejected"));
+        assertEquals(new Metrics(2, 0, 0, 1, 0, 0, 0, 1, 0), controller.getMetrics());
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(0, 1, 0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(2, 1, 0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(1, 1, -1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(1, 1, 0, 0, 10, 0));
+    }
+}
@@ -0,0 +1,58 @@
+package business;
+
+import data.ClientDAO;
+import data.ConnectionPool;
+import data.TestDatabase;
+import models.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientBLLTest {
+
+    private ConnectionPool pool;
+    private ClientBLL clientBLL;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        clientBLL = new ClientBLL(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void mixedBatchKeepsInputOrder() {
+        int existing = clientBLL.addClient(new Client(0, "Ana", "ana@example.com", "0712345678"));
+
+        int[] results = clientBLL.addClients(List.of(new Client(0, "Bob", "bob@example.com", "0712345678"),
+                new Client(existing, "Ana", "ana@example.com", "0712345678"),
+                new Client(0, "Cid", "cid@example.com", "07123"),
+                new Client(0, "Dan", "not an email", "0712345678"),
+                new Client(0, "Eve", "eve@example.com", "0712345678")));
+        assertEquals(-1, results[1]);
+        assertEquals(-2, results[2]);
+        assertEquals(-3, results[3]);
+        assertTrue(existing < results[0] && results[0] < results[4]);
+        assertEquals("Bob", new ClientDAO(pool, null).findObject(results[0], Client.class).getName());
+        assertEquals("Eve", new ClientDAO(pool, null).findObject(results[4], Client.class).getName());
+    }
+
+    @Test
+    void failedInsertIsNotReportedAsAnExistingClient() {
+        int[] results = clientBLL.addClients(List.of(new Client(0, "Bob", "bob@example.com", "0712345678"),
+                new Client(0, "x".repeat(101), "x@example.com", "0712345678")));
+
+        assertArrayEquals(new int[]{-4, -4}, results);
+        assertEquals(0, new ClientDAO(pool, null).getAllObjects().size());
+    }
+}
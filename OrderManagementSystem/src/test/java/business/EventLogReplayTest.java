@@ -0,0 +1,171 @@
+package business;
+
+import data.ConnectionPool;
+import data.EventLog;
+import data.LogDAO;
+import data.ProductDAO;
+import data.TestDatabase;
+import models.Bill;
+import models.Client;
+import models.OrderLine;
+import models.Product;
+import models.PurchaseResult;
+import models.PurchaseResult.Failure;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogReplayTest {
+
+    private static final int SEGMENT_RECORDS = 16;
+    private static final int CHUNK_RECORDS = 5;
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private EventLog eventLog;
+    private ProductBLL productBLL;
+    private PurchaseBLL purchaseBLL;
+    private Client client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = TestDatabase.create();
+        client = new Client(0, "Ana", "ana@example.com", "0712345678");
+        client.setId(new ClientBLL(pool).addClient(client));
+        eventLog = new EventLog(directory, SEGMENT_RECORDS, CHUNK_RECORDS);
+        productBLL = new ProductBLL(pool, null, eventLog);
+        purchaseBLL = new PurchaseBLL(pool, null, null, eventLog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventLog.close();
+        pool.close();
+    }
+
+    private int addProduct(ProductBLL bll, String name, double price, int stock) {
+        int id = bll.addProduct(new Product(0, name, price, stock));
+        assertTrue(id > 0);
+        return id;
+    }
+
+    private void buy(int productId, int quantity) {
+        PurchaseResult result = purchaseBLL.createPurchase(client, new Product(productId, null, 0, 0), quantity);
+        assertTrue(result.isSuccess(), result.toString());
+    }
+
+    private void order(OrderLine... lines) {
+        PurchaseResult result = purchaseBLL.createOrder(client, List.of(lines));
+        assertTrue(result.isSuccess(), result.toString());
+    }
+
+    private static List<Bill> sorted(List<Bill> bills) {
+        List<Bill> copy = new ArrayList<>(bills);
+        copy.sort(Comparator.comparingInt(Bill::orderId));
+        return copy;
+    }
+
+    /**
+     * Drives every kind of change through the business layer: a product that existed before the log was
+     * seeded, products added, restocked, repriced and deleted, single-line and multi-line orders and
+     * refused orders, which must leave no events.
+     *
+     * @return the IDs of the products, the deleted one last
+     */
+    private int[] recordHistory() {
+        int seeded = addProduct(new ProductBLL(pool), "Desk", 200, 40);
+        eventLog.seed(pool);
+        int lamp = addProduct(productBLL, "Lamp", 10, 30);
+        int chair = addProduct(productBLL, "Chair", 50, 20);
+        int shelf = addProduct(productBLL, "Shelf", 80, 10);
+
+        for (int i = 0; i < 12; i++) {
+            buy(lamp, 1 + i % 3);
+            order(new OrderLine(seeded, 1), new OrderLine(chair, 1 + i % 2));
+            if (i == 4) {
+                assertEquals(0, productBLL.updateProduct(new Product(lamp, "Lamp", 12, 60)));
+                assertEquals(0, productBLL.updateProduct(new Product(chair, "Chair", 55, 30)));
+            }
+            if (i == 7) {
+                assertEquals(0, productBLL.updateProduct(new Product(seeded, "Desk", 180, 30)));
+                buy(shelf, 2);
+            }
+        }
+        assertEquals(Failure.OUT_OF_STOCK, purchaseBLL.createOrder(client,
+                List.of(new OrderLine(lamp, 1), new OrderLine(chair, 1000))).failure());
+        assertEquals(0, productBLL.updateProduct(new Product(shelf, "Shelf", 85, 8)));
+        assertEquals(0, productBLL.deleteProduct(shelf));
+        return new int[]{seeded, lamp, chair, shelf};
+    }
+
+    @Test
+    void replayRebuildsTheStockPricesAndBillsOfEveryProductAndOrder() throws Exception {
+        int[] ids = recordHistory();
+        AtomicLong events = new AtomicLong();
+        eventLog.forEachEvent(event -> events.incrementAndGet());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 2);
+        }
+        assertTrue(events.get() > 4 * SEGMENT_RECORDS, String.valueOf(events.get()));
+
+        ProductDAO productDAO = new ProductDAO(pool, null);
+        List<Bill> bills = sorted(new LogDAO(pool).getAllBills());
+        assertEquals(25, bills.size());
+        for (int parallelism : new int[]{1, 3}) {
+            EventLog.Replay replay = eventLog.replay(parallelism);
+            assertEquals(events.get(), replay.events());
+            assertEquals(0, replay.corrupted());
+            assertEquals(ids.length, replay.products().size());
+            for (int i = 0; i < ids.length - 1; i++) {
+                Product product = productDAO.findObject(ids[i], Product.class);
+                assertEquals(new EventLog.ProductState(product.getStock(), product.getPrice()),
+                        replay.products().get(ids[i]));
+            }
+            assertEquals(new EventLog.ProductState(0, 85), replay.products().get(ids[ids.length - 1]));
+            assertEquals(bills, sorted(replay.bills()));
+        }
+    }
+
+    @Test
+    void rebuildRestoresLostStockAndBillsExactly() throws Exception {
+        int[] ids = recordHistory();
+        ProductDAO productDAO = new ProductDAO(pool, null);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < ids.length - 1; i++) {
+            products.add(productDAO.findObject(ids[i], Product.class));
+        }
+        List<Bill> bills = sorted(new LogDAO(pool).getAllBills());
+
+        assertTrue(productDAO.setStocks(new int[]{ids[0], ids[1], ids[2]}, new int[]{0, 999, 7}));
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM Log WHERE MOD(order_id, 3) = 0");
+        }
+        assertTrue(new LogDAO(pool).getAllBills().size() < bills.size());
+
+        for (int round = 0; round < 2; round++) {
+            eventLog.rebuild(pool, 2);
+            for (Product product : products) {
+                assertEquals(product.getStock(), productDAO.findObject(product.getId(), Product.class).getStock());
+            }
+            assertNull(productDAO.findObject(ids[ids.length - 1], Product.class));
+            assertEquals(bills, sorted(new LogDAO(pool).getAllBills()));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package business;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHittersTest {
+
+    @Test
+    void countsAreExactWhileKeysFitTheCapacity() {
+        HeavyHitters hitters = new HeavyHitters(10, 1000, 10);
+        hitters.add(1, 5, 0);
+        hitters.add(2, 7, 0);
+        hitters.add(3, 1, 0);
+        hitters.add(1, 4, 50);
+
+        assertEquals(List.of(new HeavyHitters.Entry(1, 9, 0), new HeavyHitters.Entry(2, 7, 0)),
+                hitters.top(2, 50));
+    }
+
+    @Test
+    void heavyKeySurvivesManyLightKeys() {
+        HeavyHitters hitters = new HeavyHitters(16, 1000, 1);
+        for (int i = 0; i < 10_000; i++) {
+            hitters.add(100 + i, 1, 0);
+            if (i % 10 == 0) {
+                hitters.add(1, 1, 0);
+            }
+        }
+
+        HeavyHitters.Entry top = hitters.top(1, 0).get(0);
+        assertEquals(1, top.key());
+        assertTrue(top.weight() >= 1000, top.toString());
+        assertTrue(top.weight() - top.error() <= 1000, top.toString());
+    }
+
+    @Test
+    void slicesOlderThanTheWindowAreDropped() {
+        HeavyHitters hitters = new HeavyHitters(10, 1000, 10);
+        hitters.add(1, 3, 0);
+        hitters.add(2, 2, 950);
+
+        assertEquals(2, hitters.top(10, 950).size());
+        assertEquals(List.of(new HeavyHitters.Entry(2, 2, 0)), hitters.top(10, 1500));
+        assertEquals(List.of(), hitters.top(10, 2000));
+
+        hitters.add(3, 1, 2000);
+        hitters.add(1, 1, 500);
+        assertEquals(List.of(new HeavyHitters.Entry(3, 1, 0)), hitters.top(10, 2000));
+    }
+
+    @Test
+    void invalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(0, 1000, 10));
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(10, 1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(10, 5, 10));
+    }
+}
@@ -0,0 +1,87 @@
+package business;
+
+import data.ConnectionPool;
+import data.TestDatabase;
+import models.Client;
+import models.Product;
+import models.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the order throughput of 32 threads placing single-product orders, each in its own transaction
+ * or group-committed by the OrderIntake.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class OrderIntakeBenchmark {
+
+    private static final int PRODUCTS = 100;
+
+    private ConnectionPool pool;
+    private OrderIntake intake;
+    private PurchaseBLL direct;
+    private PurchaseBLL grouped;
+    private Client client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = TestDatabase.create();
+        client = new Client(0, "Ana", "ana@example.com", "0712345678");
+        client.setId(new ClientBLL(pool).addClient(client));
+        ProductBLL productBLL = new ProductBLL(pool);
+        for (int i = 0; i < PRODUCTS; i++) {
+            productBLL.addProduct(new Product(0, "Product " + i, 10, Integer.MAX_VALUE / 2));
+        }
+        intake = new OrderIntake(pool);
+        intake.start();
+        direct = new PurchaseBLL(pool);
+        grouped = new PurchaseBLL(pool, null, intake, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        intake.close();
+        pool.close();
+    }
+
+    private static Product anyProduct() {
+        return new Product(ThreadLocalRandom.current().nextInt(PRODUCTS) + 1, null, 0, 0);
+    }
+
+    @Benchmark
+    public PurchaseResult directCommit() {
+        return direct.createPurchase(client, anyProduct(), 1);
+    }
+
+    @Benchmark
+    public PurchaseResult groupCommit() {
+        return grouped.createPurchase(client, anyProduct(), 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderIntakeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,170 @@
+package business;
+
+import data.ConnectionPool;
+import data.ProductDAO;
+import data.TestDatabase;
+import models.Client;
+import models.Product;
+import models.PurchaseResult;
+import models.PurchaseResult.Failure;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderIntakeTest {
+
+    private ConnectionPool pool;
+    private Client client;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        client = new Client(0, "Ana", "ana@example.com", "0712345678");
+        client.setId(new ClientBLL(pool).addClient(client));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private Product addProduct(int stock) {
+        Product product = new Product(0, "Lamp", 10, stock);
+        product.setId(new ProductBLL(pool).addProduct(product));
+        return product;
+    }
+
+    @Test
+    void groupCommitNeverOversells() throws Exception {
+        Product product = addProduct(50);
+        List<CompletableFuture<PurchaseResult>> results = new ArrayList<>();
+        try (OrderIntake intake = new OrderIntake(pool, 1024, 64, 2, 4)) {
+            intake.start();
+            for (int i = 0; i < 200; i++) {
+                results.add(intake.submit(client.getId(), product.getId(), 1));
+            }
+            int sold = 0;
+            for (CompletableFuture<PurchaseResult> result : results) {
+                PurchaseResult purchase = result.get(10, TimeUnit.SECONDS);
+                if (purchase.isSuccess()) {
+                    sold++;
+                } else {
+                    assertEquals(Failure.OUT_OF_STOCK, purchase.failure());
+                }
+            }
+            assertEquals(50, sold);
+        }
+        assertEquals(0, new ProductDAO(pool, null).getStock(product.getId()));
+        assertEquals(50, new PurchaseBLL(pool).getAllBills().size());
+    }
+
+    @Test
+    void writerSurvivesAFailedGroup() throws Exception {
+        Product product = addProduct(10);
+        AtomicBoolean broken = new AtomicBoolean(true);
+        DataSource failing = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection") && Thread.currentThread().getName().equals("order-writer")
+                            && broken.getAndSet(false)) {
+                        throw new IllegalStateException("connection refused");
+                    }
+                    try {
+                        return method.invoke(pool, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        try (OrderIntake intake = new OrderIntake(failing, 1024, 64, 2, 1)) {
+            intake.start();
+            assertEquals(Failure.ERROR,
+                    intake.submit(client.getId(), product.getId(), 1).get(10, TimeUnit.SECONDS).failure());
+
+            assertTrue(intake.submit(client.getId(), product.getId(), 1).get(10, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(9, new ProductDAO(pool, null).getStock(product.getId()));
+    }
+
+    @Test
+    void withdrawnOrderIsNeverWritten() throws Exception {
+        Product product = addProduct(10);
+        try (OrderIntake intake = new OrderIntake(pool, 1024, 64, 2, 1)) {
+            CompletableFuture<PurchaseResult> withdrawn = intake.submit(client.getId(), product.getId(), 1);
+            assertTrue(intake.withdraw(withdrawn));
+            assertEquals(Failure.OVERLOADED, withdrawn.join().failure());
+
+            intake.start();
+            CompletableFuture<PurchaseResult> written = intake.submit(client.getId(), product.getId(), 2);
+            assertTrue(written.get(10, TimeUnit.SECONDS).isSuccess());
+            assertFalse(intake.withdraw(written));
+            assertThrows(IllegalArgumentException.class, () -> intake.withdraw(new CompletableFuture<>()));
+        }
+        assertEquals(8, new ProductDAO(pool, null).getStock(product.getId()));
+        assertEquals(1, new PurchaseBLL(pool).getAllBills().size());
+    }
+
+    @Test
+    void everyOrderSubmittedWhileClosingCompletes() throws Exception {
+        Product product = addProduct(100_000);
+        ConcurrentLinkedQueue<CompletableFuture<PurchaseResult>> results = new ConcurrentLinkedQueue<>();
+        OrderIntake intake = new OrderIntake(pool, 64, 16, 1, 2);
+        intake.start();
+        AtomicBoolean submitting = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread submitter = new Thread(() -> {
+                started.countDown();
+                while (submitting.get()) {
+                    results.add(intake.submit(client.getId(), product.getId(), 1));
+                }
+            });
+            submitter.start();
+            submitters.add(submitter);
+        }
+        started.await();
+        Thread.sleep(50);
+        intake.close();
+        Thread.sleep(20);
+        submitting.set(false);
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        int sold = 0;
+        for (CompletableFuture<PurchaseResult> result : results) {
+            PurchaseResult purchase = result.get(10, TimeUnit.SECONDS);
+            if (purchase.isSuccess()) {
+                sold++;
+            } else {
+                assertEquals(Failure.OVERLOADED, purchase.failure());
+            }
+        }
+        assertTrue(sold > 0);
+        assertEquals(100_000 - sold, new ProductDAO(pool, null).getStock(product.getId()));
+        assertEquals(sold, new PurchaseBLL(pool).getAllBills().size());
+    }
+
+    @Test
+    void stockEngineAndOrderIntakeAreExclusive() {
+        try (StockEngine engine = new StockEngine(pool); OrderIntake intake = new OrderIntake(pool)) {
+            assertThrows(IllegalArgumentException.class, () -> new PurchaseBLL(pool, engine, intake, null, null));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package business;
+
+import data.ClientDAO;
+import data.ConnectionPool;
+import data.LogDAO;
+import data.ProductDAO;
+import data.PurchaseDAO;
+import data.TestDatabase;
+import models.Bill;
+import models.Client;
+import models.Product;
+import models.Purchase;
+import models.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Timestamp;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the order throughput of 8 threads placing single-product orders of random clients and
+ * products through PurchaseBLL, which decrements the stock conditionally and writes the order, its bill
+ * and the sales summaries in one transaction, and through the earlier sequence of auto-committed
+ * statements: look up the product and the client, insert the purchase, write back the stock read before
+ * and insert the bill. The earlier sequence can oversell; it is kept here only as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class OrderPathBenchmark {
+
+    private static final int CLIENTS = 64;
+    private static final int PRODUCTS = 100;
+
+    private ConnectionPool pool;
+    private PurchaseBLL purchaseBLL;
+    private ProductDAO productDAO;
+    private ClientDAO clientDAO;
+    private PurchaseDAO purchaseDAO;
+    private LogDAO logDAO;
+    private Client[] clients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = TestDatabase.create();
+        ClientBLL clientBLL = new ClientBLL(pool);
+        clients = new Client[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = new Client(0, "Client " + i, "client" + i + "@example.com", "0712345678");
+            clients[i].setId(clientBLL.addClient(clients[i]));
+        }
+        ProductBLL productBLL = new ProductBLL(pool);
+        for (int i = 0; i < PRODUCTS; i++) {
+            productBLL.addProduct(new Product(0, "Product " + i, 10, Integer.MAX_VALUE / 2));
+        }
+        purchaseBLL = new PurchaseBLL(pool);
+        productDAO = new ProductDAO(pool);
+        clientDAO = new ClientDAO(pool);
+        purchaseDAO = new PurchaseDAO(pool);
+        logDAO = new LogDAO(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    private static int anyProductId() {
+        return ThreadLocalRandom.current().nextInt(PRODUCTS) + 1;
+    }
+
+    private Client anyClient() {
+        return clients[ThreadLocalRandom.current().nextInt(CLIENTS)];
+    }
+
+    @Benchmark
+    public PurchaseResult oneTransaction() {
+        return purchaseBLL.createPurchase(anyClient(), new Product(anyProductId(), null, 0, 0), 1);
+    }
+
+    @Benchmark
+    public int separateStatements() {
+        Client client = anyClient();
+        Product product = productDAO.findObject(anyProductId(), Product.class);
+        if (product == null || product.getStock() < 1 || clientDAO.findObject(client.getId(), Client.class) == null) {
+            return -1;
+        }
+        Purchase purchase = new Purchase(-1, client.getId(), product.getId(), 1, new Timestamp(System.currentTimeMillis()));
+        int id = purchaseDAO.addObject(purchase);
+        product.setStock(product.getStock() - 1);
+        productDAO.editObject(product.getId(), product);
+        logDAO.addBill(new Bill(id, product.getPrice(), purchase.getOrderDate()));
+        return id;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderPathBenchmark.class.getSimpleName()).build()).run();
+    }
+}
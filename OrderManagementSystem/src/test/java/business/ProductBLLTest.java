@@ -0,0 +1,54 @@
+package business;
+
+import data.ConnectionPool;
+import data.ProductDAO;
+import data.TestDatabase;
+import models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductBLLTest {
+
+    private ConnectionPool pool;
+    private ProductBLL productBLL;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        productBLL = new ProductBLL(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void mixedBatchKeepsInputOrder() {
+        int existing = productBLL.addProduct(new Product(0, "Lamp", 10, 1));
+
+        int[] results = productBLL.addProducts(List.of(new Product(0, "Desk", 20, 2),
+                new Product(existing, "Lamp", 10, 1), new Product(0, "Gold", 20000, 1), new Product(0, "Chair", 40, 4)));
+        assertEquals(-1, results[1]);
+        assertEquals(-2, results[2]);
+        assertTrue(existing < results[0] && results[0] < results[3]);
+        assertEquals("Desk", new ProductDAO(pool, null).findObject(results[0], Product.class).getName());
+        assertEquals("Chair", new ProductDAO(pool, null).findObject(results[3], Product.class).getName());
+    }
+
+    @Test
+    void failedInsertIsNotReportedAsAnExistingProduct() {
+        int[] results = productBLL.addProducts(List.of(new Product(0, "Desk", 20, 2),
+                new Product(0, "x".repeat(101), 30, 3), new Product(0, "Gold", 20000, 1)));
+
+        assertArrayEquals(new int[]{-3, -3, -2}, results);
+        assertEquals(0, new ProductDAO(pool, null).getAllObjects().size());
+    }
+}
@@ -0,0 +1,401 @@
+package business;
+
+import data.ConnectionPool;
+import data.OrderLineDAO;
+import data.ProductDAO;
+import data.TestDatabase;
+import models.Client;
+import models.OrderLine;
+import models.OrderSummary;
+import models.Product;
+import models.ProductSales;
+import models.PurchaseResult;
+import models.PurchaseResult.Failure;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PurchaseBLLTest {
+
+    private ConnectionPool pool;
+    private ClientBLL clientBLL;
+    private ProductBLL productBLL;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        clientBLL = new ClientBLL(pool);
+        productBLL = new ProductBLL(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private Client addClient(String name) {
+        Client client = new Client(0, name, name.toLowerCase() + "@example.com", "0712345678");
+        client.setId(clientBLL.addClient(client));
+        return client;
+    }
+
+    private Product addProduct(String name, double price, int stock) {
+        Product product = new Product(0, name, price, stock);
+        product.setId(productBLL.addProduct(product));
+        return product;
+    }
+
+    @Test
+    void concurrentOrdersNeverOversell() throws Exception {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product product = addProduct("Lamp", 10, 50);
+        int threads = 16;
+        int ordersPerThread = 20;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    PurchaseResult result = purchaseBLL.createPurchase(client, new Product(product.getId(), "Lamp", 10, 0), 1);
+                    if (result.isSuccess()) {
+                        sold.incrementAndGet();
+                    } else {
+                        assertEquals(Failure.OUT_OF_STOCK, result.failure());
+                        refused.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        assertEquals(50, sold.get());
+        assertEquals(threads * ordersPerThread - 50, refused.get());
+        assertEquals(0, new ProductDAO(pool, null).findObject(product.getId(), Product.class).getStock());
+        assertEquals(50, purchaseBLL.getAllPurchases().size());
+        assertEquals(50, purchaseBLL.getAllBills().size());
+    }
+
+    @Test
+    void sharedInstanceReturnsEveryCallerItsOwnOrderAndBill() throws Exception {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        int threads = 8;
+        int ordersPerThread = 25;
+        Client[] clients = new Client[threads];
+        Product[] products = new Product[threads];
+        for (int t = 0; t < threads; t++) {
+            clients[t] = addClient("Client" + t);
+            products[t] = addProduct("Product " + t, t + 1, ordersPerThread * 3);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<PurchaseResult>>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Client client = clients[t];
+            Product product = products[t];
+            workers.add(executor.submit(() -> {
+                start.await();
+                List<PurchaseResult> results = new ArrayList<>();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    results.add(purchaseBLL.createPurchase(client, product, 1 + i % 3));
+                }
+                return results;
+            }));
+        }
+        start.countDown();
+        List<Integer> orderIds = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<PurchaseResult> results = workers.get(t).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < ordersPerThread; i++) {
+                PurchaseResult result = results.get(i);
+                assertTrue(result.isSuccess(), String.valueOf(result.failure()));
+                assertEquals(result.orderId(), result.bill().orderId());
+                assertEquals(products[t].getPrice() * (1 + i % 3), result.bill().totalAmount(), 1e-9);
+                assertEquals(result.bill(), purchaseBLL.findBill(result.orderId()));
+                orderIds.add(result.orderId());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(threads * ordersPerThread, orderIds.stream().distinct().count());
+        assertEquals(Failure.PRODUCT_NOT_FOUND,
+                purchaseBLL.createPurchase(clients[0], new Product(-5, "Gone", 1, 0), 1).failure());
+    }
+
+    @Test
+    void transientDatabaseErrorsAreReportedAsOverloaded() {
+        Client client = addClient("Ana");
+        Product product = addProduct("Lamp", 10, 5);
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        DataSource failing = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection") && failure.get() != null) {
+                        throw failure.get();
+                    }
+                    try {
+                        return method.invoke(pool, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        PurchaseBLL purchaseBLL = new PurchaseBLL(failing);
+
+        failure.set(new SQLTransientConnectionException("Timed out waiting for a connection"));
+        assertEquals(Failure.OVERLOADED, purchaseBLL.createPurchase(client, product, 1).failure());
+        failure.set(new SQLException("Connection refused"));
+        assertEquals(Failure.ERROR, purchaseBLL.createPurchase(client, product, 1).failure());
+        failure.set(null);
+        assertTrue(purchaseBLL.createPurchase(client, product, 1).isSuccess());
+        assertEquals(4, new ProductDAO(pool, null).findObject(product.getId(), Product.class).getStock());
+    }
+
+    @Test
+    void nonPositiveQuantitiesAreRejected() {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product product = addProduct("Lamp", 10, 5);
+
+        assertEquals(Failure.INVALID_QUANTITY, purchaseBLL.createPurchase(client, product, 0).failure());
+        assertEquals(Failure.INVALID_QUANTITY, purchaseBLL.createPurchase(client, product, -3).failure());
+        ProductDAO productDAO = new ProductDAO(pool, null);
+        assertThrows(IllegalArgumentException.class, () -> productDAO.decrementStock(product.getId(), -3));
+        assertThrows(IllegalArgumentException.class,
+                () -> productDAO.tryDecrementStocks(new int[]{product.getId()}, new int[]{0}));
+        assertEquals(5, productDAO.findObject(product.getId(), Product.class).getStock());
+    }
+
+    @Test
+    void productSalesOfAPeriodCoverPurchasesAndOrderLines() {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 50);
+        Product desk = addProduct("Desk", 100, 50);
+        long now = System.currentTimeMillis();
+        Timestamp from = new Timestamp(now - 60_000);
+        Timestamp to = new Timestamp(now + 60_000);
+
+        assertTrue(purchaseBLL.createPurchase(client, lamp, 2).isSuccess());
+        assertTrue(purchaseBLL.createOrder(client,
+                List.of(new OrderLine(lamp.getId(), 1), new OrderLine(desk.getId(), 3))).isSuccess());
+        assertEquals(List.of(new ProductSales(lamp.getId(), 3, 30), new ProductSales(desk.getId(), 3, 300)),
+                purchaseBLL.getProductSalesBetween(from, to));
+
+        assertTrue(purchaseBLL.createPurchase(client, desk, 1).isSuccess());
+        assertEquals(List.of(new ProductSales(lamp.getId(), 3, 30), new ProductSales(desk.getId(), 4, 400)),
+                purchaseBLL.getProductSalesBetween(from, to));
+        assertEquals(List.of(), purchaseBLL.getProductSalesBetween(to, new Timestamp(now + 120_000)));
+    }
+
+    @Test
+    void topSellersAreSharedOnlyThroughTheInjectedTracker() {
+        TopSellers topSellers = new TopSellers();
+        PurchaseBLL first = new PurchaseBLL(pool, null, null, null, null, topSellers,
+                new IdempotencyIndex(IdempotencyIndex.DEFAULT_MAX_SIZE, IdempotencyIndex.DEFAULT_TTL_MILLIS));
+        PurchaseBLL second = new PurchaseBLL(pool, null, null, null, null, topSellers,
+                new IdempotencyIndex(IdempotencyIndex.DEFAULT_MAX_SIZE, IdempotencyIndex.DEFAULT_TTL_MILLIS));
+        PurchaseBLL separate = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 50);
+
+        assertTrue(first.createPurchase(client, lamp, 2).isSuccess());
+        assertTrue(second.createPurchase(client, lamp, 3).isSuccess());
+        assertTrue(separate.createPurchase(client, lamp, 4).isSuccess());
+
+        assertEquals(List.of(new HeavyHitters.Entry(lamp.getId(), 5, 0)),
+                second.getTopProducts(PurchaseBLL.SalesWindow.LAST_HOUR, 10));
+        assertEquals(List.of(new HeavyHitters.Entry(client.getId(), 5000, 0)),
+                first.getTopClients(PurchaseBLL.SalesWindow.LAST_DAY, 10));
+        assertEquals(List.of(new HeavyHitters.Entry(lamp.getId(), 4, 0)),
+                separate.getTopProducts(PurchaseBLL.SalesWindow.LAST_HOUR, 10));
+    }
+
+    @Test
+    void emptyOrderIsRefusedAsEmpty() {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+
+        assertEquals(Failure.EMPTY_ORDER, purchaseBLL.createOrder(client, List.of()).failure());
+        assertEquals(0, purchaseBLL.getAllPurchases().size());
+    }
+
+    @Test
+    void replayingAnIdempotencyKeyReturnsTheSameOrderAndSellsOnce() {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 10);
+
+        PurchaseResult first = purchaseBLL.createPurchase(client, lamp, 2, "retry-1");
+        PurchaseResult replayed = purchaseBLL.createPurchase(client, lamp, 2, "retry-1");
+        PurchaseResult afterRestart = new PurchaseBLL(pool).createPurchase(client, lamp, 2, "retry-1");
+        PurchaseResult order = purchaseBLL.createOrder(client, List.of(new OrderLine(lamp.getId(), 1)), "retry-2");
+        PurchaseResult replayedOrder = purchaseBLL.createOrder(client, List.of(new OrderLine(lamp.getId(), 1)), "retry-2");
+
+        assertTrue(first.isSuccess());
+        assertEquals(first, replayed);
+        assertEquals(first.orderId(), afterRestart.orderId());
+        assertEquals(first.bill().totalAmount(), afterRestart.bill().totalAmount());
+        assertEquals(order, replayedOrder);
+        assertEquals(7, new ProductDAO(pool, null).findObject(lamp.getId(), Product.class).getStock());
+        assertEquals(2, purchaseBLL.getAllBills().size());
+        assertEquals(Failure.ERROR, purchaseBLL.createPurchase(client, lamp, 1, "").failure());
+    }
+
+    @Test
+    void submissionLosingTheKeyRaceReturnsTheWinningOrder() {
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 10);
+        PurchaseResult winner = new PurchaseBLL(pool).createPurchase(client, lamp, 2, "race");
+        AtomicInteger blindLookups = new AtomicInteger(1);
+        PurchaseBLL late = new PurchaseBLL(TestDatabase.rewriting(pool, query ->
+                query.startsWith("SELECT order_id FROM purchase_idempotency")
+                        && blindLookups.getAndUpdate(n -> Math.max(n - 1, 0)) > 0 ? query + " AND 1 = 0" : query));
+
+        PurchaseResult loser = late.createPurchase(client, lamp, 2, "race");
+
+        assertEquals(0, blindLookups.get());
+        assertEquals(winner.orderId(), loser.orderId());
+        assertEquals(8, new ProductDAO(pool, null).findObject(lamp.getId(), Product.class).getStock());
+        assertEquals(1, late.getAllBills().size());
+    }
+
+    @Test
+    void concurrentSubmissionsWithOneKeyCreateOneOrder() throws Exception {
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 100);
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<PurchaseResult>> submissions = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+            submissions.add(executor.submit(() -> {
+                start.await();
+                return purchaseBLL.createPurchase(client, lamp, 3, "double-click");
+            }));
+        }
+        start.countDown();
+        PurchaseResult first = submissions.get(0).get(30, TimeUnit.SECONDS);
+        for (Future<PurchaseResult> submission : submissions) {
+            PurchaseResult result = submission.get(30, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess(), String.valueOf(result.failure()));
+            assertEquals(first.orderId(), result.orderId());
+        }
+        executor.shutdown();
+
+        assertEquals(97, new ProductDAO(pool, null).findObject(lamp.getId(), Product.class).getStock());
+        assertEquals(1, new PurchaseBLL(pool).getAllBills().size());
+    }
+
+    @Test
+    void orderWithALineOutOfStockWritesNothing() {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 5);
+        Product desk = addProduct("Desk", 100, 2);
+
+        PurchaseResult result = purchaseBLL.createOrder(client,
+                List.of(new OrderLine(lamp.getId(), 3), new OrderLine(desk.getId(), 3)));
+
+        assertEquals(Failure.OUT_OF_STOCK, result.failure());
+        ProductDAO productDAO = new ProductDAO(pool, null);
+        assertEquals(5, productDAO.findObject(lamp.getId(), Product.class).getStock());
+        assertEquals(2, productDAO.findObject(desk.getId(), Product.class).getStock());
+        assertEquals(0, purchaseBLL.getAllPurchases().size());
+        assertEquals(0, purchaseBLL.getAllBills().size());
+        assertEquals(List.of(), purchaseBLL.getProductSalesBetween(new Timestamp(0),
+                new Timestamp(System.currentTimeMillis() + 60_000)));
+    }
+
+    @Test
+    void ordersLockingTheirLinesInOppositeOrderDoNotDeadlock() throws Exception {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 1000);
+        Product desk = addProduct("Desk", 100, 1000);
+        List<OrderLine> lampFirst = List.of(new OrderLine(lamp.getId(), 1), new OrderLine(desk.getId(), 2));
+        List<OrderLine> deskFirst = List.of(new OrderLine(desk.getId(), 2), new OrderLine(lamp.getId(), 1));
+        int threads = 8;
+        int ordersPerThread = 25;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<OrderLine> lines = t % 2 == 0 ? lampFirst : deskFirst;
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    PurchaseResult result = purchaseBLL.createOrder(client, lines);
+                    assertTrue(result.isSuccess(), String.valueOf(result.failure()));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int orders = threads * ordersPerThread;
+        ProductDAO productDAO = new ProductDAO(pool, null);
+        assertEquals(1000 - orders, productDAO.findObject(lamp.getId(), Product.class).getStock());
+        assertEquals(1000 - 2 * orders, productDAO.findObject(desk.getId(), Product.class).getStock());
+        assertEquals(orders, purchaseBLL.getAllBills().size());
+    }
+
+    @Test
+    void summaryOfAMultiLineOrderDescribesItsLines() {
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        Client client = addClient("Ana");
+        Product lamp = addProduct("Lamp", 10, 50);
+        Product desk = addProduct("Desk", 100, 50);
+
+        PurchaseResult single = purchaseBLL.createPurchase(client, lamp, 4);
+        PurchaseResult order = purchaseBLL.createOrder(client,
+                List.of(new OrderLine(desk.getId(), 1), new OrderLine(lamp.getId(), 2)));
+        List<OrderSummary> summaries = new ArrayList<>();
+        purchaseBLL.forEachOrderSummary(summaries::add);
+
+        assertEquals(2, summaries.size());
+        assertEquals(single.orderId(), summaries.get(0).orderId());
+        assertEquals("Lamp", summaries.get(0).productName());
+        assertEquals(order.orderId(), summaries.get(1).orderId());
+        assertEquals("Desk x1, Lamp x2", summaries.get(1).productName());
+        assertEquals("Ana", summaries.get(1).clientName());
+        assertEquals(List.of(new OrderLine(desk.getId(), 1), new OrderLine(lamp.getId(), 2)),
+                new OrderLineDAO(pool).getLines(List.of(order.orderId())).get(order.orderId()));
+    }
+}
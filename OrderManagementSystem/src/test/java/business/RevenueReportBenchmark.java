@@ -0,0 +1,111 @@
+package business;
+
+import data.ConnectionPool;
+import data.LogDAO;
+import data.PurchaseDAO;
+import data.TestDatabase;
+import models.Bill;
+import models.Client;
+import models.Product;
+import models.Purchase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the revenue report of a month holding 200000 billed orders over 100 products, read with one
+ * thread and with several.
+ * <p>
+ * H2 answers a query repeated on the same connection with unchanged tables from its previous result,
+ * which would favour the single-range run; that reuse is turned off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevenueReportBenchmark {
+
+    private static final int PRODUCTS = 100;
+    private static final int BATCH_SIZE = 1000;
+    private static final long START = Timestamp.valueOf("2024-05-01 00:00:00").getTime();
+    private static final long MONTH = TimeUnit.DAYS.toMillis(30);
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"200000"})
+    public int orders;
+
+    private ConnectionPool pool;
+    private RevenueReport report;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        pool = TestDatabase.create(16);
+        int clientId = new ClientBLL(pool).addClient(new Client(0, "Ana", "ana@example.com", "0712345678"));
+        ProductBLL productBLL = new ProductBLL(pool);
+        int[] productIds = new int[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            productIds[i] = productBLL.addProduct(new Product(0, "Product " + i, 10, 1000));
+        }
+
+        PurchaseDAO purchaseDAO = new PurchaseDAO(pool);
+        LogDAO logDAO = new LogDAO(pool);
+        for (int first = 0; first < orders; first += BATCH_SIZE) {
+            List<Purchase> purchases = new ArrayList<>();
+            for (int i = first; i < Math.min(orders, first + BATCH_SIZE); i++) {
+                Timestamp date = new Timestamp(START + MONTH * i / orders);
+                purchases.add(new Purchase(0, clientId, productIds[i % PRODUCTS], 1 + i % 4, date));
+            }
+            int[] ids = purchaseDAO.addObjects(purchases);
+            List<Bill> bills = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                Purchase purchase = purchases.get(i);
+                bills.add(new Bill(ids[i], purchase.getQuantity() * 10.25, purchase.getOrderDate()));
+            }
+            logDAO.addBills(bills);
+        }
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SET OPTIMIZE_REUSE_RESULTS 0");
+        }
+        report = new RevenueReport(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public RevenueReport.Result compute() {
+        return report.compute(new Timestamp(START), new Timestamp(START + MONTH), parallelism);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RevenueReportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
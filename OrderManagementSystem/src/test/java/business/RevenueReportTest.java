@@ -0,0 +1,119 @@
+package business;
+
+import data.ConnectionPool;
+import data.LogDAO;
+import data.PurchaseDAO;
+import data.TestDatabase;
+import models.Bill;
+import models.Client;
+import models.Product;
+import models.Purchase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevenueReportTest {
+
+    private static final int ORDERS = 300;
+    private static final long START = Timestamp.valueOf("2024-05-01 00:00:00").getTime();
+    private static final long END = START + TimeUnit.DAYS.toMillis(10);
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private long expectedCents;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        int clientId = new ClientBLL(pool).addClient(new Client(0, "Ana", "ana@example.com", "0712345678"));
+        ProductBLL productBLL = new ProductBLL(pool);
+        int[] productIds = new int[3];
+        for (int i = 0; i < productIds.length; i++) {
+            productIds[i] = productBLL.addProduct(new Product(0, "Product " + i, 10, 1000));
+        }
+
+        PurchaseDAO purchaseDAO = new PurchaseDAO(pool);
+        List<Bill> bills = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Timestamp date = new Timestamp(START + i * TimeUnit.MINUTES.toMillis(47));
+            int quantity = 1 + i % 4;
+            int orderId = purchaseDAO.addObject(new Purchase(0, clientId, productIds[i % 3], quantity, date));
+            long cents = quantity * (1000 + i % 7 * 13);
+            bills.add(new Bill(orderId, cents / 100.0, date));
+            expectedCents += cents;
+        }
+        assertTrue(new LogDAO(pool).addBills(bills));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void parallelReportEqualsTheSequentialOne() {
+        RevenueReport report = new RevenueReport(pool);
+        RevenueReport.Result sequential = report.compute(new Timestamp(START), new Timestamp(END), 1);
+        assertEquals(ORDERS, sequential.getOverall().getOrders());
+        assertEquals(expectedCents, sequential.getOverall().getCents());
+        assertEquals(3, sequential.getProducts().size());
+
+        for (int parallelism : new int[]{2, 4, 8}) {
+            assertEquals(sequential, report.compute(new Timestamp(START), new Timestamp(END), parallelism),
+                    "parallelism " + parallelism);
+        }
+    }
+
+    @Test
+    void periodIsReadInRangesAcrossThreads() {
+        AtomicInteger connections = new AtomicInteger();
+        DataSource counting = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection")) {
+                        connections.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(pool, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        RevenueReport report = new RevenueReport(counting);
+
+        report.compute(new Timestamp(START), new Timestamp(END), 1);
+        assertEquals(1, connections.getAndSet(0));
+        report.compute(new Timestamp(START), new Timestamp(END), 4);
+        assertEquals(16, connections.get());
+    }
+
+    @Test
+    void reportIsWrittenAsCsv() throws IOException {
+        RevenueReport report = new RevenueReport(pool);
+        RevenueReport.Result result = report.compute(new Timestamp(START), new Timestamp(END), 4);
+        assertTrue(report.write(result, directory.resolve("may")));
+
+        List<String> daily = Files.readAllLines(directory.resolve("may").resolve("daily.csv"));
+        assertEquals("day,orders,revenue,p50,p90,p99", daily.get(0));
+        assertEquals(result.getDays().size() + 1, daily.size());
+        assertEquals(result.getWeeks().size() + 1, Files.readAllLines(directory.resolve("may").resolve("weekly.csv")).size());
+        assertEquals(4, Files.readAllLines(directory.resolve("may").resolve("products.csv")).size());
+    }
+}
@@ -0,0 +1,123 @@
+package business;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sales reports of a snapshot holding tens of millions of order rows: the sales of each
+ * product in one month, and the totals of the same month.
+ * <p>
+ * An in-memory database cannot hold that many orders in reasonable time, so the snapshot is loaded from a
+ * synthetic data source whose result set generates one billed order per second, spread over 10000
+ * clients and 5000 products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SalesSnapshotBenchmark {
+
+    private static final long START = Timestamp.valueOf("2022-01-01 00:00:00").getTime();
+    private static final long MONTH = TimeUnit.DAYS.toMillis(30);
+
+    @Param({"10000000", "50000000"})
+    public int rows;
+
+    private SalesSnapshot snapshot;
+    private SalesSnapshot.Filter month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        snapshot = new SalesSnapshot(syntheticSales(rows));
+        if (snapshot.refresh() != rows) {
+            throw new IllegalStateException("The snapshot did not load every row");
+        }
+        long from = START + rows * 1000L / 2;
+        month = SalesSnapshot.Filter.between(from, from + MONTH);
+    }
+
+    @Benchmark
+    public SalesSnapshot.Groups productSalesOfAMonth() {
+        return snapshot.groupBy(SalesSnapshot.Dimension.PRODUCT, month);
+    }
+
+    @Benchmark
+    public SalesSnapshot.Totals totalsOfAMonth() {
+        return snapshot.total(month);
+    }
+
+    /**
+     * Creates a data source whose every query returns the given number of sales rows, in the column
+     * order of {@code PurchaseDAO.scanSales}.
+     */
+    private static DataSource syntheticSales(int rows) {
+        ResultSet resultSet = proxy(ResultSet.class, new Object() {
+            int row = -1;
+
+            Object invoke(String method, Object[] args) {
+                switch (method) {
+                    case "next":
+                        return ++row < rows;
+                    case "wasNull", "close":
+                        return false;
+                    case "getBoolean":
+                        return true;
+                    case "getTimestamp":
+                        return new Timestamp(START + row * 1000L);
+                    case "getDouble":
+                        return (1 + row % 5) * 10.0;
+                    case "getInt":
+                        return switch ((int) args[0]) {
+                            case 1 -> row + 1;
+                            case 2 -> 1 + row % 10000;
+                            case 3 -> 1 + row % 5000;
+                            default -> 1 + row % 5;
+                        };
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            }
+        }::invoke);
+        PreparedStatement statement = proxy(PreparedStatement.class,
+                (method, args) -> method.equals("executeQuery") ? resultSet : null);
+        Connection connection = proxy(Connection.class,
+                (method, args) -> method.startsWith("prepareStatement") ? statement : null);
+        return proxy(DataSource.class, (method, args) -> method.equals("getConnection") ? connection : null);
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(SalesSnapshotBenchmark.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SalesSnapshotBenchmark.class.getSimpleName()).build()).run();
+    }
+}
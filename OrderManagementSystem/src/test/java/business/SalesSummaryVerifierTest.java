@@ -0,0 +1,74 @@
+package business;
+
+import data.ConnectionPool;
+import data.TestDatabase;
+import models.Client;
+import models.OrderLine;
+import models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesSummaryVerifierTest {
+
+    private ConnectionPool pool;
+    private SalesSummaryVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        verifier = new SalesSummaryVerifier(pool);
+        ClientBLL clientBLL = new ClientBLL(pool);
+        ProductBLL productBLL = new ProductBLL(pool);
+        Client client = new Client(0, "Ana", "ana@example.com", "0712345678");
+        client.setId(clientBLL.addClient(client));
+        Product lamp = new Product(0, "Lamp", 10, 50);
+        lamp.setId(productBLL.addProduct(lamp));
+        Product desk = new Product(0, "Desk", 100, 50);
+        desk.setId(productBLL.addProduct(desk));
+
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool);
+        assertTrue(purchaseBLL.createPurchase(client, lamp, 2).isSuccess());
+        assertTrue(purchaseBLL.createOrder(client,
+                List.of(new OrderLine(lamp.getId(), 1), new OrderLine(desk.getId(), 3))).isSuccess());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    @Test
+    void summariesKeptByOrdersMatchTheHistory() {
+        assertEquals(List.of(), verifier.verify());
+    }
+
+    @Test
+    void driftedSummariesAreReportedAndRebuilt() throws SQLException {
+        execute("UPDATE product_sales SET units_sold = units_sold + 1");
+        execute("DELETE FROM client_sales");
+
+        List<String> differences = verifier.verify();
+        assertEquals(3, differences.size(), differences.toString());
+        assertEquals(2, differences.stream().filter(d -> d.startsWith("product ")).count());
+        assertEquals(1, differences.stream().filter(d -> d.startsWith("client ") && d.contains("missing")).count());
+
+        assertTrue(verifier.rebuild());
+        assertEquals(List.of(), verifier.verify());
+    }
+}
@@ -0,0 +1,73 @@
+package business;
+
+import data.ConnectionPool;
+import data.TestDatabase;
+import models.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures 64 threads reserving and releasing units of one hot product in the StockEngine,
+ * with the product's counters in one bucket and split into several.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class StockEngineBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int buckets;
+
+    private ConnectionPool pool;
+    private StockEngine engine;
+    private int productId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = TestDatabase.create();
+        engine = new StockEngine(pool, TimeUnit.HOURS.toMillis(1));
+        engine.start();
+        productId = new ProductBLL(pool, engine).addProduct(new Product(0, "Console", 499, 1_000_000));
+        engine.setHot(productId, buckets);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+        pool.close();
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        boolean reserved = engine.reserve(productId, 1);
+        if (reserved) {
+            engine.release(productId, 1);
+        }
+        return reserved;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StockEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
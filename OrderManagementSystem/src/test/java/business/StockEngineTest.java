@@ -0,0 +1,196 @@
+package business;
+
+import data.ConnectionPool;
+import data.ProductDAO;
+import data.TestDatabase;
+import models.Client;
+import models.OrderLine;
+import models.Product;
+import models.PurchaseResult;
+import models.PurchaseResult.Failure;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockEngineTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private ConnectionPool pool;
+    private ClientBLL clientBLL;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        clientBLL = new ClientBLL(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private Client addClient(String name) {
+        Client client = new Client(0, name, name.toLowerCase() + "@example.com", "0712345678");
+        client.setId(clientBLL.addClient(client));
+        return client;
+    }
+
+    private Product addProduct(ProductBLL productBLL, String name, double price, int stock) {
+        Product product = new Product(0, name, price, stock);
+        product.setId(productBLL.addProduct(product));
+        return product;
+    }
+
+    private int storedStock(int productId) {
+        return new ProductDAO(pool, null).getStock(productId);
+    }
+
+    @Test
+    void concurrentOrdersNeverOversell() throws Exception {
+        StockEngine engine = new StockEngine(pool, 10);
+        engine.start();
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool, engine);
+        Client client = addClient("Ana");
+        Product product = addProduct(new ProductBLL(pool, engine), "Lamp", 10, 50);
+        int threads = 16;
+        int ordersPerThread = 20;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    PurchaseResult result = purchaseBLL.createOrder(client, List.of(new OrderLine(product.getId(), 1)));
+                    if (result.isSuccess()) {
+                        sold.incrementAndGet();
+                    } else {
+                        assertEquals(Failure.OUT_OF_STOCK, result.failure());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+        engine.close();
+
+        assertEquals(50, sold.get());
+        assertEquals(0, engine.getAvailable(product.getId()));
+        assertEquals(0, storedStock(product.getId()));
+    }
+
+    @Test
+    void soldUnitsSurviveACrashBeforeTheFlush() {
+        StockEngine crashed = new StockEngine(pool, NEVER);
+        crashed.start();
+        Client client = addClient("Ana");
+        Product product = addProduct(new ProductBLL(pool, crashed), "Lamp", 10, 20);
+        PurchaseBLL purchaseBLL = new PurchaseBLL(pool, crashed);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(purchaseBLL.createPurchase(client, product, 1).isSuccess());
+        }
+        assertEquals(15, crashed.getAvailable(product.getId()));
+        assertEquals(20, storedStock(product.getId()));
+
+        StockEngine restarted = new StockEngine(pool, NEVER);
+        restarted.start();
+        assertEquals(15, storedStock(product.getId()));
+        assertEquals(15, restarted.getAvailable(product.getId()));
+
+        PurchaseBLL restartedBLL = new PurchaseBLL(pool, restarted);
+        assertTrue(restartedBLL.createPurchase(client, product, 15).isSuccess());
+        assertEquals(Failure.OUT_OF_STOCK, restartedBLL.createPurchase(client, product, 1).failure());
+        restarted.close();
+        assertEquals(0, storedStock(product.getId()));
+    }
+
+    @Test
+    void trackKeepsUnflushedUnitsOutOfTheAvailableStock() {
+        StockEngine engine = new StockEngine(pool, NEVER);
+        engine.start();
+        ProductBLL productBLL = new ProductBLL(pool, engine);
+        Client client = addClient("Ana");
+        Product product = addProduct(productBLL, "Lamp", 10, 20);
+        assertTrue(new PurchaseBLL(pool, engine).createPurchase(client, product, 3).isSuccess());
+
+        engine.track(product.getId());
+        assertEquals(17, engine.getAvailable(product.getId()));
+        engine.flush();
+        assertEquals(17, storedStock(product.getId()));
+        engine.track(product.getId());
+        assertEquals(17, engine.getAvailable(product.getId()));
+        engine.close();
+    }
+
+    @Test
+    void trackingWhileReservingNeverOversells() throws Exception {
+        StockEngine engine = new StockEngine(pool, NEVER);
+        engine.start();
+        Product product = addProduct(new ProductBLL(pool, engine), "Lamp", 10, 1000);
+        engine.setHot(product.getId(), 4);
+        int threads = 4;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean reserving = new AtomicBoolean(true);
+        AtomicInteger held = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20_000; i++) {
+                    int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+                    if (engine.reserve(product.getId(), quantity)) {
+                        held.addAndGet(quantity);
+                        if (i % 4 == 0) {
+                            engine.release(product.getId(), quantity);
+                            held.addAndGet(-quantity);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> tracker = executor.submit(() -> {
+            start.await();
+            while (reserving.get()) {
+                engine.track(product.getId());
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        reserving.set(false);
+        tracker.get();
+        executor.shutdown();
+
+        assertTrue(held.get() <= 1000, "held " + held.get());
+        assertEquals(1000 - held.get(), engine.getAvailable(product.getId()));
+        engine.track(product.getId());
+        assertEquals(1000 - held.get(), engine.getAvailable(product.getId()));
+        engine.close();
+    }
+}
@@ -0,0 +1,36 @@
+package business;
+
+import business.PurchaseBLL.SalesWindow;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopSellersTest {
+
+    @Test
+    void ordersAreCountedPerProductAndClient() {
+        TopSellers topSellers = new TopSellers();
+        long now = System.currentTimeMillis();
+        topSellers.record(1, new int[]{10, 20}, new int[]{2, 5}, 12.5, now);
+        topSellers.record(2, new int[]{10}, new int[]{4}, 40, now);
+
+        for (SalesWindow window : SalesWindow.values()) {
+            assertEquals(List.of(new HeavyHitters.Entry(10, 6, 0), new HeavyHitters.Entry(20, 5, 0)),
+                    topSellers.topProducts(window, 5));
+            assertEquals(List.of(new HeavyHitters.Entry(2, 4000, 0)), topSellers.topClients(window, 1));
+        }
+    }
+
+    @Test
+    void ordersOlderThanAnHourOnlyCountForTheDay() {
+        TopSellers topSellers = new TopSellers();
+        long twoHoursAgo = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        topSellers.record(1, new int[]{10}, new int[]{3}, 30, twoHoursAgo);
+
+        assertEquals(List.of(), topSellers.topProducts(SalesWindow.LAST_HOUR, 5));
+        assertEquals(List.of(new HeavyHitters.Entry(10, 3, 0)), topSellers.topProducts(SalesWindow.LAST_DAY, 5));
+    }
+}
@@ -0,0 +1,295 @@
+package data;
+
+import models.Client;
+import models.Product;
+import models.Purchase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbstractDAOTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void batchedInsertsReturnKeysInInputOrderAndFailWholeBatches() {
+        ProductDAO products = new ProductDAO(pool, null);
+        List<Product> batch = List.of(new Product(0, "Lamp", 10, 1), new Product(0, "Desk", 20, 2),
+                new Product(0, "x".repeat(101), 30, 3), new Product(0, "Chair", 40, 4), new Product(0, "Rug", 50, 5));
+
+        int[] keys = products.addObjects(batch, 2);
+        assertEquals(-1, keys[2]);
+        assertEquals(-1, keys[3]);
+        assertTrue(keys[0] > 0 && keys[0] < keys[1] && keys[1] < keys[4]);
+        assertEquals("Lamp", products.findObject(keys[0], Product.class).getName());
+        assertEquals("Desk", products.findObject(keys[1], Product.class).getName());
+        assertEquals("Rug", products.findObject(keys[4], Product.class).getName());
+        assertEquals(3, products.getAllObjects().size());
+    }
+
+    @Test
+    void batchedInsertOfNothingSendsNothing() {
+        assertEquals(0, new ProductDAO(pool, null).addObjects(List.of()).length);
+    }
+
+    /**
+     * Creates a data source over the pool that records the IN-list size of every query it executes.
+     * Its connections are not pool handles, so the statement cache prepares on them instead of on the
+     * physical connection.
+     */
+    private DataSource recordingInLists(List<Integer> inListSizes) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getConnection")) {
+                        return invoke(pool, method, args);
+                    }
+                    Connection handle = pool.getConnection();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                            (connection, connectionMethod, connectionArgs) -> {
+                                if (connectionMethod.getName().equals("close")) {
+                                    StatementCache.release((Connection) connection);
+                                }
+                                Object result = invoke(handle, connectionMethod, connectionArgs);
+                                if (connectionMethod.getName().equals("prepareStatement")
+                                        && connectionArgs[0] instanceof String query && query.contains(" IN (")) {
+                                    int size = query.length() - query.replace("?", "").length();
+                                    return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                            new Class<?>[]{PreparedStatement.class},
+                                            (statement, statementMethod, statementArgs) -> {
+                                                if (statementMethod.getName().equals("executeQuery")) {
+                                                    inListSizes.add(size);
+                                                }
+                                                return invoke(result, statementMethod, statementArgs);
+                                            });
+                                }
+                                return result;
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private List<Integer> addProducts(int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(0, "Product " + i, 10, i));
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (int id : new ProductDAO(pool, null).addObjects(products)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Test
+    void inListsArePaddedToFixedSizes() {
+        List<Integer> ids = addProducts(300);
+        List<Integer> sizes = new ArrayList<>();
+        ProductDAO products = new ProductDAO(recordingInLists(sizes), null);
+
+        int[][] expected = {{1, 1}, {2, 4}, {4, 4}, {5, 16}, {16, 16}, {17, 64}, {64, 64}, {65, 256}, {256, 256}};
+        for (int[] count : expected) {
+            sizes.clear();
+            IntObjectMap<Product> found = products.findObjects(ids.subList(0, count[0]));
+            assertEquals(count[0], found.size());
+            assertEquals(List.of(count[1]), sizes, count[0] + " ids");
+        }
+    }
+
+    @Test
+    void longIdListsAreChunked() {
+        List<Integer> ids = addProducts(600);
+        List<Integer> sizes = new ArrayList<>();
+        ProductDAO products = new ProductDAO(recordingInLists(sizes), null);
+
+        IntObjectMap<Product> found = products.findObjects(ids.subList(0, 300));
+        assertEquals(300, found.size());
+        assertEquals(List.of(256, 64), sizes);
+
+        sizes.clear();
+        found = products.findObjects(ids);
+        assertEquals(600, found.size());
+        assertEquals(List.of(256, 256, 256), sizes);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, found.get(ids.get(i)).getStock());
+        }
+    }
+
+    @Test
+    void duplicateAndMissingIdsAreIgnored() {
+        List<Integer> ids = addProducts(3);
+        List<Integer> sizes = new ArrayList<>();
+        ProductDAO products = new ProductDAO(recordingInLists(sizes), null);
+
+        IntObjectMap<Product> found = products.findObjects(List.of(ids.get(2), ids.get(0), ids.get(2), ids.get(0), 9999));
+        assertEquals(2, found.size());
+        assertEquals(2, found.get(ids.get(2)).getStock());
+        assertEquals(0, found.get(ids.get(0)).getStock());
+        assertFalse(found.containsKey(9999));
+        assertFalse(found.containsKey(ids.get(1)));
+        assertEquals(List.of(16), sizes);
+
+        sizes.clear();
+        assertTrue(products.findObjects(List.of(9998, 9999)).isEmpty());
+        assertTrue(products.findObjects(List.of()).isEmpty());
+        assertEquals(List.of(4), sizes);
+    }
+
+    @Test
+    void cachedIdsAreNotQueried() {
+        List<Integer> ids = addProducts(5);
+        List<Integer> sizes = new ArrayList<>();
+        ProductDAO products = new ProductDAO(recordingInLists(sizes), new EntityCache<>(EntityCache.DEFAULT_MAX_SIZE, 0));
+        products.findObject(ids.get(0), Product.class);
+        products.findObject(ids.get(1), Product.class);
+
+        assertEquals(5, products.findObjects(ids).size());
+        assertEquals(List.of(4), sizes);
+        sizes.clear();
+        assertEquals(5, products.findObjects(ids).size());
+        assertEquals(List.of(), sizes);
+    }
+
+    @Test
+    void sortedPagesWalkPastNullValues() {
+        ClientDAO clients = new ClientDAO(pool);
+        String[] phones = {null, "0722", null, "0711", null, "0733", "0711"};
+        for (int i = 0; i < phones.length; i++) {
+            clients.addObject(new Client(0, "Client " + i, "c" + i + "@example.com", phones[i]));
+        }
+
+        List<Client> all = new ArrayList<>();
+        Object afterValue = null;
+        int afterKey = Integer.MIN_VALUE;
+        for (int pages = 0; pages <= phones.length; pages++) {
+            List<Client> page = clients.findPage("phone", afterValue, afterKey, 2);
+            if (page.isEmpty()) {
+                break;
+            }
+            all.addAll(page);
+            Client last = page.get(page.size() - 1);
+            afterValue = last.getPhoneNumber();
+            afterKey = last.getId();
+        }
+
+        List<String> order = new ArrayList<>();
+        for (Client client : all) {
+            order.add(client.getName());
+        }
+        assertEquals(List.of("Client 0", "Client 2", "Client 4", "Client 3", "Client 6", "Client 1", "Client 5"), order);
+    }
+
+    @Test
+    void sortedPagesTreatMinusOneAsNullForIntegerColumns() {
+        int client = new ClientDAO(pool).addObject(new Client(0, "Ana", "ana@example.com", null));
+        int product = new ProductDAO(pool).addObject(new Product(0, "Lamp", 10, 5));
+        PurchaseDAO purchases = new PurchaseDAO(pool);
+        int[] products = {product, -1, product, -1, -1};
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> withProduct = new ArrayList<>();
+        for (int productId : products) {
+            if (productId == -1) {
+                expected.add(purchases.addOrderHeader(client, 1, new Timestamp(System.currentTimeMillis())));
+            } else {
+                withProduct.add(purchases.addObject(new Purchase(0, client, productId, 1, null)));
+            }
+        }
+        expected.addAll(withProduct);
+
+        List<Integer> seen = new ArrayList<>();
+        Object afterValue = null;
+        int afterKey = Integer.MIN_VALUE;
+        for (int pages = 0; pages <= products.length; pages++) {
+            List<Purchase> page = purchases.findPage("product_id", afterValue, afterKey, 2);
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Purchase purchase : page) {
+                seen.add(purchase.getId());
+            }
+            Purchase last = page.get(page.size() - 1);
+            afterValue = last.getProductId();
+            afterKey = last.getId();
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void rolledBackEditDoesNotBecomeTheBaseline() throws SQLException {
+        ProductDAO products = new ProductDAO(pool, null);
+        int id = products.addObject(new Product(0, "Lamp", 10, 5));
+        Product product = products.findObject(id, Product.class);
+
+        product.setStock(9);
+        Transactions.execute(pool, connection -> {
+            products.editObject(id, product);
+            connection.rollback();
+            return null;
+        });
+        assertEquals(5, products.findObject(id, Product.class).getStock());
+
+        products.editObject(id, product);
+        assertEquals(9, products.findObject(id, Product.class).getStock());
+    }
+
+    @Test
+    void onlySingleLoadsAreTracked() {
+        ProductDAO products = new ProductDAO(pool, null);
+        int id = products.addObject(new Product(0, "Lamp", 10, 5));
+        EntityMapper<Product> mapper = EntityMapper.of(Product.class);
+
+        assertNull(mapper.snapshot(products.getAllObjects().get(0)));
+        assertNull(mapper.snapshot(products.findPage(Integer.MIN_VALUE, 10).get(0)));
+        assertNull(mapper.snapshot(products.findObjects(List.of(id)).get(id)));
+        assertNotNull(mapper.snapshot(products.findObject(id, Product.class)));
+    }
+
+    @Test
+    void staleCacheEntryIsNotUsedAsBaseline() throws SQLException {
+        ProductDAO products = new ProductDAO(pool, new EntityCache<>(EntityCache.DEFAULT_MAX_SIZE, 0));
+        int id = products.addObject(new Product(0, "Lamp", 10, 5));
+        products.findObject(id, Product.class);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement("UPDATE product SET stock = 2 WHERE product_id = ?")) {
+            statement.setInt(1, id);
+            statement.executeUpdate();
+        }
+
+        products.editObject(id, new Product(id, "Lamp", 10, 5));
+        products.getCache().clear();
+        assertEquals(5, products.findObject(id, Product.class).getStock());
+    }
+}
@@ -0,0 +1,178 @@
+package data;
+
+import models.Bill;
+import models.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BillJournalTest {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 28;
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private int clientId;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        clientId = new ClientDAO(pool, null).addObject(new Client(0, "Ana", "ana@example.com", "0712345678"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private Bill newBill() {
+        return newBill(new Timestamp(System.currentTimeMillis()));
+    }
+
+    private Bill newBill(Timestamp timestamp) {
+        return new Bill(new PurchaseDAO(pool).addOrderHeader(clientId, 1, timestamp), 10, timestamp);
+    }
+
+    @Test
+    void billsOfAPeriodMergeFlushedAndPendingBillsByTimestamp() throws Exception {
+        long start = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        Bill first = newBill(new Timestamp(start));
+        Bill second = newBill(new Timestamp(start + 1000));
+        Bill third = newBill(new Timestamp(start + 2000));
+        Bill fourth = newBill(new Timestamp(start + 3000));
+        assertTrue(new LogDAO(pool).addBill(first));
+        assertTrue(new LogDAO(pool).addBills(List.of(third)));
+
+        try (BillJournal journal = new BillJournal(pool, directory.resolve("bills.journal"),
+                BillJournal.DEFAULT_CAPACITY, NEVER)) {
+            journal.start();
+            assertTrue(journal.append(fourth));
+            assertTrue(journal.append(second));
+
+            List<Bill> bills = new LogDAO(pool, journal).getBillsBetween(new Timestamp(start),
+                    new Timestamp(start + 10_000));
+            assertEquals(List.of(first, second, third, fourth), bills);
+        }
+    }
+
+    @Test
+    void billsLeftByACrashAreFlushedOnStart() throws Exception {
+        Path file = directory.resolve("bills.journal");
+        BillJournal crashed = new BillJournal(pool, file, BillJournal.DEFAULT_CAPACITY, NEVER);
+        crashed.start();
+        assertTrue(crashed.append(newBill()));
+        assertTrue(crashed.append(newBill()));
+        assertEquals(0, new LogDAO(pool).getAllBills().size());
+
+        try (BillJournal restarted = new BillJournal(pool, file, BillJournal.DEFAULT_CAPACITY, NEVER)) {
+            restarted.start();
+            assertEquals(2, new LogDAO(pool).getAllBills().size());
+        }
+        crashed.close();
+        assertEquals(2, new LogDAO(pool).getAllBills().size());
+    }
+
+    @Test
+    void appendGivesUpWhenTheJournalStaysFull() throws Exception {
+        try (BillJournal journal = new BillJournal(pool, directory.resolve("bills.journal"),
+                HEADER_SIZE + 2 * RECORD_SIZE, NEVER, 100)) {
+            journal.start();
+            assertTrue(journal.append(newBill()));
+            assertTrue(journal.append(newBill()));
+            assertFalse(journal.append(newBill()));
+
+            journal.flush();
+            assertTrue(journal.append(newBill()));
+        }
+        assertEquals(3, new LogDAO(pool).getAllBills().size());
+    }
+
+    @Test
+    void billsTheJournalRefusesAreInsertedDirectly() throws Exception {
+        BillJournal journal = new BillJournal(pool, directory.resolve("bills.journal"));
+        journal.start();
+        journal.close();
+        LogDAO logDAO = new LogDAO(pool, journal);
+
+        Bill outside = newBill();
+        assertTrue(logDAO.addBill(outside));
+        assertEquals(outside, new LogDAO(pool).getBillByOrderId(outside.orderId()));
+
+        Bill inside = newBill();
+        Boolean added = Transactions.execute(pool, connection -> {
+            boolean scheduled = logDAO.addBill(inside);
+            assertNull(new LogDAO(pool).getBillByOrderId(inside.orderId()));
+            return scheduled;
+        });
+        assertTrue(added);
+        assertEquals(inside, new LogDAO(pool).getBillByOrderId(inside.orderId()));
+        assertEquals(2, new LogDAO(pool).getAllBills().size());
+    }
+
+    @Test
+    void billTheJournalRefusesAndTheInsertFailsIsNotAdded() throws Exception {
+        BillJournal journal = new BillJournal(pool, directory.resolve("bills.journal"));
+        journal.start();
+        journal.close();
+        Bill bill = newBill();
+        DataSource broken = TestDatabase.rewriting(pool, query -> query.replace("INSERT INTO Log", "INSERT INTO Log_missing"));
+        LogDAO logDAO = new LogDAO(broken, journal);
+        assertFalse(logDAO.addBill(bill));
+        assertNull(logDAO.getBillByOrderId(bill.orderId()));
+        assertEquals(0, new LogDAO(pool).getAllBills().size());
+    }
+
+    @Test
+    void smallJournalKeepsUpWithConcurrentAppends() throws Exception {
+        int threads = 8;
+        int billsPerThread = 50;
+        List<Bill> bills = new ArrayList<>();
+        for (int i = 0; i < threads * billsPerThread; i++) {
+            bills.add(newBill());
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try (BillJournal journal = new BillJournal(pool, directory.resolve("bills.journal"),
+                HEADER_SIZE + 16 * RECORD_SIZE, 1, 5000)) {
+            journal.start();
+            List<Future<Boolean>> appends = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<Bill> slice = bills.subList(t * billsPerThread, (t + 1) * billsPerThread);
+                appends.add(executor.submit(() -> {
+                    for (Bill bill : slice) {
+                        if (!journal.append(bill)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> append : appends) {
+                assertTrue(append.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(bills.size(), new LogDAO(pool).getAllBills().size());
+    }
+}
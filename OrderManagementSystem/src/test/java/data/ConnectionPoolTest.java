@@ -0,0 +1,77 @@
+package data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void staleCloseDoesNotReleaseTheNextBorrow() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        assertNotSame(first, second);
+
+        first.close();
+        assertEquals(1, pool.getMetrics().active());
+        assertFalse(second.isClosed());
+        second.setAutoCommit(false);
+        try (Statement statement = second.createStatement()) {
+            statement.executeUpdate("INSERT INTO client (name, email) VALUES ('Ana', 'ana@example.com')");
+        }
+        second.commit();
+        second.close();
+        assertEquals(0, pool.getMetrics().active());
+    }
+
+    @Test
+    void closedHandleRejectsCalls() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+        assertThrows(SQLException.class, () -> StatementCache.of(connection));
+    }
+
+    @Test
+    void nestedBorrowsShareTheConnectionUntilTheLastHandleCloses() throws SQLException {
+        try (Connection outer = pool.getConnection()) {
+            Connection inner = pool.getConnection();
+            assertNotSame(outer, inner);
+            assertSame(StatementCache.of(outer), StatementCache.of(inner));
+            inner.close();
+            inner.close();
+            assertFalse(outer.isClosed());
+            assertEquals(1, pool.getMetrics().active());
+            try (Statement statement = outer.createStatement()) {
+                statement.execute("SELECT 1");
+            }
+        }
+        assertEquals(0, pool.getMetrics().active());
+        assertEquals(1, pool.getMetrics().idle());
+    }
+}
@@ -0,0 +1,112 @@
+package data;
+
+import models.Product;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntityCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        EntityCache<String> cache = new EntityCache<>(2, 0, now::get);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        assertEquals("one", cache.get(1));
+        cache.put(3, "three");
+
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals("three", cache.get(3));
+        assertEquals(new EntityCache.Stats(3, 1, 1, 0, 2, 2), cache.getStats());
+    }
+
+    @Test
+    void entriesExpireOnceTheirTimeToLivePassed() {
+        EntityCache<String> cache = new EntityCache<>(10, 100, now::get);
+        cache.put(1, "one");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals("one", cache.get(1));
+
+        now.incrementAndGet();
+        assertNull(cache.get(1));
+        assertEquals(new EntityCache.Stats(1, 1, 0, 1, 0, 10), cache.getStats());
+
+        cache.put(1, "one again");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals("one again", cache.get(1));
+    }
+
+    @Test
+    void entriesWithoutTimeToLiveNeverExpire() {
+        EntityCache<String> cache = new EntityCache<>(10, 0, now::get);
+        cache.put(1, "one");
+        now.addAndGet(TimeUnit.DAYS.toNanos(365));
+        assertEquals("one", cache.get(1));
+    }
+
+    @Test
+    void statsCountLookupsAndHitRate() {
+        EntityCache<String> cache = new EntityCache<>(10, 0, now::get);
+        assertEquals(0, cache.getStats().hitRate());
+        cache.put(1, "one");
+        cache.get(1);
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        cache.invalidate(1);
+        cache.get(1);
+
+        EntityCache.Stats stats = cache.getStats();
+        assertEquals(new EntityCache.Stats(3, 2, 0, 0, 0, 10), stats);
+        assertEquals(0.6, stats.hitRate(), 1e-9);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.clear();
+        assertEquals(0, cache.getStats().size());
+    }
+
+    @Test
+    void invalidSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new EntityCache<String>(0, 0));
+    }
+
+    @Test
+    void editsWriteThroughAndDeletesInvalidate() throws SQLException {
+        ConnectionPool pool = TestDatabase.create();
+        try {
+            EntityCache<Product> cache = new EntityCache<>(10, 0, now::get);
+            ProductDAO products = new ProductDAO(pool, cache);
+            int id = products.addObject(new Product(0, "Lamp", 10, 5));
+            Product loaded = products.findObject(id, Product.class);
+            loaded.setStock(1);
+            assertEquals(5, cache.get(id).getStock());
+
+            products.editObject(id, new Product(id, "Lamp", 12, 4));
+            assertEquals(12, cache.get(id).getPrice());
+            assertEquals(4, products.findObject(id, Product.class).getStock());
+
+            Transactions.execute(pool, connection -> {
+                products.editObject(id, new Product(id, "Lamp", 15, 3));
+                connection.rollback();
+                return null;
+            });
+            assertNull(cache.get(id));
+            assertEquals(12, products.findObject(id, Product.class).getPrice());
+
+            products.deleteObject(id);
+            assertNull(cache.get(id));
+            assertNull(products.findObject(id, Product.class));
+        } finally {
+            pool.close();
+        }
+    }
+}
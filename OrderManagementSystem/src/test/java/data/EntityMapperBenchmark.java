@@ -0,0 +1,104 @@
+package data;
+
+import models.Client;
+import models.Product;
+import models.Purchase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled row mappers with the reflective per-row mapping they replaced,
+ * loading whole client, product and purchase tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityMapperBenchmark {
+
+    @Param({"Client", "Product", "Purchase"})
+    public String entity;
+
+    @Param({"20000"})
+    public int rows;
+
+    private ConnectionPool pool;
+    private AbstractDAO<?> dao;
+    private Class<?> type;
+    private String table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = TestDatabase.create();
+        List<Client> clients = new ArrayList<>();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            clients.add(new Client(0, "Client " + i, "client" + i + "@example.com", "0700" + i));
+            products.add(new Product(0, "Product " + i, 1 + i % 100, 1000));
+        }
+        int[] clientIds = new ClientDAO(pool).addObjects(clients);
+        int[] productIds = new ProductDAO(pool).addObjects(products);
+        List<Purchase> purchases = new ArrayList<>();
+        long start = Timestamp.valueOf("2024-05-01 00:00:00").getTime();
+        for (int i = 0; i < rows; i++) {
+            purchases.add(new Purchase(0, clientIds[i], productIds[rows - 1 - i], 1 + i % 5, new Timestamp(start + i * 1000L)));
+        }
+        new PurchaseDAO(pool).addObjects(purchases);
+
+        switch (entity) {
+            case "Client" -> dao = new ClientDAO(pool, null);
+            case "Product" -> dao = new ProductDAO(pool, null);
+            default -> dao = new PurchaseDAO(pool);
+        }
+        type = dao.getObjectType();
+        table = dao.getTableName();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public List<?> compiled() {
+        return dao.getAllObjects();
+    }
+
+    @Benchmark
+    public List<?> reflective() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            return ReflectiveMapper.mapAll(resultSet, type);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EntityMapperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package data;
+
+import models.Client;
+import models.Product;
+import models.Purchase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EntityMapperTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void compiledMapperReadsTheSameObjectsAsReflection() throws SQLException {
+        ClientDAO clients = new ClientDAO(pool);
+        ProductDAO products = new ProductDAO(pool);
+        PurchaseDAO purchases = new PurchaseDAO(pool);
+        int client = clients.addObject(new Client(0, "Ana", "ana@example.com", null));
+        int product = products.addObject(new Product(0, "Lamp", 19.5, 7));
+        purchases.addObject(new Purchase(0, client, product, 3, Timestamp.valueOf("2024-05-09 18:40:06")));
+
+        assertSameRows(clients.getAllObjects(), "client", Client.class);
+        assertSameRows(products.getAllObjects(), "product", Product.class);
+        assertSameRows(purchases.getAllObjects(), "purchase", Purchase.class);
+    }
+
+    @Test
+    void nullIntegerColumnsAreReadAsMinusOne() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO purchase (client_id, product_id, quantity) VALUES (NULL, NULL, 1)")) {
+            statement.executeUpdate();
+        }
+        Purchase purchase = new PurchaseDAO(pool).getAllObjects().get(0);
+        assertEquals(-1, purchase.getClientId());
+        assertEquals(-1, purchase.getProductId());
+    }
+
+    private <T> void assertSameRows(List<T> compiled, String table, Class<T> type) throws SQLException {
+        List<T> reflective;
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            reflective = ReflectiveMapper.mapAll(resultSet, type);
+        }
+        EntityMapper<T> mapper = EntityMapper.of(type);
+        assertEquals(reflective.size(), compiled.size());
+        for (int i = 0; i < compiled.size(); i++) {
+            assertArrayEquals(mapper.values(reflective.get(i)), mapper.values(compiled.get(i)));
+        }
+    }
+}
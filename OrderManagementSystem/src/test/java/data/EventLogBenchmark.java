@@ -0,0 +1,88 @@
+package data;
+
+import models.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures replaying an event log of one million purchases, stock adjustments and repricings over
+ * 1000 products, reading the segments with one thread and with several.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventLogBenchmark {
+
+    private static final int PRODUCTS = 1000;
+    private static final int SEGMENT_RECORDS = 1 << 18;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"1000000"})
+    public int events;
+
+    private Path directory;
+    private EventLog eventLog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-log-benchmark");
+        eventLog = new EventLog(directory, SEGMENT_RECORDS);
+        long start = Timestamp.valueOf("2024-05-01 00:00:00").getTime();
+        for (int i = 0; i < events; i++) {
+            int productId = 1 + i % PRODUCTS;
+            Timestamp timestamp = new Timestamp(start + i * 1000L);
+            switch (i % 10) {
+                case 0 -> eventLog.append(Event.stockAdjusted(productId, 100, -1));
+                case 1 -> eventLog.append(Event.productRepriced(productId, 1 + i % 50));
+                default -> eventLog.append(Event.purchaseCreated(i, 1 + i % 500, productId, 1, 10, timestamp));
+            }
+        }
+        eventLog.sync();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        eventLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public EventLog.Replay replay() throws IOException {
+        return eventLog.replay(parallelism);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventLogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,35 @@
+package data;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ReflectiveMapper class maps rows the way AbstractDAO did before it compiled row mappers:
+ * a new instance per row, and per field a declared-field lookup, an access check, a lookup of the
+ * column by name and a reflective set. Tests and benchmarks use it as the reference.
+ */
+final class ReflectiveMapper {
+
+    private ReflectiveMapper() {
+    }
+
+    static <T> List<T> mapAll(ResultSet resultSet, Class<T> type) throws SQLException {
+        List<T> objects = new ArrayList<>();
+        try {
+            while (resultSet.next()) {
+                T object = type.getDeclaredConstructor().newInstance();
+                for (Field field : type.getDeclaredFields()) {
+                    field.setAccessible(true);
+                    field.set(object, resultSet.getObject(field.getName()));
+                }
+                objects.add(object);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Cannot map " + type.getName(), e);
+        }
+        return objects;
+    }
+}
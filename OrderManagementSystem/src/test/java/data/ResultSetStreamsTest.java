@@ -0,0 +1,140 @@
+package data;
+
+import models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultSetStreamsTest {
+
+    private static final String QUERY = "SELECT * FROM product ORDER BY product_id";
+
+    private ConnectionPool pool;
+    private final List<String> closed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pool = TestDatabase.create();
+        ProductDAO products = new ProductDAO(pool, null);
+        for (int i = 0; i < 5; i++) {
+            products.addObject(new Product(0, "Product " + i, 10, i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Wraps a pooled connection so that closing it, or a statement prepared on it, is recorded.
+     */
+    private Connection trackedConnection() throws SQLException {
+        Connection connection = pool.getConnection();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (method.getName().equals("close")) {
+                        closed.add("connection");
+                    } else if (result instanceof PreparedStatement statement) {
+                        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    if (statementMethod.getName().equals("close")) {
+                                        closed.add("statement");
+                                    }
+                                    return invoke(statement, statementMethod, statementArgs);
+                                });
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Stream<Product> products(RowMapper<Product> mapper) throws SQLException {
+        return ResultSetStreams.stream(trackedConnection(), QUERY, 2, metaData -> mapper);
+    }
+
+    private static Product product(ResultSet resultSet) throws SQLException {
+        return new Product(resultSet.getInt("product_id"), resultSet.getString("name"),
+                resultSet.getDouble("price"), resultSet.getInt("stock"));
+    }
+
+    @Test
+    void rowsAreMappedInOrder() throws SQLException {
+        try (Stream<Product> products = products(ResultSetStreamsTest::product)) {
+            assertEquals(List.of(0, 1, 2, 3, 4), products.map(Product::getStock).collect(Collectors.toList()));
+        }
+        assertEquals(List.of("statement", "connection"), closed);
+    }
+
+    @Test
+    void earlyTerminationClosesStatementAndConnection() throws SQLException {
+        try (Stream<Product> products = products(ResultSetStreamsTest::product)) {
+            assertEquals(0, products.findFirst().orElseThrow().getStock());
+            assertTrue(closed.isEmpty());
+        }
+        assertEquals(List.of("statement", "connection"), closed);
+    }
+
+    @Test
+    void failingConsumerClosesStatementAndConnection() {
+        assertThrows(IllegalStateException.class, () -> {
+            try (Stream<Product> products = products(ResultSetStreamsTest::product)) {
+                products.forEach(product -> {
+                    throw new IllegalStateException("consumer failed");
+                });
+            }
+        });
+        assertEquals(List.of("statement", "connection"), closed);
+    }
+
+    @Test
+    void failingMapperEndsTheStreamAndClosesIt() throws SQLException {
+        RowMapper<Product> failing = resultSet -> {
+            if (resultSet.getInt("stock") == 2) {
+                throw new SQLException("unreadable row");
+            }
+            return product(resultSet);
+        };
+        try (Stream<Product> products = products(failing)) {
+            assertEquals(2, products.count());
+        }
+        assertEquals(List.of("statement", "connection"), closed);
+    }
+
+    @Test
+    void failingQueryClosesTheConnection() {
+        assertThrows(SQLException.class,
+                () -> ResultSetStreams.stream(trackedConnection(), "SELECT * FROM missing", 2, metaData -> null));
+        assertEquals(List.of("connection"), closed);
+    }
+
+    @Test
+    void fullScansGoThroughTheStream() {
+        assertEquals(5, new ProductDAO(pool, null).getAllObjects().size());
+        assertEquals(0, new LogDAO(pool).getAllBills().size());
+    }
+}
@@ -0,0 +1,105 @@
+package data;
+
+import models.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares statements reused from the StatementCache with statements prepared per call,
+ * and with the concatenated SQL strings the DAOs used to send.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementCacheBenchmark {
+
+    private static final int PRODUCTS = 1000;
+    private static final String FIND = "SELECT * FROM product WHERE product_id = ?";
+
+    private ConnectionPool pool;
+    private ProductDAO dao;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = TestDatabase.create();
+        dao = new ProductDAO(pool, null);
+        for (int i = 0; i < PRODUCTS; i++) {
+            dao.addObject(new Product(0, "Product " + i, 10, 100));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    private int nextId() {
+        next = next % PRODUCTS + 1;
+        return next;
+    }
+
+    @Benchmark
+    public String findCached() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            return find(StatementCache.of(connection).prepare(FIND));
+        }
+    }
+
+    @Benchmark
+    public String findPreparedPerCall() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND)) {
+            return find(statement);
+        }
+    }
+
+    private String find(PreparedStatement statement) throws SQLException {
+        statement.setInt(1, nextId());
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getString("name") : null;
+        }
+    }
+
+    @Benchmark
+    public int insertCached() {
+        return dao.addObject(new Product(0, "Lamp 'deluxe'", 19.5, 3));
+    }
+
+    @Benchmark
+    public int insertConcatenated() throws SQLException {
+        Product product = new Product(0, "Lamp 'deluxe'", 19.5, 3);
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            return statement.executeUpdate("INSERT INTO product (name,price,stock) VALUES ('"
+                    + product.getName().replace("'", "''") + "','" + product.getPrice() + "','" + product.getStock() + "')");
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StatementCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
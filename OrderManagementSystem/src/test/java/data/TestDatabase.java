@@ -0,0 +1,213 @@
+package data;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * The TestDatabase class creates throwaway in-memory databases for tests and benchmarks.
+ * <p>
+ * Each database is a fresh H2 instance in MySQL mode holding the tables of the database dump plus
+ * everything {@link SchemaSetup} adds. Connections go through a thin driver wrapper that ignores
+ * negative fetch sizes: the DAOs ask MySQL to stream with {@code Integer.MIN_VALUE}, which H2 rejects.
+ * The generated keys are not cached: with H2's default cache of 32 values per identity, concurrent inserts
+ * next to rolled back transactions now and then got a key already taken.
+ */
+public final class TestDatabase {
+
+    private static final String PREFIX = "jdbc:oms-test:";
+    private static final String OPTIONS =
+            ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final String[][] IDENTITY_COLUMNS = {
+            {"client", "client_id"}, {"product", "product_id"}, {"purchase", "order_id"},
+            {"log", "bill_id"}, {"stock_delta", "delta_id"}};
+
+    static {
+        try {
+            DriverManager.registerDriver(new WrappingDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Creates a new database with the default pool size.
+     *
+     * @return a pool over the new database
+     */
+    public static ConnectionPool create() {
+        return create(ConnectionPool.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new database and empties the entity caches the DAOs share by default.
+     *
+     * @param maxSize the maximum number of open connections
+     * @return a pool over the new database
+     */
+    public static ConnectionPool create(int maxSize) {
+        String url = PREFIX + "h2:mem:oms" + DATABASES.incrementAndGet() + OPTIONS;
+        ConnectionPool pool = new ConnectionPool(url, "sa", "", maxSize);
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String ddl : readSchema().split(";")) {
+                if (!ddl.isBlank()) {
+                    statement.execute(ddl);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            pool.close();
+            throw new IllegalStateException("Cannot create the test schema", e);
+        }
+        SchemaSetup.apply(pool);
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String[] column : IDENTITY_COLUMNS) {
+                statement.execute("ALTER TABLE " + column[0] + " ALTER COLUMN " + column[1] + " SET NO CACHE");
+            }
+        } catch (SQLException e) {
+            pool.close();
+            throw new IllegalStateException("Cannot create the test schema", e);
+        }
+        new ClientDAO(pool).getCache().clear();
+        new ProductDAO(pool).getCache().clear();
+        return pool;
+    }
+
+    private static String readSchema() throws IOException {
+        try (InputStream in = TestDatabase.class.getResourceAsStream("/schema.sql")) {
+            if (in == null) {
+                throw new IOException("schema.sql not found");
+            }
+            StringBuilder schema = new StringBuilder();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\\R")) {
+                if (!line.startsWith("--")) {
+                    schema.append(line).append('\n');
+                }
+            }
+            return schema.toString();
+        }
+    }
+
+    /**
+     * Wraps a data source so that the SQL of every statement prepared through it is rewritten first.
+     * The statements are cached per borrowed connection, as by the DAOs, and closed with it.
+     *
+     * @param dataSource the data source to borrow connections from
+     * @param rewrite    the rewrite applied to the SQL of each statement prepared
+     * @return the wrapping data source
+     */
+    public static DataSource rewriting(DataSource dataSource, UnaryOperator<String> rewrite) {
+        return (DataSource) Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getConnection")) {
+                        return invoke(dataSource, method, args);
+                    }
+                    Connection handle = dataSource.getConnection();
+                    return Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class<?>[]{Connection.class},
+                            (connection, connectionMethod, connectionArgs) -> {
+                                if (connectionMethod.getName().equals("close")) {
+                                    StatementCache.release((Connection) connection);
+                                } else if (connectionMethod.getName().equals("prepareStatement")) {
+                                    connectionArgs[0] = rewrite.apply((String) connectionArgs[0]);
+                                }
+                                return invoke(handle, connectionMethod, connectionArgs);
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wraps a JDBC object so that negative fetch sizes are ignored, also on the statements it creates.
+     */
+    private static Object wrap(Object target, Class<?> type) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("setFetchSize") && (int) args[0] < 0) {
+                return null;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return wrap(result, method.getReturnType());
+            }
+            return result;
+        };
+        return Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * A driver for {@code jdbc:oms-test:<url>} that opens {@code jdbc:<url>} and wraps the connection.
+     */
+    private static final class WrappingDriver implements Driver {
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            Connection connection = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+            return (Connection) wrap(connection, Connection.class);
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
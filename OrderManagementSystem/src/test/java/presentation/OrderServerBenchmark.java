@@ -0,0 +1,99 @@
+package presentation;
+
+import business.ClientBLL;
+import business.ProductBLL;
+import data.ConnectionPool;
+import data.TestDatabase;
+import models.Client;
+import models.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the OrderServer for 64 concurrent HTTP clients, placing purchases
+ * and reading bills, against an in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class OrderServerBenchmark {
+
+    private static final int PRODUCTS = 100;
+    private static final int BILLS = 1000;
+
+    private ConnectionPool pool;
+    private OrderServer server;
+    private HttpClient http;
+    private String base;
+    private int clientId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pool = TestDatabase.create();
+        clientId = new ClientBLL(pool).addClient(new Client(0, "Ana", "ana@example.com", "0712345678"));
+        ProductBLL productBLL = new ProductBLL(pool);
+        for (int i = 0; i < PRODUCTS; i++) {
+            productBLL.addProduct(new Product(0, "Product " + i, 10, Integer.MAX_VALUE / 2));
+        }
+        server = new OrderServer(pool, null, null, null, null, null, 0);
+        server.start();
+        http = HttpClient.newHttpClient();
+        base = "http://localhost:" + server.getPort();
+        for (int i = 0; i < BILLS; i++) {
+            purchase();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+        pool.close();
+    }
+
+    @Benchmark
+    public int purchase() throws IOException, InterruptedException {
+        int productId = ThreadLocalRandom.current().nextInt(PRODUCTS) + 1;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/purchases"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 1}"))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int readBill() throws IOException, InterruptedException {
+        int orderId = ThreadLocalRandom.current().nextInt(BILLS) + 1;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/bills/" + orderId)).GET().build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderServerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
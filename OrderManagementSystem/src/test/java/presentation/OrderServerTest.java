@@ -0,0 +1,159 @@
+package presentation;
+
+import business.AdmissionController;
+import business.ClientBLL;
+import business.ProductBLL;
+import data.ConnectionPool;
+import data.TestDatabase;
+import models.Client;
+import models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderServerTest {
+
+    @TempDir
+    Path reportDirectory;
+
+    private ConnectionPool pool;
+    private OrderServer server;
+    private HttpClient http;
+    private int clientId;
+    private int productId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pool = TestDatabase.create();
+        clientId = new ClientBLL(pool).addClient(new Client(0, "Ana", "ana@example.com", "0712345678"));
+        productId = new ProductBLL(pool).addProduct(new Product(0, "Lamp", 10, 5));
+        System.setProperty(OrderServer.REPORT_DIRECTORY_PROPERTY, reportDirectory.toString());
+        server = new OrderServer(pool, null, null, null, null, null, 0);
+        server.start();
+        http = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        pool.close();
+        System.clearProperty(OrderServer.REPORT_DIRECTORY_PROPERTY);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void validPurchaseIsCreated() throws Exception {
+        HttpResponse<String> response = send("POST", "/purchases",
+                "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 2}");
+        assertEquals(200, response.statusCode());
+    }
+
+    @Test
+    void productSalesOfAPeriodAreListed() throws Exception {
+        send("POST", "/purchases", "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 2}");
+        String today = LocalDate.now().toString();
+        String tomorrow = LocalDate.now().plusDays(1).toString();
+        HttpResponse<String> response = send("GET", "/sales/products?from=" + today + "&to=" + tomorrow, null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"unitsSold\":2"), response.body());
+    }
+
+    @Test
+    void revenueReportIsWrittenToTheReportDirectory() throws Exception {
+        send("POST", "/purchases", "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 2}");
+        String today = LocalDate.now().toString();
+        String tomorrow = LocalDate.now().plusDays(1).toString();
+        HttpResponse<String> response = send("POST", "/reports/revenue?from=" + today + "&to=" + tomorrow, null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"orders\":1,\"revenue\":20.0"), response.body());
+        Path report = reportDirectory.resolve("revenue-" + today + "-" + tomorrow);
+        assertEquals(2, Files.readAllLines(report.resolve("daily.csv")).size());
+        assertEquals(400, send("POST", "/reports/revenue?from=" + tomorrow + "&to=" + today, null).statusCode());
+    }
+
+    @Test
+    void salesSummaryMatchesTheOrderHistory() throws Exception {
+        send("POST", "/purchases", "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 2}");
+        HttpResponse<String> response = send("GET", "/sales/summary", null);
+        assertEquals(200, response.statusCode());
+        assertEquals("[]", response.body());
+    }
+
+    @Test
+    void malformedRequestsAreBadRequests() throws Exception {
+        assertEquals(400, send("POST", "/purchases", "{\"client_id\": ").statusCode());
+        assertEquals(400, send("POST", "/purchases", "{\"client_id\": " + clientId + ", \"quantity\": 1}").statusCode());
+        assertEquals(400, send("POST", "/purchases",
+                "{\"client_id\": \"x\", \"product_id\": " + productId + ", \"quantity\": 1}").statusCode());
+        assertEquals(400, send("POST", "/orders", "{\"client_id\": " + clientId + ", \"lines\": [1]}").statusCode());
+        assertEquals(400, send("POST", "/clients", "{\"name\": \"Bo\"}").statusCode());
+        assertEquals(400, send("DELETE", "/products", null).statusCode());
+        assertEquals(400, send("GET", "/bills/abc", null).statusCode());
+        assertEquals(400, send("GET", "/products?limit=0", null).statusCode());
+        assertEquals(400, send("GET", "/top/products?window=LAST_YEAR", null).statusCode());
+        assertEquals(400, send("GET", "/sales/products?from=2024-13-01&to=2024-06-01", null).statusCode());
+        assertEquals(400, send("GET", "/sales/products?from=2024-05-01", null).statusCode());
+        assertEquals(400, send("POST", "/clients", "{\"name\": \"Bo\\u00\"}").statusCode());
+        assertEquals(400, send("POST", "/clients", "{\"name\": \"Bo\\u0").statusCode());
+        assertEquals(400, send("POST", "/clients", "{\"name\": \"Bo\\").statusCode());
+    }
+
+    @Test
+    void everyWriteWaitsForAdmission() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 0);
+        server.close();
+        server = new OrderServer(pool, null, null, null, null, admission, 0);
+        server.start();
+        assertEquals(AdmissionController.Decision.ADMITTED, admission.acquire());
+
+        String today = LocalDate.now().toString();
+        String tomorrow = LocalDate.now().plusDays(1).toString();
+        String product = "{\"name\": \"Lamp\", \"price\": 12, \"stock\": 5}";
+        assertEquals(503, send("POST", "/clients", "{\"name\": \"Bo\", \"email\": \"bo@example.com\", "
+                + "\"phone\": \"0712345678\"}").statusCode());
+        assertEquals(503, send("DELETE", "/clients/" + clientId, null).statusCode());
+        assertEquals(503, send("POST", "/products", product).statusCode());
+        assertEquals(503, send("PUT", "/products/" + productId, product).statusCode());
+        assertEquals(503, send("PUT", "/products/" + productId + "/hot", "{\"buckets\": 4}").statusCode());
+        assertEquals(503, send("DELETE", "/products/" + productId, null).statusCode());
+        assertEquals(503, send("POST", "/purchases",
+                "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 1}").statusCode());
+        assertEquals(503, send("POST", "/orders", "{\"client_id\": " + clientId + ", \"lines\": "
+                + "[{\"product_id\": " + productId + ", \"quantity\": 1}]}").statusCode());
+        assertEquals(503, send("POST", "/reports/revenue?from=" + today + "&to=" + tomorrow, null).statusCode());
+        assertEquals(200, send("GET", "/products", null).statusCode());
+        assertEquals(9, admission.getMetrics().queueFull());
+
+        admission.release(0);
+        assertEquals(400, send("PUT", "/products/" + productId + "/hot", "{\"buckets\": 4}").statusCode());
+        assertEquals(2, admission.getMetrics().admitted());
+    }
+
+    @Test
+    void queryParametersAreUrlDecoded() throws Exception {
+        send("POST", "/purchases", "{\"client_id\": " + clientId + ", \"product_id\": " + productId + ", \"quantity\": 2}");
+        HttpResponse<String> response = send("GET", "/top/products?window=LAST%5FHOUR", null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains(String.valueOf(productId)), response.body());
+        assertEquals(200, send("GET", "/products?limit=%31%30", null).statusCode());
+    }
+}
@@ -0,0 +1,53 @@
+package presentation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TablePagerTest {
+
+    private final List<Integer> rows = IntStream.rangeClosed(1, 2 * TablePager.PAGE_SIZE + 5).boxed()
+            .collect(Collectors.toCollection(ArrayList::new));
+    private List<Object> shown = List.of();
+    private final TablePager<Integer> pager = new TablePager<>(
+            (afterKey, limit) -> rows.stream().filter(row -> row > afterKey).limit(limit).collect(Collectors.toList()),
+            row -> row, page -> shown = page);
+
+    @Test
+    void pagesMoveForwardAndBackByKey() {
+        pager.first();
+        assertEquals(1, shown.get(0));
+        pager.previous();
+        assertEquals(1, shown.get(0));
+
+        pager.next();
+        assertEquals(TablePager.PAGE_SIZE + 1, shown.get(0));
+        pager.next();
+        assertEquals(5, shown.size());
+        pager.next();
+        assertEquals(2 * TablePager.PAGE_SIZE + 1, shown.get(0));
+
+        pager.previous();
+        pager.previous();
+        assertEquals(1, shown.get(0));
+        assertEquals(TablePager.PAGE_SIZE, shown.size());
+    }
+
+    @Test
+    void pageEmptiedByDeletesFallsBackToThePreviousOne() {
+        pager.first();
+        pager.next();
+        pager.next();
+        rows.removeIf(row -> row > 2 * TablePager.PAGE_SIZE);
+
+        pager.reload();
+        assertEquals(TablePager.PAGE_SIZE + 1, shown.get(0));
+        pager.previous();
+        assertEquals(1, shown.get(0));
+    }
+}
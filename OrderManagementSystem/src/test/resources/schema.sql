@@ -0,0 +1,37 @@
+-- The tables of the database dump, in a form both MySQL and H2 in MySQL mode accept.
+
+CREATE TABLE client (
+  client_id int NOT NULL AUTO_INCREMENT,
+  name varchar(100) NOT NULL,
+  email varchar(100) NOT NULL,
+  phone varchar(15) DEFAULT NULL,
+  PRIMARY KEY (client_id)
+);
+
+CREATE TABLE product (
+  product_id int NOT NULL AUTO_INCREMENT,
+  name varchar(100) NOT NULL,
+  price double DEFAULT NULL,
+  stock int NOT NULL DEFAULT '0',
+  PRIMARY KEY (product_id)
+);
+
+CREATE TABLE purchase (
+  order_id int NOT NULL AUTO_INCREMENT,
+  client_id int DEFAULT NULL,
+  product_id int DEFAULT NULL,
+  quantity int NOT NULL,
+  order_date timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (order_id),
+  CONSTRAINT purchase_ibfk_1 FOREIGN KEY (client_id) REFERENCES client (client_id) ON DELETE SET NULL,
+  CONSTRAINT purchase_ibfk_2 FOREIGN KEY (product_id) REFERENCES product (product_id) ON DELETE SET NULL
+);
+
+CREATE TABLE log (
+  bill_id int NOT NULL AUTO_INCREMENT,
+  order_id int NOT NULL,
+  total_amount decimal(10,2) NOT NULL,
+  timestamp timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (bill_id),
+  CONSTRAINT fk_order_id FOREIGN KEY (order_id) REFERENCES purchase (order_id) ON DELETE CASCADE
+);